@@ -0,0 +1,93 @@
+package tsi.too.message_dialog;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import tsi.too.grade_control.bench.DialogScript;
+
+/**
+ * Headless replacement of the input dialogs of <code>MessageDialog.jar</code>, with the same signatures,
+ * used by the benchmarks only. Each dialog returns the next answer of the {@link DialogScript}.
+ */
+public abstract class InputDialog {
+
+	public interface InputValidator<E> {
+		String DEFAULT_SUCCESS_MESSAGE = "";
+		String FIELD_CANNOT_BE_EMPTY = "Este campo não pode ficar vazio.";
+
+		String getErrorMessage(E input);
+
+		default boolean isValid(E input) {
+			return getErrorMessage(input).equals(DEFAULT_SUCCESS_MESSAGE);
+		}
+	}
+
+	public interface Executor<E> {
+		void execute(E option);
+	}
+
+	public static Integer showIntegerInputDialog(String title, String message, InputValidator<Integer> validator) {
+		return next();
+	}
+
+	public static Long showLongInputDialog(String title, String message, InputValidator<Long> validator) {
+		return next();
+	}
+
+	public static Double showDoubleInputDialog(String title, String message, InputValidator<Double> validator) {
+		return next();
+	}
+
+	public static BigDecimal showBigDecimalInputDialog(String title, String message,
+			InputValidator<BigDecimal> validator) {
+		return next();
+	}
+
+	public static String showStringInputDialog(String title, String message) {
+		return next();
+	}
+
+	public static String showStringInputDialog(String title, String message, InputValidator<String> validator) {
+		return next();
+	}
+
+	public static String showMaskedInputDialog(String title, String message, String mask,
+			InputValidator<String> validator) {
+		return next();
+	}
+
+	public static LocalDate showBrazilianDateInputDialog(String title, String message,
+			InputValidator<LocalDate> validator) {
+		return next();
+	}
+
+	public static <E> E showOptionDialog(String title, String message, E[] options) {
+		return next();
+	}
+
+	public static void showMenuDialog(String title, String message, List<String> options, String exitOption,
+			Executor<String> executor) {
+		for(String option = next(); option != null && !option.equals(exitOption); option = next())
+			executor.execute(option);
+	}
+
+	public static final InputValidator<String> createEmptyStringValidator(String errorMessage) {
+		return input -> input == null || input.isBlank() ? errorMessage : InputValidator.DEFAULT_SUCCESS_MESSAGE;
+	}
+
+	public static final InputValidator<Double> createRangeValidator(double min, double max, String errorMessage) {
+		return input -> input == null || input < min || input > max ? errorMessage
+				: InputValidator.DEFAULT_SUCCESS_MESSAGE;
+	}
+
+	public static final InputValidator<String> createLengthValidator(int min, double max, String errorMessage) {
+		return input -> input == null || input.length() < min || input.length() > max ? errorMessage
+				: InputValidator.DEFAULT_SUCCESS_MESSAGE;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> E next() {
+		return (E) DialogScript.next();
+	}
+}
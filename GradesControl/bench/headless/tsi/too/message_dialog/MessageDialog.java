@@ -0,0 +1,31 @@
+package tsi.too.message_dialog;
+
+import tsi.too.grade_control.bench.DialogScript;
+
+/**
+ * Headless replacement of the dialogs of <code>MessageDialog.jar</code>, with the same signatures, used by
+ * the benchmarks only.
+ */
+public abstract class MessageDialog {
+
+	public static void showInformationDialog(String title, Object message) {
+		DialogScript.shown(message);
+	}
+
+	public static void showPlainMessageDialog(String title, Object message) {
+		DialogScript.shown(message);
+	}
+
+	public static void showAlertDialog(String title, Object message) {
+		DialogScript.shown(message);
+	}
+
+	public static boolean showConfirmationDialog(String title, String message) {
+		DialogScript.shown(message);
+		return true;
+	}
+
+	public static void showTextMessage(String title, String message) {
+		DialogScript.shown(message);
+	}
+}
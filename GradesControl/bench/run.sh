@@ -0,0 +1,39 @@
+#!/bin/sh
+# Compiles the application and the benchmarks and runs them, options are passed to BenchmarkRunner:
+#   bench/run.sh --sizes 1000,100000 --baseline bench/baseline.txt
+# The thread safe benchmarks can also run on several threads, and every benchmark in JVMs of its own:
+#   bench/run.sh --filter Student.is --threads 1,4,16 --forks 3
+# With "generate" as the first argument, writes a roster CSV with WorkloadGenerator instead:
+#   bench/run.sh generate --students 10000000 --out roster.csv
+# With "check" as the first argument, checks the round trip of StudentCodec with CodecCheck instead:
+#   bench/run.sh check
+# The headless dialogs come before MessageDialog.jar in the class path, so no display is needed.
+# JVM options can be given in JAVA_OPTS, 10M students need about -Xmx6g.
+set -e
+
+cd "$(dirname "$0")/.."
+out=bench/out
+rm -rf "$out"
+mkdir -p "$out/classes" "$out/bench" "$out/headless"
+
+find src -name '*.java' > "$out/sources"
+javac -encoding UTF-8 --release 11 -cp jar/MessageDialog.jar -d "$out/classes" @"$out/sources"
+
+find bench/src -name '*.java' > "$out/sources"
+javac -encoding UTF-8 --release 11 -cp "$out/classes:jar/MessageDialog.jar" -d "$out/bench" @"$out/sources"
+
+find bench/headless -name '*.java' > "$out/sources"
+javac -encoding UTF-8 --release 11 -cp "$out/bench" -d "$out/headless" @"$out/sources"
+
+main=tsi.too.grade_control.bench.BenchmarkRunner
+if [ "$1" = generate ]; then
+	main=tsi.too.grade_control.bench.WorkloadGenerator
+	shift
+elif [ "$1" = check ]; then
+	main=tsi.too.grade_control.bench.CodecCheck
+	shift
+fi
+
+exec java ${JAVA_OPTS:--Xmx3g} -Djava.awt.headless=true \
+	-cp "$out/headless:$out/bench:$out/classes:jar/MessageDialog.jar" \
+	"$main" "$@"
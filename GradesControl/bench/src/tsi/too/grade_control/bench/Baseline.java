@@ -0,0 +1,133 @@
+package tsi.too.grade_control.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The stored results of a previous run, one line per benchmark and roster size, which new results must not
+ * exceed by more than a tolerance.
+ */
+public class Baseline {
+	/**
+	 * Allocation differences up to this many bytes per operation are ignored, as the measure is not exact
+	 * for operations that allocate very little.
+	 */
+	private static final double ALLOCATION_SLACK = 16;
+
+	/**
+	 * The result of a benchmark over a roster size.
+	 */
+	public static class Result {
+		private final String benchmark;
+		private final int size;
+		private final double nanosPerOp;
+		private final double bytesPerOp;
+
+		public Result(String benchmark, int size, double nanosPerOp, double bytesPerOp) {
+			this.benchmark = benchmark;
+			this.size = size;
+			this.nanosPerOp = nanosPerOp;
+			this.bytesPerOp = bytesPerOp;
+		}
+
+		public String getBenchmark() {
+			return benchmark;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public double getNanosPerOp() {
+			return nanosPerOp;
+		}
+
+		public double getBytesPerOp() {
+			return bytesPerOp;
+		}
+
+		private String key() {
+			return benchmark + " " + size;
+		}
+	}
+
+	private final Map<String, Result> results = new LinkedHashMap<>();
+
+	/**
+	 * Reads a baseline written by {@link #save(Path, List)}.
+	 *
+	 * @param file the baseline file.
+	 * @return the read baseline.
+	 * @throws IOException if the file can not be read or is malformed.
+	 */
+	public static Baseline load(Path file) throws IOException {
+		var baseline = new Baseline();
+
+		for(var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			line = line.strip();
+			if(line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			var fields = line.split("\\s+");
+			if(fields.length != 4)
+				throw new IOException("Invalid baseline line: " + line);
+
+			try {
+				var result = new Result(fields[0], Integer.parseInt(fields[1]), Double.parseDouble(fields[2]),
+						Double.parseDouble(fields[3]));
+				baseline.results.put(result.key(), result);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid baseline line: " + line, e);
+			}
+		}
+
+		return baseline;
+	}
+
+	/**
+	 * Writes results as a baseline.
+	 *
+	 * @param file the target file, it is replaced if it exists.
+	 * @param results the results.
+	 * @throws IOException if the file can not be written.
+	 */
+	public static void save(Path file, List<Result> results) throws IOException {
+		var lines = new ArrayList<String>();
+		lines.add("# benchmark roster_size ns/op bytes/op");
+
+		for(var r : results)
+			lines.add(String.format(Locale.ROOT, "%s %d %.1f %.1f", r.benchmark, r.size, r.nanosPerOp, r.bytesPerOp));
+
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compares a result with the stored one of the same benchmark and size.
+	 *
+	 * @param result the new result.
+	 * @param tolerance the accepted increase, 0.1 accepts results up to 10% slower.
+	 * @return the description of the regression or null if there is none or nothing to compare with.
+	 */
+	public String check(Result result, double tolerance) {
+		var stored = results.get(result.key());
+		if(stored == null)
+			return null;
+
+		if(result.nanosPerOp > stored.nanosPerOp * (1 + tolerance))
+			return String.format(Locale.ROOT, "%s @ %d: %.1f ns/op, baseline %.1f ns/op", result.benchmark,
+					result.size, result.nanosPerOp, stored.nanosPerOp);
+
+		if(result.bytesPerOp > stored.bytesPerOp * (1 + tolerance) + ALLOCATION_SLACK)
+			return String.format(Locale.ROOT, "%s @ %d: %.1f B/op, baseline %.1f B/op", result.benchmark,
+					result.size, result.bytesPerOp, stored.bytesPerOp);
+
+		return null;
+	}
+}
@@ -0,0 +1,46 @@
+package tsi.too.grade_control.bench;
+
+/**
+ * An operation measured by the {@link BenchmarkRunner} over rosters of several sizes.
+ */
+public abstract class Benchmark {
+	private final String name;
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Prepares the benchmark before the operation runs over a roster.
+	 *
+	 * @param roster the roster, shared by every benchmark of the same size.
+	 */
+	public void setUp(Roster roster) {}
+
+	/**
+	 * Tells whether {@link #run(long)} may be called by several threads at once. Such benchmarks are also
+	 * measured with every count of <code>--threads</code>, each thread with its own operation numbers.
+	 *
+	 * @return true if the operation is thread safe, false by default.
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * Runs the operation once.
+	 *
+	 * @param op the number of the operation, used to pick different students.
+	 * @return a value derived from the result, so it is not optimized away.
+	 */
+	public abstract long run(long op);
+
+	/**
+	 * Undoes the changes made to the roster, if any.
+	 */
+	public void tearDown() {}
+}
@@ -0,0 +1,466 @@
+package tsi.too.grade_control.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the {@link Benchmarks} over rosters of several sizes and optionally gates the results against a
+ * stored {@link Baseline}.
+ *
+ * Each benchmark is warmed up and then measured in a few timed iterations, the median time per operation
+ * is reported with the bytes allocated per operation by all the threads, as <code>-prof gc</code> does,
+ * and the number of collections during the measure.
+ *
+ * The benchmarks that are thread safe are also run by several threads at once, one result per thread
+ * count, named after the benchmark and the count, e.g. <code>Student.isAproved/t4</code>. With several
+ * threads the time per operation is the elapsed time divided by the operations of all the threads, so it
+ * halves when the throughput doubles.
+ *
+ * Like the forks of JMH, each benchmark can run in JVMs of its own, so the code compiled for a benchmark does
+ * not bias the next ones. The forks run this class with the same JVM options and report back their result,
+ * the median of their times and the average of their allocations are kept.
+ *
+ * Options:
+ * <ul>
+ * <li><code>--sizes 1000,100000</code> the roster sizes, 1k, 100k and 1M by default;</li>
+ * <li><code>--filter text</code> runs only the benchmarks whose names contain the text;</li>
+ * <li><code>--benchmark name</code> runs only the benchmark with the name, without the thread count;</li>
+ * <li><code>--threads 1,4,16</code> the thread counts of the thread safe benchmarks, only 1 by default;</li>
+ * <li><code>--forks n</code> the JVMs each benchmark runs in, 0 by default runs them all in this one;</li>
+ * <li><code>--iterations n</code> and <code>--time-ms n</code> the measured iterations and their length;</li>
+ * <li><code>--warmup-iterations n</code> and <code>--warmup-ms n</code> the warm up iterations and their
+ * length, 1 of 1000 ms by default;</li>
+ * <li><code>--save file</code> writes the results as a baseline;</li>
+ * <li><code>--baseline file</code> compares the results with a baseline, exiting with status 1 if any of
+ * them is slower or allocates more than <code>--tolerance</code>, 0.15 by default.</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+	private static final int[] DEFAULT_SIZES = {1_000, 100_000, 1_000_000};
+
+	/* The line a fork prints with its result, read by the JVM that started it */
+	private static final String FORK_RESULT = "FORK-RESULT";
+
+	private int[] sizes = DEFAULT_SIZES;
+	private String filter = "";
+	private String only;
+	private int[] threadCounts = {1};
+	private int forks;
+	private int iterations = 5;
+	private long iterationMillis = 500;
+	private int warmupIterations = 1;
+	private long warmupMillis = 1000;
+	private Path save;
+	private Path baseline;
+	private double tolerance = 0.15;
+
+	/* Folds the values returned by the benchmarks, so their work is not optimized away */
+	private long sink;
+
+	/* Tells the threads of a multi-threaded iteration to stop */
+	private volatile boolean stop;
+
+	private final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * A result with the collections counted while it was measured.
+	 */
+	private static class Measure {
+		final Baseline.Result result;
+		final long collections;
+
+		Measure(Baseline.Result result, long collections) {
+			this.result = result;
+			this.collections = collections;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		var runner = new BenchmarkRunner();
+
+		try {
+			runner.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+
+		System.exit(runner.run() ? 0 : 1);
+	}
+
+	private void parse(String[] args) {
+		for(int i = 0; i < args.length; i++) {
+			var option = args[i];
+			if(i + 1 == args.length)
+				throw new IllegalArgumentException("Missing value of " + option);
+
+			var value = args[++i];
+
+			switch(option) {
+			case "--sizes":
+				sizes = parseInts(value);
+				break;
+			case "--filter":
+				filter = value;
+				break;
+			case "--benchmark":
+				only = value;
+				break;
+			case "--threads":
+				threadCounts = parseInts(value);
+				break;
+			case "--forks":
+				forks = Integer.parseInt(value);
+				break;
+			case "--iterations":
+				iterations = Integer.parseInt(value);
+				break;
+			case "--time-ms":
+				iterationMillis = Long.parseLong(value);
+				break;
+			case "--warmup-iterations":
+				warmupIterations = Integer.parseInt(value);
+				break;
+			case "--warmup-ms":
+				warmupMillis = Long.parseLong(value);
+				break;
+			case "--save":
+				save = Path.of(value);
+				break;
+			case "--baseline":
+				baseline = Path.of(value);
+				break;
+			case "--tolerance":
+				tolerance = Double.parseDouble(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + option);
+			}
+		}
+
+		if(Arrays.stream(threadCounts).anyMatch(count -> count <= 0))
+			throw new IllegalArgumentException("Thread counts must be positive");
+
+		if(iterations <= 0 || warmupIterations < 0 || forks < 0)
+			throw new IllegalArgumentException("Invalid iteration or fork count");
+	}
+
+	private static int[] parseInts(String value) {
+		return Arrays.stream(value.split(",")).map(String::strip).mapToInt(Integer::parseInt).toArray();
+	}
+
+	/**
+	 * @return false if any result regressed against the baseline.
+	 */
+	private boolean run() throws IOException {
+		var stored = baseline == null ? null : Baseline.load(baseline);
+		var results = new ArrayList<Baseline.Result>();
+		var regressions = new ArrayList<String>();
+
+		System.out.printf("%-40s %10s %14s %12s %6s%n", "benchmark", "size", "ns/op", "B/op", "gcs");
+
+		for(var size : sizes) {
+			/* The forks build their own rosters */
+			var roster = forks == 0 ? new Roster(size) : null;
+
+			for(var benchmark : Benchmarks.all()) {
+				if(!selected(benchmark))
+					continue;
+
+				for(var threadCount : benchmark.isThreadSafe() ? threadCounts : new int[] {1}) {
+					var measure = forks == 0 ? measure(benchmark, roster, threadCount)
+							: fork(benchmark.getName(), size, threadCount);
+					var result = measure.result;
+
+					System.out.printf(Locale.ROOT, "%-40s %10d %14.1f %12.1f %6d%n", result.getBenchmark(),
+							result.getSize(), result.getNanosPerOp(), result.getBytesPerOp(), measure.collections);
+
+					if(only != null && forks == 0)
+						System.out.printf(Locale.ROOT, "%s %s %d %f %f %d%n", FORK_RESULT, result.getBenchmark(),
+								result.getSize(), result.getNanosPerOp(), result.getBytesPerOp(), measure.collections);
+
+					results.add(result);
+
+					if(stored != null) {
+						var regression = stored.check(result, tolerance);
+						if(regression != null)
+							regressions.add(regression);
+					}
+				}
+			}
+
+			if(roster != null)
+				roster.release();
+		}
+
+		if(save != null)
+			Baseline.save(save, results);
+
+		for(var r : regressions)
+			System.out.println("REGRESSION " + r);
+
+		if(sink == 42)
+			System.out.println();
+
+		return regressions.isEmpty();
+	}
+
+	private boolean selected(Benchmark benchmark) {
+		return only != null ? benchmark.getName().equals(only) : benchmark.getName().contains(filter);
+	}
+
+	/**
+	 * @return the name of the result of a benchmark run by some threads.
+	 */
+	private static String resultName(String benchmark, int threadCount) {
+		return threadCount == 1 ? benchmark : benchmark + "/t" + threadCount;
+	}
+
+	/**
+	 * Runs a benchmark in <code>forks</code> new JVMs, one after the other.
+	 *
+	 * @return the median of the times per operation and the average of the bytes per operation.
+	 */
+	private Measure fork(String benchmark, int size, int threadCount) throws IOException {
+		var nanos = new double[forks];
+		double bytes = 0;
+		long collections = 0;
+
+		for(int i = 0; i < forks; i++) {
+			var fields = runFork(benchmark, size, threadCount);
+
+			nanos[i] = Double.parseDouble(fields[3]);
+			bytes += Double.parseDouble(fields[4]);
+			collections += Long.parseLong(fields[5]);
+		}
+
+		Arrays.sort(nanos);
+
+		return new Measure(new Baseline.Result(resultName(benchmark, threadCount), size, nanos[forks / 2],
+				bytes / forks), collections);
+	}
+
+	/**
+	 * @return the fields of the result line of the fork.
+	 */
+	private String[] runFork(String benchmark, int size, int threadCount) throws IOException {
+		var command = new ArrayList<String>();
+		command.add(ProcessHandle.current().info().command().orElse("java"));
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.addAll(List.of("-cp", System.getProperty("java.class.path"), BenchmarkRunner.class.getName(),
+				"--sizes", Integer.toString(size), "--benchmark", benchmark, "--threads", Integer.toString(threadCount),
+				"--iterations", Integer.toString(iterations), "--time-ms", Long.toString(iterationMillis),
+				"--warmup-iterations", Integer.toString(warmupIterations), "--warmup-ms", Long.toString(warmupMillis)));
+
+		var process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		String[] result = null;
+
+		try(var out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = out.readLine()) != null) {
+				if(line.startsWith(FORK_RESULT + " "))
+					result = line.split(" ");
+			}
+		}
+
+		try {
+			if(process.waitFor() != 0 || result == null)
+				throw new IOException("The fork of " + benchmark + " failed with status " + process.exitValue());
+		} catch (InterruptedException e) {
+			process.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the fork of " + benchmark, e);
+		}
+
+		return result;
+	}
+
+	private Measure measure(Benchmark benchmark, Roster roster, int threadCount) {
+		benchmark.setUp(roster);
+
+		var pool = threadCount == 1 ? null : Executors.newFixedThreadPool(threadCount, runnable -> {
+			var thread = new Thread(runnable, "bench-" + benchmark.getName());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		try {
+			/* The next operation of each thread, the threads pick different students */
+			var nextOps = new long[threadCount];
+			for(int t = 0; t < threadCount; t++)
+				nextOps[t] = t;
+
+			long batch = 1;
+			for(int i = 0; i < warmupIterations; i++) {
+				var warmup = iterate(benchmark, pool, nextOps, batch, warmupMillis);
+
+				/* Batches of about a millisecond per thread, so the clock is not read on every operation */
+				batch = Math.max(1, warmup[0] / threadCount * 1_000_000 / warmup[1]);
+			}
+
+			var nanosPerOp = new double[iterations];
+			long allocated = 0;
+			long measuredOps = 0;
+			long collections = 0;
+
+			for(int i = 0; i < iterations; i++) {
+				long gcBefore = collectionCount();
+				var allocatedBefore = allocatedBytes();
+
+				var iteration = iterate(benchmark, pool, nextOps, batch, iterationMillis);
+
+				allocated += allocatedSince(allocatedBefore, allocatedBytes());
+				collections += collectionCount() - gcBefore;
+				measuredOps += iteration[0];
+				nanosPerOp[i] = (double) iteration[1] / iteration[0];
+			}
+
+			Arrays.sort(nanosPerOp);
+
+			return new Measure(new Baseline.Result(resultName(benchmark.getName(), threadCount), roster.size(),
+					nanosPerOp[iterations / 2], (double) allocated / measuredOps), collections);
+		} finally {
+			if(pool != null)
+				pool.shutdownNow();
+
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * Runs the operation in batches for about the given time, on the calling thread or on every thread of the
+	 * pool. Each thread goes on from its own operation number, stepping by the thread count.
+	 *
+	 * @return the operations run by all the threads and the elapsed nanoseconds.
+	 */
+	private long[] iterate(Benchmark benchmark, ExecutorService pool, long[] nextOps, long batch, long millis) {
+		var nanos = millis * 1_000_000;
+
+		if(pool == null) {
+			long op = nextOps[0];
+			long ops = 0;
+			long start = System.nanoTime();
+			long elapsed;
+
+			do {
+				for(long j = 0; j < batch; j++)
+					sink += benchmark.run(op++);
+
+				ops += batch;
+			}while((elapsed = System.nanoTime() - start) < nanos);
+
+			nextOps[0] = op;
+
+			return new long[] {ops, elapsed};
+		}
+
+		var threadCount = nextOps.length;
+		var ready = new CountDownLatch(threadCount);
+		var go = new CountDownLatch(1);
+		var workers = new ArrayList<Future<long[]>>(threadCount);
+
+		stop = false;
+
+		for(int t = 0; t < threadCount; t++) {
+			var first = nextOps[t];
+
+			workers.add(pool.submit(() -> {
+				long op = first;
+				long ops = 0;
+				long folded = 0;
+
+				ready.countDown();
+				go.await();
+
+				do {
+					for(long j = 0; j < batch; j++, op += threadCount)
+						folded += benchmark.run(op);
+
+					ops += batch;
+				}while(!stop);
+
+				return new long[] {ops, folded, op};
+			}));
+		}
+
+		try {
+			ready.await();
+
+			long start = System.nanoTime();
+			go.countDown();
+			Thread.sleep(millis);
+			stop = true;
+
+			long ops = 0;
+			for(int t = 0; t < threadCount; t++) {
+				var worker = workers.get(t).get();
+
+				ops += worker[0];
+				sink += worker[1];
+				nextOps[t] = worker[2];
+			}
+
+			return new long[] {ops, System.nanoTime() - start};
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while measuring " + benchmark.getName(), e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to run " + benchmark.getName(), e.getCause());
+		}
+	}
+
+	/**
+	 * Takes the bytes allocated so far by every live thread, so the work done by pool threads is included.
+	 */
+	private Map<Long, Long> allocatedBytes() {
+		var ids = threads.getAllThreadIds();
+		var bytes = threads.getThreadAllocatedBytes(ids);
+		var allocated = new HashMap<Long, Long>(ids.length * 2);
+
+		for(int i = 0; i < ids.length; i++) {
+			if(bytes[i] > 0)
+				allocated.put(ids[i], bytes[i]);
+		}
+
+		return allocated;
+	}
+
+	/**
+	 * Sums what each thread allocated since the first sample, the threads started meanwhile from zero. The
+	 * threads that ended meanwhile are left out, instead of subtracting all they had allocated.
+	 */
+	private static long allocatedSince(Map<Long, Long> before, Map<Long, Long> after) {
+		long total = 0;
+
+		for(var e : after.entrySet())
+			total += Math.max(0, e.getValue() - before.getOrDefault(e.getKey(), 0L));
+
+		return total;
+	}
+
+	private static long collectionCount() {
+		long total = 0;
+
+		for(var gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionCount());
+
+		return total;
+	}
+}
@@ -0,0 +1,477 @@
+package tsi.too.grade_control.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import tsi.too.grade_control.controller.StudentController;
+import tsi.too.grade_control.io.StudentCodec;
+import tsi.too.grade_control.model.GradeTable;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.ParallelReport;
+import tsi.too.grade_control.report.Ranking;
+import tsi.too.grade_control.report.ReportWriter;
+import tsi.too.grade_control.repository.ConcurrentStudentRepository;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.service.Command;
+import tsi.too.grade_control.service.GradeService;
+
+/**
+ * The benchmarks of the model and controller hot paths.
+ */
+public final class Benchmarks {
+	private static final long OPERATIONS_SEED = 7;
+	private static final int CODEC_SAMPLE = 4096;
+	private static final int CODEC_BUFFER_SIZE = 1 << 10;
+	private static final int RANKING_SIZE = 10;
+	private static final int RENAMED_STUDENTS = 1 << 12;
+
+	private Benchmarks() {}
+
+	/**
+	 * @return every benchmark, in the order they run.
+	 */
+	public static List<Benchmark> all() {
+		return List.of(addDiscipline(), isAproved(), isEnrolled(), getGrade(), getEnrolledDisciplines(),
+				findStudent(), renameStudent(), toReportString(), searchStudent(), report(), sequentialReport(), parallelReport(), ranking(), encodeStudent(), decodeStudent(),
+				mixedOperations());
+	}
+
+	/**
+	 * Enrolls students outside the roster in disciplines, sharing the grade table of the roster. Every
+	 * <code>Student.MAX_SUBSCRIPTION_ALLWOED</code> calls the student is also unenrolled from all of them.
+	 */
+	static Benchmark addDiscipline() {
+		return new Benchmark("Student.addDiscipline") {
+			private Student[] scratch;
+
+			@Override
+			public void setUp(Roster roster) {
+				scratch = new Student[1024];
+				for(int i = 0; i < scratch.length; i++)
+					scratch[i] = new Student("BENCH-" + i, "Bench " + i, "TSI");
+			}
+
+			@Override
+			public long run(long op) {
+				var s = scratch[(int) (op & 1023)];
+				if(!s.canEnrollInAnotherDiscipline())
+					s.unenrollAll();
+
+				return s.addDiscipline(Roster.DISCIPLINES[(int) (op % Roster.DISCIPLINES.length)], op % 11) ? 1 : 0;
+			}
+
+			@Override
+			public void tearDown() {
+				for(var s : scratch)
+					s.release();
+			}
+		};
+	}
+
+	static Benchmark isAproved() {
+		return new RosterBenchmark("Student.isAproved") {
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			@Override
+			public long run(long op) {
+				return roster.get(op * 7919).isAproved() ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Looks up a discipline typed in upper case, so the lookup can not match the stored spelling directly.
+	 */
+	static Benchmark isEnrolled() {
+		return new RosterBenchmark("Student.isEnrolled") {
+			private final String[] typed = upperCaseDisciplines();
+
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			@Override
+			public long run(long op) {
+				return roster.get(op * 7919).isEnrolled(typed[(int) (op % typed.length)]) ? 1 : 0;
+			}
+		};
+	}
+
+	static Benchmark getGrade() {
+		return new RosterBenchmark("Student.getGrade") {
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			@Override
+			public long run(long op) {
+				var grade = roster.get(op * 7919).getGrade(Roster.DISCIPLINES[(int) (op % Roster.DISCIPLINES.length)]);
+
+				return grade == null ? 0 : grade.longValue();
+			}
+		};
+	}
+
+	static Benchmark getEnrolledDisciplines() {
+		return new RosterBenchmark("Student.getEnrolledDisciplines") {
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			@Override
+			public long run(long op) {
+				return roster.get(op * 7919).getEnrolledDisciplines().size();
+			}
+		};
+	}
+
+	/**
+	 * Looks a student up by registration number on even operations and by name on odd ones, so it measures
+	 * how the reads of the repository scale with the threads.
+	 */
+	static Benchmark findStudent() {
+		return new RosterBenchmark("StudentRepository.find") {
+			private StudentRepository repository;
+
+			@Override
+			public void setUp(Roster roster) {
+				super.setUp(roster);
+				repository = roster.getRepository();
+			}
+
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			@Override
+			public long run(long op) {
+				var s = roster.get(op * 7919);
+				var found = (op & 1) == 0 ? repository.findByRegistration(s.getRegistration())
+						: repository.findByName(s.getName());
+
+				return found == s ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Renames students of a repository of its own back and forth, each rename claiming a name and releasing
+	 * another one. Each thread renames different students when the thread count divides
+	 * <code>RENAMED_STUDENTS</code>.
+	 */
+	static Benchmark renameStudent() {
+		return new Benchmark("StudentRepository.rename") {
+			private final String[] names = new String[RENAMED_STUDENTS << 1];
+			private Student[] students;
+			private StudentRepository repository;
+
+			@Override
+			public void setUp(Roster roster) {
+				var grades = new GradeTable();
+
+				repository = new ConcurrentStudentRepository();
+				students = new Student[RENAMED_STUDENTS];
+
+				for(int i = 0; i < students.length; i++) {
+					names[i << 1] = "Renamed " + i;
+					names[(i << 1) + 1] = "Renamed again " + i;
+
+					students[i] = new Student(grades, "RENAME-" + i, names[i << 1], "TSI");
+					repository.register(students[i]);
+				}
+			}
+
+			@Override
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			@Override
+			public long run(long op) {
+				var i = (int) (op & (RENAMED_STUDENTS - 1));
+				var s = students[i];
+				var name = s.getName() == names[i << 1] ? names[(i << 1) + 1] : names[i << 1];
+
+				return repository.update(s, name, "TSI") ? 1 : 0;
+			}
+
+			@Override
+			public void tearDown() {
+				students = null;
+				repository = null;
+			}
+		};
+	}
+
+	static Benchmark toReportString() {
+		return new RosterBenchmark("StudentController.toReportString") {
+			@Override
+			public long run(long op) {
+				return StudentController.getInstance().toReportString(roster.get(op * 7919)).length();
+			}
+		};
+	}
+
+	/**
+	 * Searches an exact name on even operations, and a name with a typo on odd ones, which are answered
+	 * with the list of similar names that the script dismisses.
+	 */
+	static Benchmark searchStudent() {
+		return new RosterBenchmark("StudentController.searchStudent") {
+			@Override
+			public long run(long op) {
+				var name = roster.get(op * 7919).getName();
+
+				if((op & 1) == 0)
+					DialogScript.answer(name);
+				else
+					DialogScript.answer(name.substring(0, name.length() / 2) + "x" + name.substring(name.length() / 2 + 1),
+							null);
+
+				StudentController.getInstance().searchStudent(roster.getRepository(), roster.getSearchIndex());
+				DialogScript.reset();
+
+				return DialogScript.getShownChars();
+			}
+		};
+	}
+
+	/**
+	 * Builds every page of the general report, each operation is the whole roster.
+	 */
+	static Benchmark report() {
+		return new RosterBenchmark("StudentController.report") {
+			@Override
+			public long run(long op) {
+				StudentController.getInstance().report(roster.getRepository(), roster.getStatistics());
+
+				return DialogScript.getShownChars();
+			}
+		};
+	}
+
+	/**
+	 * Writes the general report of the whole roster on the calling thread, not paged, each operation is the
+	 * whole roster.
+	 */
+	static Benchmark sequentialReport() {
+		return new RosterBenchmark("ReportWriter.sequential") {
+			private final StringBuilder out = new StringBuilder();
+
+			@Override
+			public long run(long op) {
+				out.setLength(0);
+
+				try {
+					new ReportWriter(out).writeReport(roster.getRepository(), roster.getStatistics());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				return out.length();
+			}
+		};
+	}
+
+	/**
+	 * Writes the same report of {@link #sequentialReport()} formatting the ranges of the repository on the
+	 * common pool.
+	 */
+	static Benchmark parallelReport() {
+		return new RosterBenchmark("ReportWriter.parallel") {
+			private final StringBuilder out = new StringBuilder();
+			private final ParallelReport engine = new ParallelReport();
+
+			@Override
+			public long run(long op) {
+				out.setLength(0);
+
+				try {
+					new ReportWriter(out).writeReport(roster.getRepository(), roster.getStatistics(), engine);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				return out.length();
+			}
+		};
+	}
+
+	/**
+	 * Finds the <code>RANKING_SIZE</code> highest averages, each operation is the whole roster. The result is
+	 * checked once against a sort of the roster.
+	 */
+	static Benchmark ranking() {
+		return new RosterBenchmark("Ranking.highestAverages") {
+			private final Ranking ranking = new Ranking();
+
+			@Override
+			public void setUp(Roster roster) {
+				super.setUp(roster);
+				checkRanking(roster.getRepository(), ranking.highestAverages(roster.getRepository(), RANKING_SIZE));
+			}
+
+			@Override
+			public long run(long op) {
+				return ranking.highestAverages(roster.getRepository(), RANKING_SIZE).size();
+			}
+		};
+	}
+
+	static Benchmark encodeStudent() {
+		return new RosterBenchmark("StudentCodec.encode") {
+			private final StudentCodec codec = new StudentCodec();
+			private final ByteBuffer buffer = ByteBuffer.allocate(CODEC_BUFFER_SIZE);
+
+			@Override
+			public long run(long op) {
+				buffer.clear();
+				codec.encode(roster.get(op * 7919), buffer);
+
+				return buffer.position();
+			}
+		};
+	}
+
+	/**
+	 * Decodes a sample of the roster, checked once against the students it was encoded from. The decoded
+	 * students go to a table of their own and are released at once, so the table reuses their ids and rows.
+	 */
+	static Benchmark decodeStudent() {
+		return new RosterBenchmark("StudentCodec.decode") {
+			private final StudentCodec codec = new StudentCodec();
+			private ByteBuffer encoded;
+			private int[] offsets;
+			private GradeTable grades;
+
+			@Override
+			public void setUp(Roster roster) {
+				super.setUp(roster);
+
+				var sample = Math.min(CODEC_SAMPLE, roster.size());
+				var size = 0;
+				for(int i = 0; i < sample; i++)
+					size += codec.encodedSize(roster.get(i * 7919L));
+
+				encoded = ByteBuffer.allocate(size);
+				offsets = new int[sample];
+				for(int i = 0; i < sample; i++) {
+					offsets[i] = encoded.position();
+					codec.encode(roster.get(i * 7919L), encoded);
+				}
+
+				grades = new GradeTable();
+				for(int i = 0; i < sample; i++) {
+					var decoded = codec.decodeStudent(encoded.position(offsets[i]), grades);
+
+					checkRoundTrip(roster.get(i * 7919L), decoded);
+					decoded.release();
+				}
+			}
+
+			@Override
+			public long run(long op) {
+				var student = codec.decodeStudent(encoded.position(offsets[(int) (op % offsets.length)]), grades);
+				student.release();
+
+				return student.getName().length();
+			}
+
+			@Override
+			public void tearDown() {
+				grades = null;
+			}
+		};
+	}
+
+	/**
+	 * Executes a stream of the generator with the default mix of operations, mostly reads. It changes the
+	 * roster, so it runs last.
+	 */
+	static Benchmark mixedOperations() {
+		return new RosterBenchmark("GradeService.mixedOperations") {
+			private GradeService service;
+			private Iterator<Command> operations;
+
+			@Override
+			public void setUp(Roster roster) {
+				super.setUp(roster);
+				service = new GradeService(roster.getRepository(), RegistrationAllocator.getInstance());
+				operations = roster.getGenerator().operations(OPERATIONS_SEED, roster.size(), Long.MAX_VALUE);
+			}
+
+			@Override
+			public long run(long op) {
+				return service.execute(operations.next()).isSuccess() ? 1 : 0;
+			}
+		};
+	}
+
+	private static void checkRoundTrip(Student expected, Student decoded) {
+		if(!expected.toString().equals(decoded.toString()))
+			throw new IllegalStateException("The codec changed " + expected + " into " + decoded);
+	}
+
+	private static void checkRanking(Iterable<Student> students, List<Ranking.Entry> ranked) {
+		var sorted = new ArrayList<Student>();
+		for(var student : students) {
+			if(!Double.isNaN(average(student)))
+				sorted.add(student);
+		}
+
+		sorted.sort(Comparator.comparingDouble(Benchmarks::average).reversed()
+				.thenComparing(Student::getRegistration));
+
+		for(int i = 0; i < Math.min(RANKING_SIZE, sorted.size()); i++) {
+			if(i >= ranked.size() || ranked.get(i).getStudent() != sorted.get(i))
+				throw new IllegalStateException("The ranking differs from the sort at position " + (i + 1));
+		}
+	}
+
+	private static double average(Student student) {
+		var sum = new double[2];
+		student.forEachDiscipline((name, grade) -> {
+			sum[0] += grade;
+			sum[1]++;
+		});
+
+		return sum[1] == 0 ? Double.NaN : sum[0] / sum[1];
+	}
+
+	private static String[] upperCaseDisciplines() {
+		var typed = new String[Roster.DISCIPLINES.length];
+		for(int i = 0; i < typed.length; i++)
+			typed[i] = Roster.DISCIPLINES[i].toUpperCase();
+
+		return typed;
+	}
+
+	/**
+	 * A benchmark that only reads the roster.
+	 */
+	private abstract static class RosterBenchmark extends Benchmark {
+		protected Roster roster;
+
+		RosterBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(Roster roster) {
+			this.roster = roster;
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package tsi.too.grade_control.bench;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tsi.too.grade_control.io.StudentCodec;
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.GradeTable;
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Checks that the students and disciplines decoded by {@link StudentCodec} are the ones encoded, field by
+ * field, and that malformed input is rejected. Run by <code>bench/run.sh check</code>, it prints each check
+ * and exits with status 1 if any fails.
+ */
+public final class CodecCheck {
+	private static final String[] DISCIPLINES = {"Programação Orientada a Objetos", "Cálculo I", "Banco de Dados",
+			"Redes", "Inglês Técnico"};
+	private static final double[] GRADES = {0, 10, 7.3, 5.99, 6};
+
+	private final StudentCodec codec = new StudentCodec();
+
+	private CodecCheck() {}
+
+	public static void main(String[] args) {
+		var checker = new CodecCheck();
+		var failed = 0;
+
+		for(var check : checker.checks().entrySet()) {
+			try {
+				check.getValue().run();
+				System.out.println("ok     " + check.getKey());
+			} catch (RuntimeException e) {
+				failed++;
+				System.out.println("FAILED " + check.getKey() + ": " + e);
+			}
+		}
+
+		if(failed > 0) {
+			System.out.println(failed + " checks failed");
+			System.exit(1);
+		}
+	}
+
+	private Map<String, Runnable> checks() {
+		var checks = new LinkedHashMap<String, Runnable>();
+
+		checks.put("disciplines and grades", this::disciplinesAndGrades);
+		checks.put("single discipline", this::singleDiscipline);
+		checks.put("non-ASCII strings", this::nonAscii);
+		checks.put("unpaired surrogate", this::unpairedSurrogate);
+		checks.put("varint boundaries", this::varintBoundaries);
+		checks.put("direct buffers", this::directBuffers);
+		checks.put("buffer slices", this::bufferSlices);
+		checks.put("bad version", this::badVersion);
+		checks.put("malformed varints", this::malformedVarints);
+		checks.put("too many disciplines", this::tooManyDisciplines);
+		checks.put("truncated input", this::truncatedInput);
+		checks.put("small output buffer", this::smallOutputBuffer);
+
+		return checks;
+	}
+
+	/**
+	 * Students with none up to the most disciplines allowed, with the lowest, the highest and grades that a
+	 * <code>float</code> does not hold exactly.
+	 */
+	private void disciplinesAndGrades() {
+		for(int count = 0; count <= Student.MAX_SUBSCRIPTION_ALLWOED; count++) {
+			var student = student("2026TSI" + count, "Aluno " + count, "TSI", count);
+
+			roundTrip(student, ByteBuffer.allocate(codec.encodedSize(student)), false);
+		}
+	}
+
+	private void singleDiscipline() {
+		for(var grade : GRADES) {
+			var discipline = new Discipline(DISCIPLINES[0], grade);
+			var buffer = ByteBuffer.allocate(codec.encodedSize(discipline));
+
+			codec.encode(discipline, buffer);
+			check(!buffer.hasRemaining(), "encodedSize " + buffer.capacity() + " but wrote " + buffer.position());
+
+			var decoded = codec.decodeDiscipline(buffer.flip());
+			check(!buffer.hasRemaining(), "decoding left " + buffer.remaining() + " bytes");
+			checkEqual("discipline name", discipline.getName(), decoded.getName());
+			checkEqual("discipline grade", (float) discipline.getGrade(), (float) decoded.getGrade());
+		}
+	}
+
+	/**
+	 * Strings of 2, 3 and 4 UTF-8 bytes per char, in every field.
+	 */
+	private void nonAscii() {
+		var student = student("2026ÇÃO", "José da Conceição Ñúñez 学生 😀", "Análise e Desenvolvimento 🎓", 3);
+
+		roundTrip(student, ByteBuffer.allocate(codec.encodedSize(student)), false);
+		roundTrip(student, ByteBuffer.allocateDirect(codec.encodedSize(student)), false);
+	}
+
+	/**
+	 * A surrogate without its pair is not valid UTF-16 and is encoded as the replacement character.
+	 */
+	private void unpairedSurrogate() {
+		var student = student("2026TSI", "Ana \uD83D Silva \uDE00", "TSI", 1);
+		var buffer = ByteBuffer.allocate(codec.encodedSize(student));
+
+		codec.encode(student, buffer);
+		check(!buffer.hasRemaining(), "encodedSize " + buffer.capacity() + " but wrote " + buffer.position());
+
+		var decoded = codec.decodeStudent(buffer.flip(), new GradeTable());
+		checkEqual("name", "Ana \uFFFD Silva \uFFFD", decoded.getName());
+	}
+
+	/**
+	 * Names whose UTF-8 lengths are at both sides of each varint size, counted in bytes rather than chars.
+	 */
+	private void varintBoundaries() {
+		int[][] lengths = {{0, 1}, {127, 1}, {128, 2}, {16_383, 2}, {16_384, 3}, {2_097_151, 3}, {2_097_152, 4}};
+
+		for(var length : lengths) {
+			var student = student("2026TSI", "a".repeat(length[0]), "TSI", 1);
+			var buffer = roundTrip(student, ByteBuffer.allocate(codec.encodedSize(student)), false);
+
+			checkEqual("varint size of " + length[0], length[1], varintSize(buffer, 1 + 1 + "2026TSI".length()));
+		}
+
+		var student = student("2026TSI", "é".repeat(64), "TSI", 1);
+		var buffer = roundTrip(student, ByteBuffer.allocate(codec.encodedSize(student)), false);
+		checkEqual("varint size of 64 two byte chars", 2, varintSize(buffer, 1 + 1 + "2026TSI".length()));
+	}
+
+	/**
+	 * Encoding into and decoding from buffers without an array, and across both kinds.
+	 */
+	private void directBuffers() {
+		for(int count = 0; count <= Student.MAX_SUBSCRIPTION_ALLWOED; count++) {
+			var student = student("2026TSI" + count, "Ção Ñ " + count, "TSI", count);
+			var size = codec.encodedSize(student);
+
+			roundTrip(student, ByteBuffer.allocateDirect(size), false);
+			roundTrip(student, ByteBuffer.allocate(size), true);
+			roundTrip(student, ByteBuffer.allocateDirect(size), true);
+		}
+	}
+
+	/**
+	 * Heap buffers whose arrays start before their content, written and read at a position past zero.
+	 */
+	private void bufferSlices() {
+		var student = student("2026TSI", "Maria Conceição", "TSI", 2);
+		var size = codec.encodedSize(student);
+		var slice = ByteBuffer.allocate(size + 16).position(9).slice();
+
+		slice.position(3);
+		codec.encode(student, slice);
+		checkEqual("bytes written", size, slice.position() - 3);
+
+		slice.flip().position(3);
+		checkStudent(student, codec.decodeStudent(slice, new GradeTable()));
+		check(!slice.hasRemaining(), "decoding left " + slice.remaining() + " bytes");
+	}
+
+	private void badVersion() {
+		var student = student("2026TSI", "Ana", "TSI", 1);
+		var buffer = encode(student);
+		buffer.put(0, (byte) (StudentCodec.FORMAT_VERSION + 1));
+
+		expect(IllegalArgumentException.class, () -> codec.decodeStudent(buffer, new GradeTable()));
+
+		var discipline = ByteBuffer.allocate(64);
+		codec.encode(new Discipline("Redes", 7), discipline);
+		discipline.flip().put(0, (byte) 0);
+
+		expect(IllegalArgumentException.class, () -> codec.decodeDiscipline(discipline));
+	}
+
+	/**
+	 * A length longer than 5 bytes and one over <code>Integer.MAX_VALUE</code>.
+	 */
+	private void malformedVarints() {
+		var tooLong = ByteBuffer.wrap(new byte[] {StudentCodec.FORMAT_VERSION, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+				(byte) 0x80, (byte) 0x80, 0});
+		expect(IllegalArgumentException.class, () -> codec.decodeStudent(tooLong, new GradeTable()));
+
+		var negative = ByteBuffer.wrap(new byte[] {StudentCodec.FORMAT_VERSION, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+				(byte) 0xFF, 0x0F});
+		expect(IllegalArgumentException.class, () -> codec.decodeStudent(negative, new GradeTable()));
+	}
+
+	private void tooManyDisciplines() {
+		var student = student("2026TSI", "Ana", "TSI", 0);
+		var buffer = encode(student);
+		buffer.put(buffer.limit() - 1, (byte) (Student.MAX_SUBSCRIPTION_ALLWOED + 1));
+
+		expect(IllegalArgumentException.class, () -> codec.decodeStudent(buffer, new GradeTable()));
+	}
+
+	/**
+	 * Every prefix of an encoded student and of an encoded discipline, in heap and direct buffers.
+	 */
+	private void truncatedInput() {
+		var student = student("2026ÇÃO", "José Conceição 😀", "TSI", Student.MAX_SUBSCRIPTION_ALLWOED);
+		var encoded = encode(student);
+
+		for(int length = 0; length < encoded.limit(); length++) {
+			for(var in : List.of(encoded.duplicate().limit(length), copyDirect(encoded.duplicate().limit(length)))) {
+				expect(BufferUnderflowException.class, () -> codec.decodeStudent(in, new GradeTable()));
+			}
+		}
+
+		var discipline = ByteBuffer.allocate(64);
+		codec.encode(new Discipline("Inglês", 7.5), discipline);
+		discipline.flip();
+
+		for(int length = 0; length < discipline.limit(); length++) {
+			var in = discipline.duplicate().limit(length);
+			expect(BufferUnderflowException.class, () -> codec.decodeDiscipline(in));
+		}
+	}
+
+	private void smallOutputBuffer() {
+		var student = student("2026TSI", "Ana Conceição", "TSI", 2);
+		var size = codec.encodedSize(student);
+
+		for(var out : List.of(ByteBuffer.allocate(size - 1), ByteBuffer.allocateDirect(size - 1)))
+			expect(BufferOverflowException.class, () -> codec.encode(student, out));
+	}
+
+	/**
+	 * Encodes a student into a buffer of its exact size and decodes it, from a direct copy if asked.
+	 *
+	 * @return the encoded bytes, flipped.
+	 */
+	private ByteBuffer roundTrip(Student student, ByteBuffer out, boolean decodeDirect) {
+		codec.encode(student, out);
+		check(!out.hasRemaining(), "encodedSize " + out.capacity() + " but wrote " + out.position());
+
+		var in = decodeDirect ? copyDirect(out.flip()) : out.flip();
+		checkStudent(student, codec.decodeStudent(in, new GradeTable()));
+		check(!in.hasRemaining(), "decoding left " + in.remaining() + " bytes");
+
+		return out.rewind();
+	}
+
+	private ByteBuffer encode(Student student) {
+		var buffer = ByteBuffer.allocate(codec.encodedSize(student));
+		codec.encode(student, buffer);
+
+		return buffer.flip();
+	}
+
+	private static void checkStudent(Student expected, Student actual) {
+		checkEqual("registration", expected.getRegistration(), actual.getRegistration());
+		checkEqual("name", expected.getName(), actual.getName());
+		checkEqual("course", expected.getCourse(), actual.getCourse());
+		checkEqual("disciplines count", expected.getEnrolledDisciplinesCount(), actual.getEnrolledDisciplinesCount());
+
+		var expectedDisciplines = disciplines(expected);
+		var actualDisciplines = disciplines(actual);
+
+		for(int i = 0; i < expectedDisciplines.size(); i++) {
+			var e = expectedDisciplines.get(i);
+			var a = actualDisciplines.get(i);
+
+			checkEqual("discipline " + i + " name", e.getName(), a.getName());
+			checkEqual("discipline " + i + " grade", (float) e.getGrade(), (float) a.getGrade());
+		}
+	}
+
+	private static List<Discipline> disciplines(Student student) {
+		var disciplines = new ArrayList<Discipline>();
+		student.forEachDiscipline((name, grade) -> disciplines.add(new Discipline(name, grade)));
+
+		return disciplines;
+	}
+
+	/**
+	 * Creates a student in a table of its own, so its course is not spelled like an earlier one.
+	 */
+	private static Student student(String registration, String name, String course, int disciplines) {
+		var student = new Student(new GradeTable(), registration, name, course);
+
+		for(int i = 0; i < disciplines; i++)
+			student.addDiscipline(DISCIPLINES[i], GRADES[i]);
+
+		return student;
+	}
+
+	private static ByteBuffer copyDirect(ByteBuffer buffer) {
+		return ByteBuffer.allocateDirect(buffer.remaining()).put(buffer.duplicate()).flip();
+	}
+
+	/**
+	 * @return the number of bytes of the varint at a position.
+	 */
+	private static int varintSize(ByteBuffer buffer, int position) {
+		var size = 1;
+		while(buffer.get(position + size - 1) < 0)
+			size++;
+
+		return size;
+	}
+
+	private static void expect(Class<? extends RuntimeException> expected, Runnable action) {
+		try {
+			action.run();
+		} catch (RuntimeException e) {
+			if(expected.isInstance(e))
+				return;
+
+			throw new IllegalStateException("Expected " + expected.getSimpleName() + " but got " + e, e);
+		}
+
+		throw new IllegalStateException("Expected " + expected.getSimpleName() + " but nothing was thrown");
+	}
+
+	private static void checkEqual(String field, Object expected, Object actual) {
+		check(expected.equals(actual), field + " was " + actual + " instead of " + expected);
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition)
+			throw new IllegalStateException(message);
+	}
+}
@@ -0,0 +1,65 @@
+package tsi.too.grade_control.bench;
+
+import java.util.ArrayDeque;
+
+/**
+ * The answers given by the headless dialogs of <code>bench/headless</code>, which replace the ones of
+ * <code>MessageDialog.jar</code> when the benchmarks run.
+ *
+ * Input dialogs take the scripted answers in order, or null when there are none, confirmations are always
+ * accepted and the messages shown are only counted, so the controllers run without a display.
+ */
+public final class DialogScript {
+	private static final ArrayDeque<Object> answers = new ArrayDeque<>();
+	private static long shownChars;
+	private static int shownMessages;
+
+	private DialogScript() {}
+
+	/**
+	 * Queues the answers of the next input dialogs.
+	 *
+	 * @param values the answers, in order.
+	 */
+	public static void answer(Object... values) {
+		for(var v : values)
+			answers.add(v == null ? Void.TYPE : v);
+	}
+
+	/**
+	 * @return the next scripted answer or null if there is none.
+	 */
+	public static Object next() {
+		var answer = answers.poll();
+
+		return answer == Void.TYPE ? null : answer;
+	}
+
+	/**
+	 * Counts a message that would be shown.
+	 *
+	 * @param message the message.
+	 */
+	public static void shown(Object message) {
+		shownMessages++;
+		shownChars += message == null ? 0 : message.toString().length();
+	}
+
+	/**
+	 * @return the number of chars shown, read by the benchmarks so the messages are not optimized away.
+	 */
+	public static long getShownChars() {
+		return shownChars;
+	}
+
+	public static int getShownMessages() {
+		return shownMessages;
+	}
+
+	/**
+	 * Discards the answers not used.
+	 */
+	public static void reset() {
+		answers.clear();
+	}
+}
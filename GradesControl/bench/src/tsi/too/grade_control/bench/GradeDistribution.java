@@ -0,0 +1,95 @@
+package tsi.too.grade_control.bench;
+
+import java.util.SplittableRandom;
+
+import tsi.too.grade_control.model.Discipline;
+
+/**
+ * Draws the grades of generated enrollments. The grades are rounded to one decimal place and kept between
+ * <code>Discipline.MIN_GRADE</code> and <code>Discipline.MAX_GRADE</code> by {@link #grade(SplittableRandom)}.
+ */
+@FunctionalInterface
+public interface GradeDistribution {
+
+	/**
+	 * @param random the source of random numbers.
+	 * @return a raw sample, any value.
+	 */
+	double sample(SplittableRandom random);
+
+	/**
+	 * @param random the source of random numbers.
+	 * @return a valid grade with one decimal place.
+	 */
+	default double grade(SplittableRandom random) {
+		var grade = Math.round(sample(random) * 10) / 10.0;
+
+		return Math.max(Discipline.MIN_GRADE, Math.min(Discipline.MAX_GRADE, grade));
+	}
+
+	/**
+	 * @return grades equally likely from 0 to 10.
+	 */
+	static GradeDistribution uniform() {
+		return random -> random.nextDouble() * Discipline.MAX_GRADE;
+	}
+
+	/**
+	 * @param mean the mean grade.
+	 * @param deviation the standard deviation.
+	 * @return grades normally distributed, the ones out of range are clamped.
+	 */
+	static GradeDistribution normal(double mean, double deviation) {
+		return random -> mean + deviation * gaussian(random);
+	}
+
+	/**
+	 * A class split between students who pass comfortably and students who fail.
+	 *
+	 * @param passing the share of students drawn around 8, from 0 to 1.
+	 * @return grades from two normal distributions, around 8 and around 3.5.
+	 */
+	static GradeDistribution bimodal(double passing) {
+		return random -> random.nextDouble() < passing ? 8 + 1.2 * gaussian(random) : 3.5 + 1.5 * gaussian(random);
+	}
+
+	/**
+	 * Reads a distribution from its description: <code>uniform</code>, <code>normal:mean:deviation</code> or
+	 * <code>bimodal:passing</code>.
+	 *
+	 * @param description the description.
+	 * @return the described distribution.
+	 * @throws IllegalArgumentException if the description is not valid.
+	 */
+	static GradeDistribution parse(String description) {
+		var parts = description.split(":");
+
+		try {
+			switch(parts[0]) {
+			case "uniform":
+				if(parts.length == 1)
+					return uniform();
+				break;
+			case "normal":
+				if(parts.length == 3)
+					return normal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+				break;
+			case "bimodal":
+				if(parts.length == 2)
+					return bimodal(Double.parseDouble(parts[1]));
+				break;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+
+		throw new IllegalArgumentException("Invalid grade distribution: " + description);
+	}
+
+	/**
+	 * Draws a standard normal sample with the Box-Muller transform.
+	 */
+	private static double gaussian(SplittableRandom random) {
+		return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+	}
+}
@@ -0,0 +1,30 @@
+package tsi.too.grade_control.bench;
+
+/**
+ * The kinds of operation in the streams of {@link WorkloadGenerator#operations(long, long, long, java.util.Map)}
+ * with their default weights, a mix where most operations are reads.
+ */
+public enum Operation {
+	/** Finds a student by name or by registration. */
+	SEARCH(60),
+	/** Queries the grade of a student in a discipline, not always one the student is enrolled in. */
+	QUERY_GRADE(20),
+	/** Updates the grade of a discipline of a student. */
+	UPDATE_GRADE(14),
+	/** Enrolls a student in another discipline. */
+	ADD_DISCIPLINE(3),
+	/** Registers a new student. */
+	REGISTER(2),
+	/** Removes a student. */
+	REMOVE(1);
+
+	private final int defaultWeight;
+
+	private Operation(int defaultWeight) {
+		this.defaultWeight = defaultWeight;
+	}
+
+	public int getDefaultWeight() {
+		return defaultWeight;
+	}
+}
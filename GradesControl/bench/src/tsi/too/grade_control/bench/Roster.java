@@ -0,0 +1,91 @@
+package tsi.too.grade_control.bench;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.ClassStatistics;
+import tsi.too.grade_control.repository.ConcurrentStudentRepository;
+import tsi.too.grade_control.repository.DisciplineIndex;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.repository.StudentSearchIndex;
+
+/**
+ * A class of students of a {@link WorkloadGenerator} wired to the same listeners used by the application,
+ * built from a fixed seed so every run measures the same data.
+ *
+ * The students are stored in the shared <code>GradeTable</code>, as the controllers expect, so
+ * {@link #release()} must be called before the next roster is built.
+ */
+public class Roster {
+	public static final String[] DISCIPLINES = WorkloadGenerator.getDisciplines();
+
+	private static final long SEED = 20201004;
+
+	private final WorkloadGenerator generator = new WorkloadGenerator(SEED);
+	private final Student[] students;
+	private final StudentRepository repository = new ConcurrentStudentRepository();
+	private final ClassStatistics statistics = new ClassStatistics();
+	private final StudentSearchIndex searchIndex = new StudentSearchIndex();
+	private final DisciplineIndex disciplines = new DisciplineIndex();
+
+	/**
+	 * Registers the first students of the generator.
+	 *
+	 * @param size the number of students.
+	 */
+	public Roster(int size) {
+		students = new Student[size];
+
+		repository.addListener(statistics);
+		repository.addListener(searchIndex);
+		repository.addListener(disciplines);
+
+		repository.batch(() -> {
+			for(int i = 0; i < size; i++) {
+				students[i] = generator.student(i);
+				repository.register(students[i]);
+			}
+		});
+	}
+
+	public int size() {
+		return students.length;
+	}
+
+	/**
+	 * @param i any number, wrapped to the roster size.
+	 * @return a student of the roster.
+	 */
+	public Student get(long i) {
+		return students[(int) Long.remainderUnsigned(i, students.length)];
+	}
+
+	/**
+	 * @return the generator of the students, which also generates operations over them.
+	 */
+	public WorkloadGenerator getGenerator() {
+		return generator;
+	}
+
+	public StudentRepository getRepository() {
+		return repository;
+	}
+
+	public ClassStatistics getStatistics() {
+		return statistics;
+	}
+
+	public StudentSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	public DisciplineIndex getDisciplines() {
+		return disciplines;
+	}
+
+	/**
+	 * Releases the rows and the ids of the students in the shared grade table.
+	 */
+	public void release() {
+		for(var s : students)
+			s.release();
+	}
+}
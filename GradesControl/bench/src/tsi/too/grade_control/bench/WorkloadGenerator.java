@@ -0,0 +1,635 @@
+package tsi.too.grade_control.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.service.Command;
+import tsi.too.grade_control.util.Pair;
+
+/**
+ * Generates students and streams of operations from a seed, for benchmarks and soak tests.
+ *
+ * Student <code>i</code> is drawn from its own random sequence, derived from the seed and <code>i</code>
+ * only, so any student can be regenerated without generating the previous ones and the same seed always
+ * gives the same class. Each student gets:
+ * <ul>
+ * <li>a course drawn with realistic weights and an admission year, which form a registration number in the
+ * format of <code>RegistrationAllocator</code>, with <code>i + 1</code> as the sequence so registrations are
+ * unique;</li>
+ * <li>a name with two given names and two surnames, taken from a shuffle of all the combinations, so names
+ * are unique up to {@link #CAPACITY} students;</li>
+ * <li>one to <code>Student.MAX_SUBSCRIPTION_ALLWOED</code> distinct disciplines of the course catalog, with
+ * grades of a configurable {@link GradeDistribution}.</li>
+ * </ul>
+ *
+ * The generator is not thread safe.
+ */
+public class WorkloadGenerator {
+	private static final String[] GIVEN_NAMES = {"Ana", "Beatriz", "Bruna", "Camila", "Carolina", "Clara",
+			"Daniela", "Eduarda", "Elisa", "Fernanda", "Gabriela", "Giovana", "Helena", "Isabela", "Jéssica", "Júlia",
+			"Larissa", "Laura", "Letícia", "Luana", "Luiza", "Manuela", "Maria", "Mariana", "Marina", "Natália",
+			"Patrícia", "Rafaela", "Renata", "Sofia", "Tatiana", "Valentina", "Vanessa", "Vitória", "Yasmin",
+			"Alice", "Amanda", "Bianca", "Cecília", "Débora", "Emanuelly", "Lívia", "Lorena", "Mirella", "Paula",
+			"Rebeca", "Sara", "Stella", "Talita", "Agatha", "Antônio", "Arthur", "Bernardo", "Bruno", "Caio",
+			"Carlos", "Daniel", "Davi", "Diego", "Eduardo", "Enzo", "Felipe", "Fernando", "Gabriel", "Guilherme",
+			"Gustavo", "Heitor", "Henrique", "Igor", "João", "Joaquim", "José", "Leonardo", "Lorenzo", "Lucas",
+			"Luiz", "Marcelo", "Marcos", "Matheus", "Miguel", "Murilo", "Nicolas", "Otávio", "Paulo", "Pedro",
+			"Rafael", "Renan", "Ricardo", "Rodrigo", "Samuel", "Theo", "Thiago", "Vicente", "Vinícius", "Vitor",
+			"Wagner", "William", "Yuri", "Benjamin", "Emanuel"};
+
+	private static final String[] SURNAMES = {"Silva", "Santos", "Oliveira", "Souza", "Rodrigues", "Ferreira",
+			"Alves", "Pereira", "Lima", "Gomes", "Costa", "Ribeiro", "Martins", "Carvalho", "Almeida", "Lopes",
+			"Soares", "Fernandes", "Vieira", "Barbosa", "Rocha", "Dias", "Nascimento", "Andrade", "Moreira", "Nunes",
+			"Marques", "Machado", "Mendes", "Freitas", "Cardoso", "Ramos", "Gonçalves", "Santana", "Teixeira",
+			"Araújo", "Pinto", "Correia", "Cavalcanti", "Monteiro", "Moura", "Campos", "Barros", "Castro", "Reis",
+			"Rezende", "Miranda", "Duarte", "Fonseca", "Batista", "Medeiros", "Cunha", "Borges", "Peixoto", "Pires",
+			"Xavier", "Farias", "Macedo", "Guimarães", "Brito", "Azevedo", "Siqueira", "Tavares", "Nogueira",
+			"Fagundes", "Figueiredo", "Queiroz", "Sales", "Assis", "Leite", "Coelho", "Bezerra", "Matos", "Amaral",
+			"Bastos", "Sampaio", "Prado", "Pacheco", "Magalhães", "Aguiar", "Cruz", "Vasconcelos", "Paiva",
+			"Viana", "Lacerda", "Dantas", "Moraes", "Bittencourt", "Toledo", "Quintana", "Valente", "Rangel",
+			"Coutinho", "Mello", "Brandão", "Serrano", "Lobo", "Meireles", "Porto", "Franco"};
+
+	/* The initials and name of each course and how likely they are */
+	private static final String[][] COURSES = {{"TSI", "Tecnologia em Sistemas para Internet"},
+			{"ADS", "Análise e Desenvolvimento de Sistemas"}, {"BCC", "Ciência da Computação"},
+			{"ECA", "Engenharia de Controle e Automação"}, {"LM", "Licenciatura em Matemática"},
+			{"ADM", "Administração"}, {"EC", "Engenharia Civil"}};
+	private static final int[] COURSE_WEIGHTS = {30, 25, 15, 10, 8, 7, 5};
+
+	private static final String[][] CATALOGS = {
+			{"Algoritmos", "Programação Web", "Banco de Dados", "Redes de Computadores", "Engenharia de Software",
+					"Sistemas Operacionais", "Inglês Técnico", "Matemática Discreta"},
+			{"Algoritmos", "Estruturas de Dados", "Banco de Dados", "Programação Orientada a Objetos",
+					"Engenharia de Software", "Análise de Sistemas", "Inglês Técnico", "Estatística"},
+			{"Algoritmos", "Estruturas de Dados", "Cálculo I", "Cálculo II", "Matemática Discreta",
+					"Teoria da Computação", "Compiladores", "Sistemas Operacionais", "Redes de Computadores"},
+			{"Cálculo I", "Cálculo II", "Física I", "Física II", "Circuitos Elétricos", "Controle Clássico",
+					"Eletrônica Digital", "Algoritmos"},
+			{"Cálculo I", "Cálculo II", "Álgebra Linear", "Geometria Analítica", "Estatística",
+					"Didática da Matemática", "Física I", "Português"},
+			{"Contabilidade", "Economia", "Marketing", "Gestão de Pessoas", "Estatística", "Direito Empresarial",
+					"Finanças", "Português"},
+			{"Cálculo I", "Física I", "Desenho Técnico", "Resistência dos Materiais", "Topografia",
+					"Mecânica dos Solos", "Estruturas de Concreto", "Geometria Analítica"}};
+
+	private static final byte[] CSV_HEADER = utf8("matricula,nome,curso,disciplina,nota\n");
+	private static final byte[][] CSV_GIVEN_NAMES = utf8(GIVEN_NAMES);
+	private static final byte[][] CSV_SURNAMES = utf8(SURNAMES);
+	private static final byte[][][] CSV_COURSES = utf8(COURSES);
+	private static final byte[][][] CSV_CATALOGS = utf8(CATALOGS);
+
+	/* How likely a student is enrolled in 1, 2, ... disciplines */
+	private static final int[] DISCIPLINE_COUNT_WEIGHTS = {15, 25, 30, 20, 10};
+
+	private static final int SURNAMES_AFTER_FIRST = SURNAMES.length - 1;
+	private static final int GIVEN_NAMES_AFTER_FIRST = GIVEN_NAMES.length - 1;
+
+	/**
+	 * The number of distinct names, the most students that can be generated.
+	 */
+	public static final long CAPACITY = (long) GIVEN_NAMES.length * GIVEN_NAMES_AFTER_FIRST * SURNAMES.length
+			* SURNAMES_AFTER_FIRST;
+
+	/**
+	 * The data drawn for a student, reused between students.
+	 */
+	private static class Sample {
+		int course;
+		int year;
+		int count;
+		final int[] disciplines = new int[Student.MAX_SUBSCRIPTION_ALLWOED];
+		final double[] grades = new double[Student.MAX_SUBSCRIPTION_ALLWOED];
+		final int[] name = new int[4];
+	}
+
+	/**
+	 * A growable byte buffer that writes itself to a stream when it is full, if it has one.
+	 */
+	private static class CsvBuffer {
+		private static final int BUFFER_SIZE = 1 << 16;
+
+		private final OutputStream out;
+		byte[] bytes = new byte[256];
+		int length;
+
+		CsvBuffer(OutputStream out) {
+			this.out = out;
+			if(out != null)
+				bytes = new byte[BUFFER_SIZE];
+		}
+
+		CsvBuffer append(byte[] value) throws IOException {
+			return append(value, value.length);
+		}
+
+		CsvBuffer append(byte[] value, int count) throws IOException {
+			ensure(count);
+			System.arraycopy(value, 0, bytes, length, count);
+			length += count;
+			return this;
+		}
+
+		CsvBuffer append(byte value) throws IOException {
+			ensure(1);
+			bytes[length++] = value;
+			return this;
+		}
+
+		CsvBuffer appendNumber(long value) throws IOException {
+			ensure(20);
+
+			var start = length;
+			do {
+				bytes[length++] = (byte) ('0' + value % 10);
+				value /= 10;
+			}while(value > 0);
+
+			for(int i = start, j = length - 1; i < j; i++, j--) {
+				var b = bytes[i];
+				bytes[i] = bytes[j];
+				bytes[j] = b;
+			}
+
+			return this;
+		}
+
+		void flush() throws IOException {
+			out.write(bytes, 0, length);
+			length = 0;
+		}
+
+		private void ensure(int count) throws IOException {
+			if(length + count <= bytes.length)
+				return;
+
+			if(out != null && count <= bytes.length) {
+				flush();
+				return;
+			}
+
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + count));
+		}
+	}
+
+	private final long seed;
+	private final long nameMultiplier;
+	private final long nameOffset;
+	private final Sample sample = new Sample();
+
+	private GradeDistribution grades = GradeDistribution.normal(6.5, 2);
+	private int firstYear = 2016;
+	private int lastYear = 2020;
+
+	public WorkloadGenerator(long seed) {
+		this.seed = seed;
+
+		var random = new SplittableRandom(seed);
+		var multiplier = 1 + random.nextLong(CAPACITY - 1);
+		while(gcd(multiplier, CAPACITY) != 1)
+			multiplier++;
+
+		this.nameMultiplier = multiplier;
+		this.nameOffset = random.nextLong(CAPACITY);
+	}
+
+	/**
+	 * @return the names of the disciplines of every course catalog, without repetitions.
+	 */
+	public static String[] getDisciplines() {
+		var names = new LinkedHashSet<String>();
+		for(var catalog : CATALOGS)
+			names.addAll(Arrays.asList(catalog));
+
+		return names.toArray(new String[0]);
+	}
+
+	/**
+	 * @param grades the distribution of the grades, normal with mean 6.5 and deviation 2 by default.
+	 * @return this generator.
+	 */
+	public WorkloadGenerator withGrades(GradeDistribution grades) {
+		this.grades = grades;
+		return this;
+	}
+
+	/**
+	 * @param first the first admission year, 2016 by default.
+	 * @param last the last admission year, 2020 by default.
+	 * @return this generator.
+	 */
+	public WorkloadGenerator withYears(int first, int last) {
+		if(first > last)
+			throw new IllegalArgumentException("The first year is after the last one");
+
+		this.firstYear = first;
+		this.lastYear = last;
+		return this;
+	}
+
+	/**
+	 * @param i the student number, from 0 to <code>CAPACITY - 1</code>.
+	 * @return the name of the student.
+	 */
+	public String getName(long i) {
+		var parts = nameParts(i);
+
+		return GIVEN_NAMES[parts[0]] + ' ' + GIVEN_NAMES[parts[1]] + ' ' + SURNAMES[parts[2]] + ' '
+				+ SURNAMES[parts[3]];
+	}
+
+	/**
+	 * @param i the student number.
+	 * @return the registration number of the student.
+	 */
+	public String getRegistration(long i) {
+		draw(i);
+		return registration(i);
+	}
+
+	/**
+	 * Creates a student with its disciplines, not registered in any roster.
+	 *
+	 * @param i the student number.
+	 * @return the created student.
+	 */
+	public Student student(long i) {
+		draw(i);
+
+		var catalog = CATALOGS[sample.course];
+		var student = new Student(registration(i), getName(i), COURSES[sample.course][1]);
+
+		for(int j = 0; j < sample.count; j++)
+			student.addDiscipline(catalog[sample.disciplines[j]], sample.grades[j]);
+
+		return student;
+	}
+
+	/**
+	 * Creates the command that registers a student with its disciplines.
+	 *
+	 * @param i the student number.
+	 * @return the command.
+	 */
+	public Command.RegisterStudent registerCommand(long i) {
+		draw(i);
+
+		var catalog = CATALOGS[sample.course];
+		var disciplines = new ArrayList<Pair<String, Double>>(sample.count);
+
+		for(int j = 0; j < sample.count; j++)
+			disciplines.add(new Pair<>(catalog[sample.disciplines[j]], sample.grades[j]));
+
+		return new Command.RegisterStudent(registration(i), COURSES[sample.course][0], getName(i),
+				COURSES[sample.course][1], disciplines);
+	}
+
+	/**
+	 * Registers the students <code>0</code> to <code>count - 1</code> in a single batch.
+	 *
+	 * @param students the roster.
+	 * @param count the number of students.
+	 * @return the number of students registered, less than <code>count</code> if some were already there.
+	 */
+	public long populate(StudentRepository students, long count) {
+		var registered = new long[1];
+
+		students.batch(() -> {
+			for(long i = 0; i < count; i++) {
+				if(students.register(student(i)))
+					registered[0]++;
+			}
+		});
+
+		return registered[0];
+	}
+
+	/**
+	 * Writes the students <code>0</code> to <code>count - 1</code> as the roster CSV read by
+	 * <code>StudentImporter</code>, one line per enrollment, in UTF-8.
+	 *
+	 * The names are written from their parts encoded once, so no string is created per student.
+	 *
+	 * @param out the target, it is not buffered or closed here.
+	 * @param count the number of students.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeCsv(OutputStream out, long count) throws IOException {
+		var csv = new CsvBuffer(out);
+		var prefix = new CsvBuffer(null);
+
+		csv.append(CSV_HEADER);
+
+		for(long i = 0; i < count; i++) {
+			draw(i);
+
+			var parts = nameParts(i);
+			var catalog = CSV_CATALOGS[sample.course];
+
+			prefix.length = 0;
+			prefix.append(CSV_COURSES[sample.course][0]).appendNumber(sample.year).append((byte) '-');
+			if(i + 1 < 10)
+				prefix.append((byte) '0');
+			prefix.appendNumber(i + 1).append((byte) ',')
+				.append(CSV_GIVEN_NAMES[parts[0]]).append((byte) ' ').append(CSV_GIVEN_NAMES[parts[1]]).append((byte) ' ')
+				.append(CSV_SURNAMES[parts[2]]).append((byte) ' ').append(CSV_SURNAMES[parts[3]]).append((byte) ',')
+				.append(CSV_COURSES[sample.course][1]).append((byte) ',');
+
+			for(int j = 0; j < sample.count; j++) {
+				var tenths = Math.round(sample.grades[j] * 10);
+
+				csv.append(prefix.bytes, prefix.length).append(catalog[sample.disciplines[j]]).append((byte) ',')
+					.appendNumber(tenths / 10).append((byte) '.').appendNumber(tenths % 10).append((byte) '\n');
+			}
+		}
+
+		csv.flush();
+	}
+
+	/**
+	 * Creates a stream of operations over the students, with the default weights of {@link Operation}.
+	 *
+	 * @see #operations(long, long, long, Map)
+	 */
+	public Iterator<Command> operations(long seed, long students, long count) {
+		var weights = new EnumMap<Operation, Integer>(Operation.class);
+		for(var operation : Operation.values())
+			weights.put(operation, operation.getDefaultWeight());
+
+		return operations(seed, students, count, weights);
+	}
+
+	/**
+	 * Creates a stream of operations over the students generated by this generator. The targets are drawn
+	 * uniformly among the students <code>0</code> to <code>students - 1</code> and the ones registered by the
+	 * stream, which are numbered from <code>students</code> on. Operations on removed students are kept, as
+	 * they happen in a real class.
+	 *
+	 * @param seed the seed of the stream, apart from the seed of the students.
+	 * @param students the number of students already in the roster.
+	 * @param count the number of operations.
+	 * @param weights how likely each operation is, the missing ones never happen.
+	 * @return the operations, as commands for <code>GradeService</code>.
+	 */
+	public Iterator<Command> operations(long seed, long students, long count, Map<Operation, Integer> weights) {
+		var operations = Operation.values();
+		var cumulative = new int[operations.length];
+		var total = 0;
+
+		for(int i = 0; i < operations.length; i++)
+			cumulative[i] = total += Math.max(0, weights.getOrDefault(operations[i], 0));
+
+		if(total == 0)
+			throw new IllegalArgumentException("No operation has a positive weight");
+
+		var weightsTotal = total;
+
+		return new Iterator<Command>() {
+			private final SplittableRandom random = new SplittableRandom(seed);
+			private long produced;
+			private long population = students;
+
+			@Override
+			public boolean hasNext() {
+				return produced < count;
+			}
+
+			@Override
+			public Command next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+
+				produced++;
+
+				var pick = random.nextInt(weightsTotal);
+				var operation = 0;
+				while(cumulative[operation] <= pick)
+					operation++;
+
+				if(operations[operation] == Operation.REGISTER)
+					return registerCommand(population++);
+
+				if(population == 0)
+					return registerCommand(population++);
+
+				var target = random.nextLong(population);
+
+				switch(operations[operation]) {
+				case SEARCH:
+					return new Command.FindStudent(random.nextInt(10) < 7 ? getName(target) : getRegistration(target));
+				case QUERY_GRADE:
+					return new Command.QueryGrade(getName(target), pickDiscipline(target, random.nextInt(10) < 8));
+				case UPDATE_GRADE:
+					return new Command.UpdateGrade(getRegistration(target), pickDiscipline(target, true),
+							grades.grade(random));
+				case ADD_DISCIPLINE:
+					return new Command.AddDiscipline(getRegistration(target), pickDiscipline(target, false),
+							grades.grade(random));
+				default:
+					return new Command.RemoveStudent(getRegistration(target));
+				}
+			}
+
+			/**
+			 * Picks one of the disciplines the student was generated with, or any of the catalog of its course.
+			 */
+			private String pickDiscipline(long target, boolean enrolled) {
+				draw(target);
+
+				var catalog = CATALOGS[sample.course];
+
+				return catalog[enrolled ? sample.disciplines[random.nextInt(sample.count)] : random.nextInt(catalog.length)];
+			}
+		};
+	}
+
+	/**
+	 * Writes a roster CSV. Options: <code>--students n</code>, <code>--seed n</code>,
+	 * <code>--grades uniform|normal:mean:deviation|bimodal:passing</code>, <code>--years first-last</code> and
+	 * <code>--out file</code>, the standard output by default.
+	 */
+	public static void main(String[] args) throws IOException {
+		long students = -1;
+		long seed = 1;
+		GradeDistribution grades = null;
+		int[] years = null;
+		Path out = null;
+
+		try {
+			for(int i = 0; i + 1 < args.length; i += 2) {
+				switch(args[i]) {
+				case "--students":
+					students = Long.parseLong(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				case "--grades":
+					grades = GradeDistribution.parse(args[i + 1]);
+					break;
+				case "--years":
+					var range = args[i + 1].split("-");
+					years = new int[] {Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1])};
+					break;
+				case "--out":
+					out = Path.of(args[i + 1]);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			if(students < 0 || students > CAPACITY || args.length % 2 != 0)
+				throw new IllegalArgumentException("Usage: --students n [--seed n] [--grades distribution] "
+						+ "[--years first-last] [--out file]");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+			return;
+		}
+
+		var generator = new WorkloadGenerator(seed);
+		if(grades != null)
+			generator.withGrades(grades);
+		if(years != null)
+			generator.withYears(years[0], years[1]);
+
+		if(out == null) {
+			generator.writeCsv(System.out, students);
+			System.out.flush();
+			return;
+		}
+
+		try(var stream = Files.newOutputStream(out)) {
+			generator.writeCsv(stream, students);
+		}
+	}
+
+	/**
+	 * Picks the name of a student from a shuffle of the combinations of two distinct given names and two
+	 * distinct surnames.
+	 *
+	 * @return the indexes of the given names and of the surnames.
+	 */
+	private int[] nameParts(long i) {
+		var combination = Math.floorMod(nameMultiplier * index(i) + nameOffset, CAPACITY);
+		var parts = sample.name;
+
+		parts[0] = (int) (combination % GIVEN_NAMES.length);
+		combination /= GIVEN_NAMES.length;
+		parts[1] = (parts[0] + 1 + (int) (combination % GIVEN_NAMES_AFTER_FIRST)) % GIVEN_NAMES.length;
+		combination /= GIVEN_NAMES_AFTER_FIRST;
+		parts[2] = (int) (combination % SURNAMES.length);
+		combination /= SURNAMES.length;
+		parts[3] = (parts[2] + 1 + (int) combination) % SURNAMES.length;
+
+		return parts;
+	}
+
+	private void draw(long i) {
+		var random = new SplittableRandom(seed ^ mix(index(i)));
+		var catalog = CATALOGS[sample.course = weighted(random, COURSE_WEIGHTS)];
+
+		sample.year = firstYear + random.nextInt(lastYear - firstYear + 1);
+		sample.count = 1 + weighted(random, DISCIPLINE_COUNT_WEIGHTS);
+
+		for(int j = 0; j < sample.count; j++) {
+			int discipline;
+			do {
+				discipline = random.nextInt(catalog.length);
+			}while(contains(sample.disciplines, j, discipline));
+
+			sample.disciplines[j] = discipline;
+			sample.grades[j] = grades.grade(random);
+		}
+	}
+
+	/**
+	 * Formats the registration of the last drawn student.
+	 */
+	private String registration(long i) {
+		var sequence = i + 1;
+
+		return COURSES[sample.course][0] + sample.year + (sequence < 10 ? "-0" : "-") + sequence;
+	}
+
+	private static byte[] utf8(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[][] utf8(String[] values) {
+		var bytes = new byte[values.length][];
+		for(int i = 0; i < values.length; i++)
+			bytes[i] = utf8(values[i]);
+
+		return bytes;
+	}
+
+	private static byte[][][] utf8(String[][] values) {
+		var bytes = new byte[values.length][][];
+		for(int i = 0; i < values.length; i++)
+			bytes[i] = utf8(values[i]);
+
+		return bytes;
+	}
+
+	private static long index(long i) {
+		if(i < 0 || i >= CAPACITY)
+			throw new IllegalArgumentException("Student out of range: " + i);
+
+		return i;
+	}
+
+	private static int weighted(SplittableRandom random, int[] weights) {
+		var total = 0;
+		for(var w : weights)
+			total += w;
+
+		var pick = random.nextInt(total);
+		var i = 0;
+		while((pick -= weights[i]) >= 0)
+			i++;
+
+		return i;
+	}
+
+	private static boolean contains(int[] values, int count, int value) {
+		for(int i = 0; i < count; i++) {
+			if(values[i] == value)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * The finalizer of SplitMix64, so the sequences of neighbouring students are not correlated.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static long gcd(long a, long b) {
+		while(b != 0) {
+			var t = a % b;
+			a = b;
+			b = t;
+		}
+
+		return a;
+	}
+}
@@ -30,6 +30,7 @@ public interface Constants {
 	String GRADE_MUST_BE_BETWEEN_ZERO_AND_TEN = "Nota deve ser entre 0 e 10";
 	String STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE = "Aluno ja matriculado nesta disciplina";
 	String STUDENT_NOT_FOUND = "Aluno não encontrado.";
+	String DID_YOU_MEAN = "Aluno não encontrado. Você quis dizer:";
 	String DISCIPLINES = "Disciplinas";
 	String STUDENT_DATA = "Dados do aluno";
 	String ARE_YOU_SURE_YOU_WANT_TO_DELETE_THIS_STUDENT = "Tem a certeza de que deseja remover este aluno?";
@@ -38,6 +39,7 @@ public interface Constants {
 	String STUDENT_NAME = "Nome do aluno";
 	String DISCIPLINE_NAME = "Nome da disciplina";
 	String THIS_FIELD_CANNOT_BE_EMPTY = "Este campo não pode ser vazio";
+	String TEXT_TOO_LONG = "%s: no máximo %d caracteres";
 	String THE_STUDENT_IS_NOT_ENROLLED_ON_THIS_SUBJECT = "O aluno %s não está matriculado nesta disciplina.";
 	String DISCIPLINE_ENROLLMENT = "Registro em disciplinas.";
 	String STUDENT_SUCCESSFULY_REGISTERED = "Aluno registrado com sucesso.";
@@ -50,6 +52,68 @@ public interface Constants {
 	String NUMBER_OF_REPROVEDS = "Número de reprovados";
 	String PERCENTAGE_OF_APPROVED = "Percentual de aprovados";
 	String PERCENTAGE_OF_REPROVED = "Percentual de reprovados";
+	String AVERAGE_BY_DISCIPLINE = "Média por disciplina";
+	String GRADE_DISTRIBUTION = "Distribuição de notas";
+	String DISCIPLINE_REPORT = "Relatório por disciplina";
+	String REPORT_AS_OF = "Relatório em uma data";
+	String REPORT_DATE = "Data (dd/mm/aaaa)";
+	String DATE_PATTERN = "dd/MM/uuuu";
+	String INVALID_DATE = "Data inválida";
+	String ENTRY_YEAR = "Ano de ingresso (vazio para todos)";
+	String NO_STUDENTS_IN_THIS_YEAR = "Nenhum aluno ingressou neste ano";
+	String RANKING = "Ranking de alunos";
+	String CHOOSE_RANKING = "Escolha a consulta";
+	String HIGHEST_AVERAGES = "Melhores médias";
+	String LOWEST_AVERAGES = "Piores médias";
+	String LOWEST_GRADES_IN_DISCIPLINE = "Piores notas de uma disciplina";
+	String STUDENTS_AT_RISK = "Alunos em risco de reprovação";
+	String NUMBER_OF_STUDENTS_TO_SHOW = "Quantidade de alunos";
+	String NUMBER_MUST_BE_POSITIVE = "A quantidade deve ser maior que 0";
+	String PERCENTAGE_OF_STUDENTS = "Percentual de alunos";
+	String PERCENTAGE_MUST_BE_BETWEEN_ZERO_AND_HUNDRED = "Percentual deve ser entre 0 e 100";
+	String ENROLLED_STUDENTS = "Alunos matriculados";
+	String MEAN = "Média";
+	String MEDIAN = "Mediana";
+	String LOWEST_GRADE = "Menor nota";
+	String HIGHEST_GRADE = "Maior nota";
+	String SHOW_NEXT_PAGE = "Exibir a próxima página?\n\nSe não, o resumo será exibido.";
+	String COULD_NOT_LOAD_SAVED_DATA = "Não foi possível carregar os dados salvos, as alterações não serão salvas.\n\n%s";
+	String COULD_NOT_SAVE_DATA = "Não foi possível salvar os dados.\n\n%s";
+	String COULD_NOT_EXPORT_DATA = "Não foi possível exportar os dados.\n\n%s";
+	String SAVING_STOPPED = "Não foi possível salvar uma alteração, as próximas não serão salvas.\n\n%s";
+	String COULD_NOT_COMPACT_DATA = "Não foi possível compactar os dados salvos, será feito novamente ao sair.\n\n%s";
+	String IMPORT_STUDENTS = "Importar alunos (CSV)";
+	String CSV_FILE_PATH = "Caminho do arquivo CSV";
+	String COULD_NOT_READ_FILE = "Não foi possível ler o arquivo.\n\n%s";
+	String INVALID_IMPORT_ROW = "Linha inválida, esperado: matrícula ou sigla do curso, nome, curso, disciplina, nota";
+	String MAX_DISCIPLINES_REACHED = "Aluno já matriculado no máximo de disciplinas";
+	String IMPORTED_ROWS = "Linhas importadas";
+	String IMPORTED_STUDENTS = "Alunos importados";
+	String REJECTED_ROWS = "Linhas rejeitadas";
+	String LINE = "Linha";
+	String IMPORT_ARGUMENT = "--import";
+	String EXPORT_ARGUMENT = "--export";
+	String SERVE_ARGUMENT = "--serve";
+	String SERVER_LISTENING = "Servidor ouvindo em http://%s:%d/";
+	String COULD_NOT_START_SERVER = "Não foi possível iniciar o servidor.\n\n%s";
+	String INVALID_PORT = "Porta inválida: %s, esperado um número de 0 a 65535";
+	String NAME_OR_REGISTRATION_REQUIRED = "Informe o nome ou a matrícula do aluno";
+	String AT_LEAST_ONE_DISCIPLINE_REQUIRED = "O aluno deve estar inscrito em pelo menos uma disciplina";
+	String INVALID_REQUEST_BODY = "Conteúdo da requisição inválido";
+	String DATA_DIRECTORY_PROPERTY = "grades_control.data";
+	String DEFAULT_DATA_DIRECTORY = "data";
+	String REPORT_CHUNK_SIZE_PROPERTY = "grades_control.report.chunk_size";
+	String REPORT_PARALLELISM_PROPERTY = "grades_control.report.parallelism";
+	String RENDER_CACHE_BYTES_PROPERTY = "grades_control.render_cache.bytes";
+	String METRICS_FILE_PROPERTY = "grades_control.metrics.file";
+	String METRICS_INTERVAL_PROPERTY = "grades_control.metrics.interval";
+	String COULD_NOT_WRITE_METRICS = "Não foi possível gravar as métricas.\n\n%s";
+	String BACKGROUND_TASKS = "Tarefas em andamento";
+	String NO_TASKS_RUNNING = "Nenhuma tarefa em andamento";
+	String CHOOSE_TASK_TO_CANCEL = "Escolha uma tarefa para cancelar";
+	String IN_PROGRESS = "em andamento";
+	String CANCEL_TASK = "Cancelar a tarefa %s?";
+	String TASK_CANCELLED = "Tarefa cancelada";
 	String NO_DATA_FOUND = "Nenhum dado encontrado";
 	String ENROLL_IN_ANOTHER_DISCIPLINE = "Inscrever em outra disciplina?";
 	String STUDENT_MUST_BE_ENROLLED_IN_A_DISCIPLINE_AT_LEAST_CANCEL_REGISTRATION = "O aluno deve estar inscrito em pelo menos uma disciplina para realizar o registro.\n\n"
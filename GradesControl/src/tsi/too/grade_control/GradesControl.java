@@ -1,31 +1,299 @@
 package tsi.too.grade_control;
 
-import java.util.ArrayList;
+import static tsi.too.grade_control.Constants.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import tsi.too.grade_control.controller.MenuController;
-import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.io.StudentExporter;
+import tsi.too.grade_control.io.StudentImporter;
+import tsi.too.grade_control.metrics.Metrics;
+import tsi.too.grade_control.metrics.MetricsDump;
+import tsi.too.grade_control.persistence.RosterJournal;
+import tsi.too.grade_control.report.ClassStatistics;
+import tsi.too.grade_control.report.RenderCache;
+import tsi.too.grade_control.repository.ConcurrentStudentRepository;
+import tsi.too.grade_control.repository.DisciplineIndex;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.repository.StudentSearchIndex;
+import tsi.too.grade_control.repository.YearPartition;
+import tsi.too.grade_control.server.GradesServer;
+import tsi.too.message_dialog.MessageDialog;
 
 public class GradesControl {
 	/* We can remove this here and define it as an instance variable of the StudentController class.
 	 * I left it here because it is requested in the statement of the problem.
+	 * It used to be a plain ArrayList, the repository keeps the same order, indexes name and registration and
+	 * can be shared by several threads.
 	 */
-	private ArrayList<Student> students; 
+	private StudentRepository students; 
+	private ClassStatistics statistics;
+	private StudentSearchIndex searchIndex;
+	private DisciplineIndex disciplines;
+	private YearPartition years;
+	private RosterJournal journal;
+	private MetricsDump metricsDump;
 	private MenuController controller;
+	private IOException loadError;
 	
 	public GradesControl() {
+		statistics = new ClassStatistics();
+		searchIndex = new StudentSearchIndex();
+		disciplines = new DisciplineIndex();
+		years = new YearPartition();
 		students = createClass();
-		controller = MenuController.getInstance(students);
+		controller = MenuController.getInstance(students, statistics, searchIndex, disciplines, years);
 	}
 	
-	private ArrayList<Student>createClass(){
-		return new ArrayList<>();
+	/**
+	 * Creates the class, loading the students saved in the data directory.
+	 * The directory can be changed through the <code>grades_control.data</code> system property.
+	 * 
+	 * @return the loaded class.
+	 */
+	private StudentRepository createClass(){
+		var students = new ConcurrentStudentRepository();
+		students.addListener(statistics);
+		students.addListener(searchIndex);
+		students.addListener(disciplines);
+		students.addListener(years);
+		students.addListener(RegistrationAllocator.getInstance());
+		students.addListener(RenderCache.getInstance());
+		Metrics.getInstance().gauge("roster_students", students::size);
+		Metrics.getInstance().gauge("render_cache_bytes", RenderCache.getInstance()::getBytes);
+		Metrics.getInstance().gauge("render_cache_hits", RenderCache.getInstance()::getHits);
+		Metrics.getInstance().gauge("render_cache_misses", RenderCache.getInstance()::getMisses);
+		
+		try {
+			journal = RosterJournal.open(Paths.get(System.getProperty(DATA_DIRECTORY_PROPERTY, DEFAULT_DATA_DIRECTORY)));
+			journal.setFailureListener(new RosterJournal.FailureListener() {
+				@Override
+				public void writeFailed(IOException failure) {
+					System.err.println(String.format(SAVING_STOPPED, failure.getMessage()));
+				}
+				
+				@Override
+				public void compactionFailed(Exception failure) {
+					System.err.println(String.format(COULD_NOT_COMPACT_DATA, failure.getMessage()));
+				}
+			});
+			journal.recover(students);
+		} catch (IOException e) {
+			journal = null;
+			loadError = e;
+		}
+		
+		return students;
 	}
 	
 	public void execute() {
+		if(loadError != null)
+			MessageDialog.showAlertDialog(GRADES_CONTROLLER, String.format(COULD_NOT_LOAD_SAVED_DATA, loadError.getMessage()));
+		
+		try {
+			startMetricsDump();
+		} catch (IOException e) {
+			MessageDialog.showAlertDialog(GRADES_CONTROLLER, String.format(COULD_NOT_WRITE_METRICS, e.getMessage()));
+		}
+		
 		controller.showMenu();
+		
+		try {
+			save();
+		} catch (IOException e) {
+			MessageDialog.showAlertDialog(GRADES_CONTROLLER, String.format(COULD_NOT_SAVE_DATA, e.getMessage()));
+		}
+		
+		try {
+			stopMetricsDump();
+		} catch (IOException e) {
+			MessageDialog.showAlertDialog(GRADES_CONTROLLER, String.format(COULD_NOT_WRITE_METRICS, e.getMessage()));
+		}
+	}
+	
+	/**
+	 * Imports a CSV file without showing any dialog, the result is written to the standard output.
+	 * 
+	 * @param file the CSV file.
+	 * @return true if the file was read and the class saved.
+	 */
+	public boolean importCsv(Path file) {
+		if(loadError != null) {
+			System.err.println(String.format(COULD_NOT_LOAD_SAVED_DATA, loadError.getMessage()));
+			return false;
+		}
+		
+		try(var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			var importer = new StudentImporter(students, RegistrationAllocator.getInstance());
+			System.out.println(importer.importCsv(in).toReportString(Integer.MAX_VALUE));
+		} catch (IOException e) {
+			System.err.println(String.format(COULD_NOT_READ_FILE, e.getMessage()));
+			return false;
+		}
+		
+		try {
+			save();
+		} catch (IOException e) {
+			System.err.println(String.format(COULD_NOT_SAVE_DATA, e.getMessage()));
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Exports the class to CSV and JSON files without showing any dialog.
+	 * 
+	 * @param directory where the files are written.
+	 * @return true if all the files were written.
+	 * @see StudentExporter#exportAll(Path)
+	 */
+	public boolean exportTo(Path directory) {
+		if(loadError != null) {
+			System.err.println(String.format(COULD_NOT_LOAD_SAVED_DATA, loadError.getMessage()));
+			return false;
+		}
+		
+		try {
+			new StudentExporter(students, statistics).exportAll(directory);
+		} catch (IOException e) {
+			System.err.println(String.format(COULD_NOT_EXPORT_DATA, e.getMessage()));
+			return false;
+		}
+		
+		try {
+			save();
+		} catch (IOException e) {
+			System.err.println(String.format(COULD_NOT_SAVE_DATA, e.getMessage()));
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Serves the class over HTTP until the process is stopped, saving it on the way out.
+	 * 
+	 * @param port the port to listen to on the loopback interface.
+	 * @return true if the server started.
+	 * @see GradesServer
+	 */
+	public boolean serve(int port) {
+		if(loadError != null) {
+			System.err.println(String.format(COULD_NOT_LOAD_SAVED_DATA, loadError.getMessage()));
+			return false;
+		}
+		
+		GradesServer server;
+		try {
+			server = new GradesServer(students, statistics, searchIndex, disciplines,
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		} catch (IOException e) {
+			System.err.println(String.format(COULD_NOT_START_SERVER, e.getMessage()));
+			return false;
+		}
+		
+		try {
+			startMetricsDump();
+		} catch (IOException e) {
+			System.err.println(String.format(COULD_NOT_WRITE_METRICS, e.getMessage()));
+		}
+		
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.close();
+			
+			try {
+				save();
+			} catch (IOException e) {
+				System.err.println(String.format(COULD_NOT_SAVE_DATA, e.getMessage()));
+			}
+			
+			try {
+				stopMetricsDump();
+			} catch (IOException e) {
+				System.err.println(String.format(COULD_NOT_WRITE_METRICS, e.getMessage()));
+			}
+		}));
+		
+		server.start();
+		System.out.println(String.format(SERVER_LISTENING, server.getAddress().getHostString(), server.getAddress().getPort()));
+		
+		return true;
 	}
 	
+	/**
+	 * Starts writing the metrics to the file given by the <code>grades_control.metrics.file</code> system
+	 * property, every <code>grades_control.metrics.interval</code> seconds. Nothing is written without the
+	 * property, the metrics are still available through JMX.
+	 */
+	private void startMetricsDump() throws IOException {
+		var file = System.getProperty(METRICS_FILE_PROPERTY);
+		if(file == null)
+			return;
+		
+		var interval = Long.getLong(METRICS_INTERVAL_PROPERTY, MetricsDump.DEFAULT_INTERVAL_SECONDS);
+		metricsDump = MetricsDump.start(Metrics.getInstance(), Paths.get(file), Math.max(1, interval));
+	}
+	
+	private void stopMetricsDump() throws IOException {
+		if(metricsDump != null)
+			metricsDump.close();
+	}
+	
+	private void save() throws IOException {
+		if(journal != null)
+			journal.close(students);
+	}
+	
+	/**
+	 * Shows the menu or, when called with <code>--import &lt;file&gt;</code> or
+	 * <code>--export &lt;directory&gt;</code>, imports or exports the class and exits. With
+	 * <code>--serve [port]</code> the class is served over HTTP instead of the menu.
+	 */
 	public static void main(String[] args) {
+		if(args.length == 2 && IMPORT_ARGUMENT.equals(args[0])) {
+			System.exit(new GradesControl().importCsv(Paths.get(args[1])) ? 0 : 1);
+			return;
+		}
+		
+		if(args.length == 2 && EXPORT_ARGUMENT.equals(args[0])) {
+			System.exit(new GradesControl().exportTo(Paths.get(args[1])) ? 0 : 1);
+			return;
+		}
+		
+		if(args.length >= 1 && args.length <= 2 && SERVE_ARGUMENT.equals(args[0])) {
+			var port = args.length == 2 ? parsePort(args[1]) : GradesServer.DEFAULT_PORT;
+			
+			if(port < 0 || !new GradesControl().serve(port))
+				System.exit(1);
+			return;
+		}
+		
 		new GradesControl().execute();
 	}
+	
+	/**
+	 * @return the port or -1, after printing the error, if the text is not a port number.
+	 */
+	private static int parsePort(String text) {
+		try {
+			var port = Integer.parseInt(text);
+			
+			if(port >= 0 && port <= 65535)
+				return port;
+		} catch (NumberFormatException e) {
+			// Reported below like a port out of range
+		}
+		
+		System.err.println(String.format(INVALID_PORT, text));
+		
+		return -1;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package tsi.too.grade_control.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the long actions of the menu on background threads, so the menu can be used while they run.
+ *
+ * The dialogs are modal and are always shown by the thread that owns the menu, the UI thread. An action
+ * running in the background asks for a dialog through {@link Task#dialog(Supplier, Object)}, which queues
+ * it and waits for the UI thread to show it. Right after submitting an action, the UI thread shows the
+ * dialogs of the action as they come, so a quick action looks the same as before. Once the action computes
+ * for longer than <code>FOREGROUND_MILLIS</code> without asking for a dialog, the UI thread goes back to
+ * the menu and the dialogs queued meanwhile are shown the next time an option is chosen.
+ *
+ * The actions run on virtual threads when the JVM has them, on daemon threads otherwise.
+ */
+public class ActionDispatcher {
+	/**
+	 * How long the UI thread waits for the next dialog of a submitted action before going back to the menu.
+	 */
+	public static final long FOREGROUND_MILLIS = 500;
+
+	private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+	/**
+	 * An action submitted to the dispatcher, which reports its progress and can be cancelled.
+	 */
+	public class Task {
+		private final String name;
+		private final FutureTask<Void> future;
+		private volatile long done;
+		private volatile long total;
+
+		private Task(String name, Consumer<Task> action) {
+			this.name = name;
+			this.future = new FutureTask<>(() -> action.accept(this), null);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @param done how much of the work is done.
+		 * @param total the whole work, 0 if it is not known yet.
+		 */
+		public void setProgress(long done, long total) {
+			this.done = done;
+			this.total = total;
+		}
+
+		/**
+		 * @return the share of the work done, from 0 to 1, or -1 if it is not known.
+		 */
+		public double getProgress() {
+			var total = this.total;
+
+			return total <= 0 ? -1 : Math.min(1, (double) done / total);
+		}
+
+		/**
+		 * Stops the action: its pending dialogs are dropped and its thread is interrupted, the action should
+		 * check {@link #isCancelled()} between steps.
+		 */
+		public void cancel() {
+			future.cancel(true);
+		}
+
+		public boolean isCancelled() {
+			return future.isCancelled();
+		}
+
+		public boolean isDone() {
+			return future.isDone();
+		}
+
+		/**
+		 * Shows a dialog on the UI thread and waits for the answer. Called on the UI thread, the dialog is
+		 * simply shown.
+		 *
+		 * @param dialog shows the dialog.
+		 * @param ifCancelled the answer if the action is cancelled before the dialog is answered.
+		 * @return the answer of the dialog.
+		 */
+		public <T> T dialog(Supplier<T> dialog, T ifCancelled) {
+			if(Thread.currentThread() == uiThread)
+				return dialog.get();
+
+			if(isCancelled())
+				return ifCancelled;
+
+			var request = new Dialog<T>(this, dialog);
+			dialogs.add(request);
+
+			try {
+				return request.get();
+			} catch (InterruptedException | CancellationException e) {
+				request.cancel(false);
+				Thread.currentThread().interrupt();
+
+				return ifCancelled;
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		/**
+		 * Shows a dialog that has no answer.
+		 *
+		 * @see #dialog(Supplier, Object)
+		 */
+		public void dialog(Runnable dialog) {
+			dialog(() -> {
+				dialog.run();
+				return null;
+			}, null);
+		}
+	}
+
+	/**
+	 * A dialog waiting for the UI thread.
+	 */
+	private static class Dialog<T> extends FutureTask<T> {
+		final Task task;
+
+		Dialog(Task task, Supplier<T> dialog) {
+			super(dialog::get);
+			this.task = task;
+		}
+	}
+
+	private final Thread uiThread;
+	private final ExecutorService executor = createExecutor();
+	private final BlockingQueue<Dialog<?>> dialogs = new LinkedBlockingQueue<>();
+	private final List<Task> tasks = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Creates a dispatcher whose UI thread is the calling thread.
+	 */
+	public ActionDispatcher() {
+		uiThread = Thread.currentThread();
+	}
+
+	/**
+	 * Starts an action in the background and shows its dialogs until it finishes or stops asking for them.
+	 * It must be called on the UI thread.
+	 *
+	 * @param name the name of the action, shown in the list of tasks.
+	 * @param action the action.
+	 * @return the started task.
+	 */
+	public Task submit(String name, Consumer<Task> action) {
+		var task = new Task(name, action);
+
+		tasks.add(task);
+		executor.execute(() -> {
+			try {
+				task.future.run();
+			} finally {
+				tasks.remove(task);
+			}
+		});
+
+		try {
+			while(!task.isDone()) {
+				var dialog = dialogs.poll(FOREGROUND_MILLIS, TimeUnit.MILLISECONDS);
+				if(dialog == null)
+					break;
+
+				show(dialog);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return task;
+	}
+
+	/**
+	 * Shows the dialogs queued by the actions running in the background, it must be called on the UI thread.
+	 */
+	public void showPendingDialogs() {
+		Dialog<?> dialog;
+
+		while((dialog = dialogs.poll()) != null)
+			show(dialog);
+	}
+
+	/**
+	 * @return the tasks that are still running.
+	 */
+	public List<Task> getTasks() {
+		return new ArrayList<>(tasks);
+	}
+
+	/**
+	 * Cancels the running tasks and waits a few seconds for them to stop.
+	 */
+	public void close() {
+		for(var task : tasks)
+			task.cancel();
+
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void show(Dialog<?> dialog) {
+		if(!dialog.task.isCancelled())
+			dialog.run();
+		else
+			dialog.cancel(false);
+	}
+
+	/**
+	 * Creates an executor of virtual threads, looked up by reflection because they are not part of Java 11,
+	 * or of daemon threads if the JVM has none.
+	 */
+	private static ExecutorService createExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(action -> {
+				var thread = new Thread(action, "menu-action");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+	}
+}
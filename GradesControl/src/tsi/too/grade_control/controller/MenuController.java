@@ -2,18 +2,31 @@ package tsi.too.grade_control.controller;
 
 import static tsi.too.grade_control.Constants.*;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.metrics.Metrics;
+import tsi.too.grade_control.metrics.OperationMetrics;
+import tsi.too.grade_control.report.ClassStatistics;
+import tsi.too.grade_control.repository.DisciplineIndex;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.repository.StudentSearchIndex;
+import tsi.too.grade_control.repository.YearPartition;
 import tsi.too.message_dialog.InputDialog;
+import tsi.too.message_dialog.MessageDialog;
 
 public class MenuController {
 	private static MenuController instance;
 	private StudentController studentController = StudentController.getInstance();
 
-	private ArrayList<Student> students;
+	private StudentRepository students;
+	private ClassStatistics statistics;
+	private StudentSearchIndex searchIndex;
+	private DisciplineIndex disciplines;
+	private YearPartition years;
+	private ActionDispatcher dispatcher;
 
 	private final List<String> OPTIONS = Arrays.asList(
 			REGISTER_STUDENT,
@@ -21,11 +34,44 @@ public class MenuController {
 			SEARCH_DISCIPLINE,
 			UPDATE_STUDENT_DATA,
 			DELETE_STUDENT,
-			REPORT
+			REPORT,
+			DISCIPLINE_REPORT,
+			REPORT_AS_OF,
+			RANKING,
+			IMPORT_STUDENTS,
+			BACKGROUND_TASKS
 			);
+	
+	/* The names of the options in the metrics, which can not have spaces or accents */
+	private final List<String> OPTION_METRICS = Arrays.asList(
+			"menu.register_student",
+			"menu.search_student",
+			"menu.search_discipline",
+			"menu.update_student_data",
+			"menu.delete_student",
+			"menu.report",
+			"menu.discipline_report",
+			"menu.report_as_of",
+			"menu.ranking",
+			"menu.import_students",
+			"menu.background_tasks"
+			);
+	
+	/* The options that run on the ActionDispatcher, the others run on the UI thread */
+	private final List<String> BACKGROUND_OPTIONS = Arrays.asList(REPORT, REPORT_AS_OF, IMPORT_STUDENTS);
+	
+	private final Map<String, OperationMetrics> metrics = new HashMap<>();
 
-	private MenuController (ArrayList<Student> students){
+	private MenuController (StudentRepository students, ClassStatistics statistics, StudentSearchIndex searchIndex,
+			DisciplineIndex disciplines, YearPartition years){
 		this.students = students;
+		this.statistics = statistics;
+		this.searchIndex = searchIndex;
+		this.disciplines = disciplines;
+		this.years = years;
+		
+		for(int i = 0; i < OPTIONS.size(); i++)
+			metrics.put(OPTIONS.get(i), Metrics.getInstance().operation(OPTION_METRICS.get(i)));
 	}
 
 	/**
@@ -33,39 +79,98 @@ public class MenuController {
 	 *
 	 * @return an instance of this class.
 	 */
-	public static MenuController getInstance(ArrayList<Student> students) {
+	public static MenuController getInstance(StudentRepository students, ClassStatistics statistics,
+			StudentSearchIndex searchIndex, DisciplineIndex disciplines, YearPartition years) {
 		synchronized (MenuController.class) {
 			if (instance == null)
-				instance = new MenuController(students);
+				instance = new MenuController(students, statistics, searchIndex, disciplines, years);
 
 			return instance;
 		}
 	}
 
 	/**
-	 * Displays an options menu
+	 * Displays an options menu, the calling thread is the UI thread of the {@link ActionDispatcher}. The
+	 * tasks still running when the menu is closed are cancelled.
 	 * 
 	 */
 	public void showMenu() {
-		InputDialog.showMenuDialog(
-				GRADES_CONTROLLER, 
-				"", 
-				OPTIONS, 
-				EXIT, 
-				this::execute
-		);
+		dispatcher = new ActionDispatcher();
+		
+		try {
+			InputDialog.showMenuDialog(
+					GRADES_CONTROLLER, 
+					"", 
+					OPTIONS, 
+					EXIT, 
+					this::execute
+			);
+		} finally {
+			dispatcher.close();
+		}
 	}
 
+	/**
+	 * Executes an option, measuring the time it takes, the dialogs included. The long options are
+	 * submitted to the dispatcher, the dialogs queued by the tasks in the background are shown before and
+	 * after.
+	 */
 	private void execute(String action) {
 		if(action == null)
 			return;
 		
+		dispatcher.showPendingDialogs();
+		
+		var option = metrics.get(action);
+		if(BACKGROUND_OPTIONS.contains(action))
+			dispatcher.submit(action, task -> option.run(() -> dispatch(action, task)));
+		else if(option == null)
+			dispatch(action, null);
+		else
+			option.run(() -> dispatch(action, null));
+		
+		dispatcher.showPendingDialogs();
+	}
+	
+	/**
+	 * Lists the running tasks with their progress and cancels the one chosen.
+	 */
+	private void showTasks() {
+		var tasks = dispatcher.getTasks();
+		if(tasks.isEmpty()) {
+			MessageDialog.showInformationDialog(BACKGROUND_TASKS, NO_TASKS_RUNNING);
+			return;
+		}
+		
+		var options = new String[tasks.size()];
+		for(int i = 0; i < options.length; i++) {
+			var progress = tasks.get(i).getProgress();
+			
+			options[i] = progress < 0 ? String.format("%d. %s (%s)", i + 1, tasks.get(i).getName(), IN_PROGRESS)
+					: String.format("%d. %s (%.0f%%)", i + 1, tasks.get(i).getName(), progress * 100);
+		}
+		
+		var chosen = InputDialog.showOptionDialog(BACKGROUND_TASKS, CHOOSE_TASK_TO_CANCEL, options);
+		if(chosen == null)
+			return;
+		
+		var task = tasks.get(Arrays.asList(options).indexOf(chosen));
+		if(!task.isDone() && MessageDialog.showConfirmationDialog(BACKGROUND_TASKS, String.format(CANCEL_TASK, task.getName()))) {
+			task.cancel();
+			MessageDialog.showInformationDialog(BACKGROUND_TASKS, TASK_CANCELLED);
+		}
+	}
+	
+	/**
+	 * @param task the task running the option, null if it runs on the UI thread.
+	 */
+	private void dispatch(String action, ActionDispatcher.Task task) {
 		switch (action) {
 			case REGISTER_STUDENT:
 				studentController.registerStudent(students);
 				break;
 			case SEARCH_STUDENT:
-				studentController.searchStudent(students);
+				studentController.searchStudent(students, searchIndex);
 				break;
 			case UPDATE_STUDENT_DATA:
 				studentController.updateStudentData(students);
@@ -77,7 +182,22 @@ public class MenuController {
 				studentController.removeStudent(students);
 				break;
 			case REPORT:
-				studentController.report(students);
+				studentController.report(students, statistics, task);
+				break;
+			case DISCIPLINE_REPORT:
+				studentController.disciplineReport(disciplines);
+				break;
+			case REPORT_AS_OF:
+				studentController.reportAsOf(students, years, task);
+				break;
+			case RANKING:
+				studentController.ranking(students, disciplines);
+				break;
+			case IMPORT_STUDENTS:
+				studentController.importStudents(students, task);
+				break;
+			case BACKGROUND_TASKS:
+				showTasks();
 				break;
 			default:
 				break;
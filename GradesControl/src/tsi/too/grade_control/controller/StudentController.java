@@ -8,34 +8,89 @@ import static tsi.too.message_dialog.MessageDialog.showConfirmationDialog;
 import static tsi.too.message_dialog.MessageDialog.showInformationDialog;
 import static tsi.too.message_dialog.MessageDialog.showTextMessage;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.controller.ActionDispatcher.Task;
+import tsi.too.grade_control.io.ProgressReader;
+import tsi.too.grade_control.io.StudentImporter;
+import tsi.too.grade_control.io.StudentImporter.ImportResult;
+import tsi.too.grade_control.metrics.Metrics;
+import tsi.too.grade_control.metrics.OperationMetrics;
 import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.ClassStatistics;
+import tsi.too.grade_control.report.ParallelReport;
+import tsi.too.grade_control.report.Ranking;
+import tsi.too.grade_control.report.RenderCache;
+import tsi.too.grade_control.report.ReportWriter;
+import tsi.too.grade_control.repository.DisciplineIndex;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.repository.StudentSearchIndex;
+import tsi.too.grade_control.repository.YearPartition;
+import tsi.too.grade_control.service.Command;
+import tsi.too.grade_control.service.Command.FindStudent;
+import tsi.too.grade_control.service.Command.QueryGrade;
+import tsi.too.grade_control.service.Command.RegisterStudent;
+import tsi.too.grade_control.service.Command.RemoveStudent;
+import tsi.too.grade_control.service.Command.UpdateGrade;
+import tsi.too.grade_control.service.Command.UpdateStudent;
+import tsi.too.grade_control.service.GradeService;
+import tsi.too.grade_control.service.Result;
 import tsi.too.grade_control.util.Pair;
+import tsi.too.grade_control.util.SymbolTable;
 import tsi.too.message_dialog.InputDialog;
 import tsi.too.message_dialog.InputDialog.InputValidator;
 import tsi.too.message_dialog.MessageDialog;
 
 public class StudentController {
-	private final double MAX_GRADE = 10;
-	private final double MIN_GRADE = 0;
-	private final int MIN_COURSE_INITIALS_LENGTH = 1;
-	private final int MAX_COURSE_INITIALS_LENGTH = 3;
+	private final int REPORT_PAGE_SIZE = 1000;
+	private final int MAX_IMPORT_ERRORS_SHOWN = 1000;
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_PATTERN)
+			.withResolverStyle(ResolverStyle.STRICT);
+	private static final String[] RANKING_QUERIES = {HIGHEST_AVERAGES, LOWEST_AVERAGES, LOWEST_GRADES_IN_DISCIPLINE,
+			STUDENTS_AT_RISK};
 	
 	private static StudentController instance;
+	
+	/* The metrics of the commands executed, named after their classes, e.g. command.FindStudent */
+	private static final ClassValue<OperationMetrics> COMMAND_METRICS = new ClassValue<>() {
+		@Override
+		protected OperationMetrics computeValue(Class<?> type) {
+			return Metrics.getInstance().operation("command." + type.getSimpleName());
+		}
+	};
 
-	private final InputValidator<Double> gradeRangeValidator = InputDialog.createRangeValidator(
-			MIN_GRADE, 
-			MAX_GRADE,
-			GRADE_MUST_BE_BETWEEN_ZERO_AND_TEN 
-	);
+	private final InputValidator<Double> gradeValidator = validator("validator.grade", GradeService::checkGrade);
 	private final InputValidator<String> emptyNameValidator = createEmptyStringValidator(NAME_CANNOT_BE_BLANK);
 	private final InputValidator<String> emptyInputValidator = InputDialog.createEmptyStringValidator(THIS_FIELD_CANNOT_BE_EMPTY);
 	
+	private final InputValidator<Integer> rankingSizeValidator = validator("validator.ranking_size",
+			count -> count > 0 ? null : NUMBER_MUST_BE_POSITIVE);
+	private final InputValidator<Double> percentageValidator = InputDialog.createRangeValidator(0, 100,
+			PERCENTAGE_MUST_BE_BETWEEN_ZERO_AND_HUNDRED);
+
+	private final ForkJoinPool reportPool = createReportPool();
+	private final ParallelReport reportEngine = createReportEngine(reportPool);
+	private final Ranking ranking = new Ranking(Ranking.DEFAULT_CHUNK_SIZE, reportPool);
+	private final OperationMetrics similarSearchMetrics = Metrics.getInstance().operation("search.similar");
+	
 	private StudentController() {}
 	
 	/**
@@ -52,93 +107,113 @@ public class StudentController {
 		}
 	}
 
-	public void registerStudent(final ArrayList<Student> students) {
-		var s = readStudentData(students);
-
-		if(s != null) {			
-			students.add(s);
-			Student.increaseStudentsCount();
+	/**
+	 * Reads a student and its disciplines and registers it.
+	 * 
+	 * @param students where to register.
+	 */
+	public void registerStudent(final StudentRepository students) {
+		var service = service(students);
+		var command = readStudentData(service);
+		if(command == null)
+			return;
+		
+		var result = execute(service, command);
+		if(result.isSuccess())
 			showInformationDialog(STUDENT_REGISTRATION, STUDENT_SUCCESSFULY_REGISTERED);
-		}
+		else
+			showAlertDialog(STUDENT_REGISTRATION, result.getMessage());
 	}
 	
 	/**
 	 * Reads and validates a student info.
 	 *  
-	 * @param students
-	 * @return the read data or null if reading is cancelled or the student data is already registered.
+	 * @param service validates the input.
+	 * @return the registration command or null if reading is cancelled.
 	 */
-	private Student readStudentData(final ArrayList<Student> students) {
-		final InputValidator<String> studentNameRegistrationValidator = input -> {
-			var message = emptyInputValidator.getErrorMessage(input);
-			
-			if(emptyInputValidator.isValid(input))
-				message = students.stream().filter(s -> s.getName().equals(input))
-					.count() > 0 ? NAME_ALREADY_REGISTERED : message;
-							
-			return message;
-		};
-			
-		final InputValidator<String> courseInitialsValidator = InputDialog.createLengthValidator(
-				MIN_COURSE_INITIALS_LENGTH, 
-				MAX_COURSE_INITIALS_LENGTH,
-				INVALID_COURSE_INITIALS
-		);
-			
-		
-		String courseInitials = showStringInputDialog(STUDENT_REGISTRATION, COURSE_INITIALS, courseInitialsValidator);
+	private RegisterStudent readStudentData(final GradeService service) {
+		String courseInitials = showStringInputDialog(STUDENT_REGISTRATION, COURSE_INITIALS, 
+				validator("validator.course_initials", GradeService::checkCourseInitials));
 		if(courseInitials == null)
 			return null;
 
-		String name = showStringInputDialog(STUDENT_REGISTRATION, STUDENT_NAME, studentNameRegistrationValidator);				
+		String name = showStringInputDialog(STUDENT_REGISTRATION, STUDENT_NAME, validator("validator.name", input -> service.checkName(input, null)));				
 		if(name == null)		
 			return null;
 
-		String course = showStringInputDialog(STUDENT_REGISTRATION, COURSE, emptyInputValidator);
+		String course = showStringInputDialog(STUDENT_REGISTRATION, COURSE, validator("validator.course", GradeService::checkCourse));
 		if(course == null)
 			return null;
 
-		var s = new Student(createRegistration(courseInitials), name, course);
+		var disciplines = new ArrayList<Pair<String, Double>>();
 		
 		do {
-			enroll(s);
-		}while(!s.isEnrolled() && !showConfirmationDialog(
+			enroll(disciplines);
+		}while(disciplines.isEmpty() && !showConfirmationDialog(
 						STUDENT_REGISTRATION, 
 						STUDENT_MUST_BE_ENROLLED_IN_A_DISCIPLINE_AT_LEAST_CANCEL_REGISTRATION
 				)
 		);
 		
-		return s.isEnrolled() ? s : null;
+		return disciplines.isEmpty() ? null : new RegisterStudent(null, courseInitials, name, course, disciplines);
 	}
 	
 	/**
-	 * Creates a registration number based on the course initials, current year and number of students already enrolled. 
+	 * Reads the path of a CSV file and imports its students, showing the rows that could not be imported.
 	 * 
-	 * @param courseInitials.
-	 * @return a new registration number.
+	 * @param students where to register.
+	 * @see StudentImporter
 	 */
-	private String createRegistration(String courseInitials) {
-		return String.format("%s%d-%02d",
-				courseInitials,
-				LocalDate.now().getYear(),
-				Student.getStudentsCount() + 1
-		);
+	public void importStudents(final StudentRepository students) {
+		importStudents(students, null);
+	}
+	
+	/**
+	 * Imports a CSV file as a task of the {@link ActionDispatcher}, its progress is the share of the file read.
+	 * A cancelled import keeps the students already imported.
+	 * 
+	 * @param students where to register.
+	 * @param task the task running the import, null to run it on the calling thread.
+	 */
+	public void importStudents(final StudentRepository students, final Task task) {
+		var path = dialog(task, () -> showStringInputDialog(IMPORT_STUDENTS, CSV_FILE_PATH, emptyInputValidator), null);
+		if(path == null)
+			return;
+		
+		ImportResult result;
+		try(var file = Files.newBufferedReader(Paths.get(path.strip()), StandardCharsets.UTF_8)) {
+			Reader in = file;
+			
+			if(task != null) {
+				var size = Files.size(Paths.get(path.strip()));
+				in = new ProgressReader(file, read -> task.setProgress(read, size), task::isCancelled);
+			}
+			
+			result = new StudentImporter(students, RegistrationAllocator.getInstance()).importCsv(in);
+		} catch (InterruptedIOException e) {
+			return;
+		} catch (IOException | InvalidPathException e) {
+			dialog(task, () -> showAlertDialog(IMPORT_STUDENTS, String.format(COULD_NOT_READ_FILE, e.getMessage())));
+			return;
+		}
+		
+		dialog(task, () -> showTextMessage(IMPORT_STUDENTS, result.toReportString(MAX_IMPORT_ERRORS_SHOWN)));
 	}
 
 	/** 
-	 * Reads and adds the disciplines to the student until he reaches the maximum allowed or the user stops reading. 
+	 * Reads the disciplines of a student until he reaches the maximum allowed or the user stops reading. 
 	 * 
-	 * @param student the student to be enrolled.
+	 * @param disciplines where the read disciplines are added.
 	 */
-	private void enroll(Student student) {
-		while(student.canEnrollInAnotherDiscipline()) {
-			var discipline = readDisciplineData(student);
+	private void enroll(List<Pair<String, Double>> disciplines) {
+		while(disciplines.size() < Student.MAX_SUBSCRIPTION_ALLWOED) {
+			var discipline = readDisciplineData(disciplines);
 			if(discipline == null)
 				break;
 			
-			student.addDiscipline(discipline.getFirst(), discipline.getSecond());
+			disciplines.add(discipline);
 			
-			if(student.canEnrollInAnotherDiscipline() && 
+			if(disciplines.size() < Student.MAX_SUBSCRIPTION_ALLWOED && 
 					!showConfirmationDialog(STUDENT_REGISTRATION, ENROLL_IN_ANOTHER_DISCIPLINE))
 				break;
 		}
@@ -149,56 +224,43 @@ public class StudentController {
 	 * 
 	 * I using a Pair just for fun, it could be easily be replaced by Discipline.
 	 * 
-	 * @param student the target student.
+	 * @param disciplines the disciplines already read.
 	 * @return the read discipline as an <code>Pair<String, Double></code>
 	 */
-	private Pair<String, Double> readDisciplineData(Student student) {
-		final InputValidator<String> disciplineNameValidator = input -> {
-			var message = emptyInputValidator.getErrorMessage(input);
+	private Pair<String, Double> readDisciplineData(List<Pair<String, Double>> disciplines) {
+		final InputValidator<String> disciplineNameValidator = validator("validator.discipline", input -> {
+			var message = GradeService.checkDiscipline(null, input);
 			
-			if(emptyInputValidator.isValid(input)) {
-				return student.isEnrolled(input) ? STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE : message;
+			if(message == null) {
+				for(var d : disciplines) {
+					if(SymbolTable.equivalent(d.getFirst(), input))
+						return STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE;
+				}
 			}
 			
 			return message;
-		};
+		});
 		
 		String name = showStringInputDialog(DISCIPLINE_ENROLLMENT, DISCIPLINE_NAME, disciplineNameValidator);
 		if(name == null)
 			return null;
 				
-		Double grade = InputDialog.showDoubleInputDialog(DISCIPLINE_ENROLLMENT, GRADE, gradeRangeValidator);
+		Double grade = InputDialog.showDoubleInputDialog(DISCIPLINE_ENROLLMENT, GRADE, gradeValidator);
 		if(grade == null)
 			return null;
 		
 		return new Pair<String, Double>(name, grade);
 	}
 
-	/**
-	 * Searches for a student based on their name.
-	 * 
-	 * @param students where to search.
-	 * @param name the target name.
-	 * @return the found student or null.
-	 */
-	private Student searchStudent(final List<Student> students, String name) {
-		var found = students.stream()
-				.filter(s-> s.getName().equalsIgnoreCase(name))
-				.collect(Collectors.toList());
-		
-		if(!found.isEmpty())
-			return found.get(0);
-		
-		return null;
-	}
-	
 	/**
 	 * Searches for a student and displays his information in a dialog box.
+	 * If there is no student with the typed name or registration number, the similar ones are offered.
 	 * 
 	 * @param students where to search.
+	 * @param searchIndex finds the similar names.
 	 */
-	public void searchStudent(final List<Student> students) {
-		if(isClassEmpty())
+	public void searchStudent(final StudentRepository students, final StudentSearchIndex searchIndex) {
+		if(isClassEmpty(students))
 		{
 			MessageDialog.showAlertDialog(SEARCH_STUDENT, NO_STUDENTS_REGISTERED);
 			return;
@@ -208,7 +270,8 @@ public class StudentController {
 		
 		if(name != null)
 		{
-			var student = searchStudent(students, name);
+			var result = execute(service(students), new FindStudent(name));
+			var student = result.isSuccess() ? result.getStudent() : chooseSimilar(searchIndex, name);
 			
 			if(student == null)
 				showAlertDialog(SEARCH_STUDENT, STUDENT_NOT_FOUND);
@@ -218,38 +281,53 @@ public class StudentController {
 	}
 
 	/**
-	 * Generates an report formated String.
+	 * Lets the user choose among the students whose names start like or are similar to the typed one.
+	 * 
+	 * @param searchIndex where to search.
+	 * @param name the typed name.
+	 * @return the chosen student or null if none is found or chosen.
+	 */
+	private Student chooseSimilar(final StudentSearchIndex searchIndex, String name) {
+		var similar = similarSearchMetrics.call(() -> searchIndex.search(name, StudentSearchIndex.DEFAULT_LIMIT));
+		if(similar.isEmpty())
+			return null;
+		
+		var options = new String[similar.size()];
+		for(int i = 0; i < options.length; i++)
+			options[i] = String.format("%s (%s)", similar.get(i).getName(), similar.get(i).getRegistration());
+		
+		var chosen = InputDialog.showOptionDialog(SEARCH_STUDENT, DID_YOU_MEAN, options);
+		
+		return chosen == null ? null : similar.get(Arrays.asList(options).indexOf(chosen));
+	}
+
+	/**
+	 * Generates an report formated String, kept in the {@link RenderCache} until the student changes.
 	 * 
 	 * @return the generated String.
 	 */
 	public String toReportString(Student s) {
-		var message = new StringBuilder()
-				.append(String.format("%s: %s", REGISTRATION_NUMBER, s.getRegistration()))
-				.append(String.format("\n%s: %s", NAME, s.getName()))
-				.append(String.format("\n%s: %s", COURSE, s.getCourse()))
-				.append(String.format("\n\n%s:", DISCIPLINES))
-				;
-
-
-		for(Discipline d: s.getEnrolledDisciplines()) {
-			if(s == null)
-				break;
+		return RenderCache.getInstance().render(s, student -> {
+			var message = new StringBuilder();
 
-			message.append(String.format("\n\t%s: %s", NAME, d.getName()))
-					.append(String.format("\n\t%s: %1.2f\n", GRADE, d.getGrade()));
-		}
+			try {
+				new ReportWriter(message).writeStudent(student);
+			} catch (IOException e) {
+				// A StringBuilder does not throw
+			}
 
-		return message.toString();
+			return message.toString();
+		});
 	}
 	
 	/**
 	 * Reads a student name and remove it if found.
-	 * It does not decrease the Student count variable in the Student class, as the registration number is based on it.   
+	 * Its registration number is not handed out again, the {@link RegistrationAllocator} never goes back.
 	 * 
 	 * @param students where to look/remove.
 	 */
-	public void removeStudent(final ArrayList<Student> students) {
-		if(isClassEmpty())
+	public void removeStudent(final StudentRepository students) {
+		if(isClassEmpty(students))
 		{
 			MessageDialog.showAlertDialog(DELETE_STUDENT, NO_STUDENTS_REGISTERED);
 			return;
@@ -259,17 +337,23 @@ public class StudentController {
 		if(name == null) 
 			return;
 		
-		var student = searchStudent(students, name);
+		var service = service(students);
+		var found = execute(service, new FindStudent(name));
 		
-		if(student == null)
-			showAlertDialog(SEARCH_STUDENT, STUDENT_NOT_FOUND);
+		if(!found.isSuccess())
+			showAlertDialog(SEARCH_STUDENT, found.getMessage());
 		else {
+			var student = found.getStudent();
 			var message = toReportString(student) + 
 					String.format("\n%s", ARE_YOU_SURE_YOU_WANT_TO_DELETE_THIS_STUDENT);
 			
 			if(showConfirmationDialog(DELETE_STUDENT, message)){
-				students.remove(student); 				
-				showInformationDialog(DELETE_STUDENT, STUDENT_SUCCESSFULY_DELETED);
+				var result = execute(service, new RemoveStudent(student.getRegistration()));
+				
+				if(result.isSuccess())
+					showInformationDialog(DELETE_STUDENT, STUDENT_SUCCESSFULY_DELETED);
+				else
+					showAlertDialog(DELETE_STUDENT, result.getMessage());
 			}
 		}
 	}
@@ -279,8 +363,8 @@ public class StudentController {
 	 * 
 	 * @param students the data source.
 	 */
-	public void searchDiscipline(final List<Student> students) {
-		if(isClassEmpty())
+	public void searchDiscipline(final StudentRepository students) {
+		if(isClassEmpty(students))
 		{
 			MessageDialog.showAlertDialog(SEARCH_DISCIPLINE, NO_STUDENTS_REGISTERED);
 			return;
@@ -294,163 +378,261 @@ public class StudentController {
 		if(discipline == null)
 			return;
 		
-		var student = searchStudent(students, studentNameOrRegistration);
-		
-		if(student == null)
-			student = searchDiscipline(students, studentNameOrRegistration);
-		
-		if(student == null)
+		var result = execute(service(students), new QueryGrade(studentNameOrRegistration, discipline));
+		if(!result.isSuccess())
 		{
-			showAlertDialog(SEARCH_DISCIPLINE, STUDENT_NOT_FOUND);
+			showAlertDialog(SEARCH_STUDENT, result.getMessage());
 			
 			return;
 		}
 		
-		var grade = searchDiscipline(student, discipline);
-		if(grade == null)
-		{
-			showAlertDialog(SEARCH_STUDENT, String.format(THE_STUDENT_IS_NOT_ENROLLED_ON_THIS_SUBJECT, studentNameOrRegistration));
-			
-			return;
-		}
-		
-		var message = String.format("%s\n\t%s: %1.2f",student.getName(), discipline, grade);
+		var message = String.format("%s\n\t%s: %1.2f", result.getStudent().getName(), discipline, result.getGrade());
 		
 		showInformationDialog(SEARCH_STUDENT, message);
 	}
 
 	/**
-	 * Searches a discipline based on the student's registration number
+	 * Prepares a general report containing the list of approved and failed students, the count of failed and
+	 * approved students and their percentages.
 	 * 
-	 * @param students where to search.
-	 * @param registration 
-	 * @return the student found or null if not found.
+	 * The report is shown in pages of <code>REPORT_PAGE_SIZE</code> students as they are generated. 
+	 *
+	 * @param students the data source.
+	 * @param statistics the up to date statistics of the students.
 	 */
-	private Student searchDiscipline(final List<Student> students, String registration) {
-		var found = students.stream()
-				.filter(s-> s.getRegistration().equalsIgnoreCase(registration))
-				.collect(Collectors.toList());
+	public void report(final StudentRepository students, final ClassStatistics statistics) {
+		report(students, statistics, null);
+	}
+	
+	/**
+	 * Builds the general report as a task of the {@link ActionDispatcher}, its progress is the share of the
+	 * pages shown.
+	 * 
+	 * @param students the data source.
+	 * @param statistics the up to date statistics of the students.
+	 * @param task the task running the report, null to run it on the calling thread.
+	 */
+	public void report(final StudentRepository students, final ClassStatistics statistics, final Task task) {
+		if(isClassEmpty(students)) {
+			dialog(task, () -> showInformationDialog(REPORT, NO_DATA_FOUND));
+			return;
+		}
 		
-		if(!found.isEmpty())
-			return found.get(0);
-
-		return null;
+		try {
+			pagedWriter(REPORT, statistics.getStudentsCount(), task).writeReport(students, statistics, reportEngine);
+		} catch (IOException e) {
+			// Pages are built in memory
+		}
 	}
 	
 	/**
-	 * Searches a grade for an student in a specific discipline.
+	 * Reads a date and, optionally, a year of entry and shows the general report with the grades the
+	 * students had at the end of that day. Only the students already enrolled then are listed.
 	 * 
-	 * @param student the target student.
-	 * @param discipline the target discipline.
-	 * @return the grade if student is enrolled in that discipline or null if not enrolled.
+	 * @param students the data source.
+	 * @param years the students of each year of entry.
 	 */
-	private Float searchDiscipline(Student student, String discipline) {
-		return student.getGrade(discipline);
+	public void reportAsOf(final StudentRepository students, final YearPartition years) {
+		reportAsOf(students, years, null);
 	}
-
+	
 	/**
-	 * Prepares a general report containing the list of approved and failed students, the count of failed and
-	 * approved students and their percentages
-	 *
+	 * Builds the report of a date as a task of the {@link ActionDispatcher}.
+	 * 
 	 * @param students the data source.
+	 * @param years the students of each year of entry.
+	 * @param task the task running the report, null to run it on the calling thread.
+	 * @see #reportAsOf(StudentRepository, YearPartition)
 	 */
-	public void report(final List<Student> students) {
-		if(isClassEmpty()) {
-			showInformationDialog(REPORT, NO_DATA_FOUND);
+	public void reportAsOf(final StudentRepository students, final YearPartition years, final Task task) {
+		if(isClassEmpty(students)) {
+			dialog(task, () -> showInformationDialog(REPORT_AS_OF, NO_DATA_FOUND));
 			return;
 		}
 		
-		var message = new StringBuilder();
-		var studentsCount = Student.getStudentsCount();
-		var reprovedCount = 0;
-		var approvedCount = 0;
+		var date = dialog(task, () -> showStringInputDialog(REPORT_AS_OF, REPORT_DATE, validator("validator.date", 
+				input -> parseDate(input) == null ? INVALID_DATE : null)), null);
+		if(date == null)
+			return;
 		
-		for(Student s : students){
-			message.append(generateStudentApprovalStatus(s))
-				.append("\n");
-			
-			if(s.isAproved())
-				approvedCount++;
-			else
-				reprovedCount++;
-		}
+		var year = dialog(task, () -> showStringInputDialog(REPORT_AS_OF, ENTRY_YEAR, validator("validator.entry_year",
+				input -> isBlank(input) || years.getYears().contains(parseYear(input)) ? null : NO_STUDENTS_IN_THIS_YEAR)), null);
+		if(year == null)
+			return;
 		
-		var percentageOfApproved = calculatePercentage(approvedCount, studentsCount);
-		var percentageOfReproved = calculatePercentage(reprovedCount, studentsCount);
+		Iterable<Student> source = isBlank(year) ? students : years.getStudents(parseYear(year));
+		var asOf = parseDate(date).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusMillis(1);
+		var statistics = ClassStatistics.asOf(source, asOf);
 		
-		message.append(generateSeparator(RESUME))
-			.append(String.format("\n%s = %d", NUMBER_OF_STUDENTS, studentsCount))
-			.append(String.format("\n%s = %d", NUMBER_OF_APPROVED, approvedCount ))
-			.append(String.format("\n%s = %d", NUMBER_OF_REPROVEDS, reprovedCount ))
-			.append(String.format("\n%s = %1.1f%%", PERCENTAGE_OF_APPROVED, percentageOfApproved ))
-			.append(String.format("\n%s = %1.1f%%", PERCENTAGE_OF_REPROVED, percentageOfReproved))
-		;
+		if(statistics.getStudentsCount() == 0) {
+			dialog(task, () -> showInformationDialog(REPORT_AS_OF, NO_DATA_FOUND));
+			return;
+		}
 		
-		showTextMessage(REPORT, message.toString());
+		try {
+			pagedWriter(REPORT_AS_OF, statistics.getStudentsCount(), task).writeReport(source, statistics, asOf);
+		} catch (IOException e) {
+			// Pages are built in memory
+		}
 	}
-
+	
 	/**
-	 * Generates a message containing the student's basic information and approval status.
+	 * Creates a report writer that shows each page of <code>REPORT_PAGE_SIZE</code> students in a dialog,
+	 * asking before the next one.
 	 * 
-	 * @param student the target student.
-	 * @return the generated message.
+	 * @param title the title of the dialogs.
+	 * @param studentsCount the number of students in the report.
+	 * @param task the task writing the report, which counts the pages shown and stops the report when it is
+	 * cancelled. Null if the report is written on the UI thread.
 	 */
-	private String generateStudentApprovalStatus(Student student) {
-		if(student == null)
-			return "";
+	private ReportWriter pagedWriter(String title, int studentsCount, Task task) {
+		var pageCount = (studentsCount + REPORT_PAGE_SIZE - 1) / REPORT_PAGE_SIZE;
 		
-		return new StringBuilder()
-				.append(getRegistrationSequencialNumber(student.getRegistration()))
-				.append(" " + student.getName())
-				.append("\t" + student.getCourse())
-				.append(String.format("\t%s", student.isAproved() ? APPROVED : REPROVED))
-				.toString();
+		return ReportWriter.paged(REPORT_PAGE_SIZE, (page, content) -> {
+			var text = content.toString();
+			
+			if(task != null)
+				task.setProgress(page, pageCount);
+			
+			return dialog(task, () -> {
+				if(pageCount <= 1) {
+					showTextMessage(title, text);
+					return true;
+				}
+				
+				showTextMessage(String.format("%s (%d/%d)", title, Math.min(page, pageCount), pageCount), text);
+				
+				return page >= pageCount || showConfirmationDialog(title, SHOW_NEXT_PAGE);
+			}, false);
+		});
 	}
-
+	
 	/**
-	 * Generates a default header with separators chars.
+	 * Shows a dialog on the UI thread when called by a task, or right away without one.
 	 * 
-	 * @param header the header title.
-	 * @return the generated string.
+	 * @param ifCancelled the answer if the task is cancelled.
 	 */
-	private String generateSeparator(String header) {
-		final int charCount = 20;
-		var separatorChars="";
-		
-		for(int i = 0; i < charCount; i++) {
-			separatorChars+="-";
-		}
-		
-		return String.format("\n%s %s %s", separatorChars, header, separatorChars);
+	private static <T> T dialog(Task task, Supplier<T> dialog, T ifCancelled) {
+		return task == null ? dialog.get() : task.dialog(dialog, ifCancelled);
 	}
 	
+	private static void dialog(Task task, Runnable dialog) {
+		if(task == null)
+			dialog.run();
+		else
+			task.dialog(dialog);
+	}
+
 	/**
-	 * Calculates the equivalent percentage of one value over another.
-	 * 
-	 * @param value the partial value.
-	 * @param from the total value.
-	 * @return the equivalent percentage.
+	 * Shows the enrollment count, the mean, median, lowest and highest grades and the percentage of approved
+	 * students of each discipline.
+	 *
+	 * @param disciplines the up to date index of the disciplines.
 	 */
-	private double calculatePercentage(double value, double from) {
-		return value / from * 100;
+	public void disciplineReport(final DisciplineIndex disciplines) {
+		var reports = disciplines.getReports();
+		if(reports.isEmpty()) {
+			showInformationDialog(DISCIPLINE_REPORT, NO_DATA_FOUND);
+			return;
+		}
+
+		var message = new StringBuilder();
+		try {
+			new ReportWriter(message).writeDisciplineReports(reports);
+		} catch (IOException e) {
+			// The report is built in memory
+		}
+
+		showTextMessage(DISCIPLINE_REPORT, message.toString());
 	}
 
 	/**
-	 * Retrieves the sequence number of the registration number 
-	 * 
-	 * @param registration
-	 * @return
+	 * Reads a query and shows the students at the top or at the bottom of the class for it: the highest or
+	 * lowest averages, the lowest grades of a discipline, as a percentage of its students, or the students
+	 * with a grade lower than the minimum for approval.
+	 *
+	 * @param students the data source.
+	 * @param disciplines the students enrolled in each discipline.
 	 */
-	private String getRegistrationSequencialNumber(final String registration) {
-		try{
-			return registration.split("-")[1];
-		}catch (Exception e) {
-			return "";
+	public void ranking(final StudentRepository students, final DisciplineIndex disciplines) {
+		if(isClassEmpty(students)) {
+			showInformationDialog(RANKING, NO_DATA_FOUND);
+			return;
+		}
+
+		var query = InputDialog.showOptionDialog(RANKING, CHOOSE_RANKING, RANKING_QUERIES);
+		if(query == null)
+			return;
+
+		List<Ranking.Entry> entries;
+
+		if(query.equals(LOWEST_GRADES_IN_DISCIPLINE)) {
+			var discipline = showStringInputDialog(query, DISCIPLINE_NAME, emptyInputValidator);
+			if(discipline == null)
+				return;
+
+			var report = disciplines.getReport(discipline);
+			if(report == null) {
+				showAlertDialog(query, DISCIPLINE_NOTE_FOUND);
+				return;
+			}
+
+			var percentage = InputDialog.showDoubleInputDialog(query, PERCENTAGE_OF_STUDENTS, percentageValidator);
+			if(percentage == null)
+				return;
+
+			var count = (int) Math.ceil(percentage / 100 * report.getEnrollmentCount());
+			entries = ranking.lowestGrades(students, discipline, count);
+		} else {
+			var count = InputDialog.showIntegerInputDialog(query, NUMBER_OF_STUDENTS_TO_SHOW, rankingSizeValidator);
+			if(count == null)
+				return;
+
+			if(query.equals(HIGHEST_AVERAGES))
+				entries = ranking.highestAverages(students, count);
+			else if(query.equals(LOWEST_AVERAGES))
+				entries = ranking.lowestAverages(students, count);
+			else
+				entries = ranking.atRisk(students, count);
+		}
+
+		if(entries.isEmpty()) {
+			showInformationDialog(query, NO_DATA_FOUND);
+			return;
+		}
+
+		var message = new StringBuilder();
+		try {
+			new ReportWriter(message).writeRanking(query, entries);
+		} catch (IOException e) {
+			// The ranking is built in memory
 		}
+
+		showTextMessage(RANKING, message.toString());
+	}
+
+	/**
+	 * Creates the pool shared by the report engine and the rankings with the parallelism given by the
+	 * <code>REPORT_PARALLELISM_PROPERTY</code> system property, the default is the common pool.
+	 */
+	private static ForkJoinPool createReportPool() {
+		var parallelism = Integer.getInteger(REPORT_PARALLELISM_PROPERTY, 0);
+
+		return parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Creates the report engine with the chunk size given by the <code>REPORT_CHUNK_SIZE_PROPERTY</code>
+	 * system property.
+	 */
+	private static ParallelReport createReportEngine(ForkJoinPool pool) {
+		var chunkSize = Integer.getInteger(REPORT_CHUNK_SIZE_PROPERTY, ParallelReport.DEFAULT_CHUNK_SIZE);
+
+		return new ParallelReport(Math.max(1, chunkSize), pool);
 	}
 
-	public void updateStudentData(final ArrayList<Student> students) {
-		if(isClassEmpty())
+	public void updateStudentData(final StudentRepository students) {
+		if(isClassEmpty(students))
 		{
 			MessageDialog.showAlertDialog(UPDATE_STUDENT_DATA, NO_STUDENTS_REGISTERED);
 			return;
@@ -460,25 +642,26 @@ public class StudentController {
 		if(name == null)
 			return;
 		
-		var student = searchStudent(students, name);
+		var service = service(students);
+		var result = execute(service, new FindStudent(name));
 		
-		if(student == null)
+		if(!result.isSuccess())
 		{
-			showAlertDialog(UPDATE_STUDENT_DATA, STUDENT_NOT_FOUND);
+			showAlertDialog(UPDATE_STUDENT_DATA, result.getMessage());
 			return;
 		}
 		
-		performReadAndUpdate(students, student);
+		performReadAndUpdate(service, result.getStudent());
 	}
 
-	private void performReadAndUpdate(ArrayList<Student> students, Student student) {
-		var name = showStringInputDialog(UPDATE_STUDENT_DATA, NEW_STUDENT_NAME, emptyNameValidator);
+	private void performReadAndUpdate(GradeService service, Student student) {
+		var name = showStringInputDialog(UPDATE_STUDENT_DATA, NEW_STUDENT_NAME, validator("validator.name", input -> service.checkName(input, student)));
 		if(name == null)
 			return;
 		
 		String course;
 		do{
-			course = showStringInputDialog(UPDATE_STUDENT_DATA, COURSE, emptyInputValidator);
+			course = showStringInputDialog(UPDATE_STUDENT_DATA, COURSE, validator("validator.course", GradeService::checkCourse));
 		}while(course == null && !showConfirmationDialog(
 				UPDATE_STUDENT_DATA, 
 				YOUR_CHANGES_WILL_BE_DISCARDED_ARE_YOU_SURE_YOU_WANT_TO_CANCEL)
@@ -486,30 +669,93 @@ public class StudentController {
 		if(course == null)
 			return;
 		
-		student.setCourse(course);
-		student.setName(name);
+		var result = execute(service, new UpdateStudent(student.getRegistration(), name, course));
+		if(!result.isSuccess()) {
+			showAlertDialog(UPDATE_STUDENT_DATA, result.getMessage());
+			return;
+		}
 		
 		if(showConfirmationDialog(UPDATE_STUDENT_DATA, String.format("%s\n%s?", RECORD_UPDATED_SUCCESSFULLY, UPDATE_GRADES))) {
-			updateStudentGrades(student);
+			updateStudentGrades(service, student);
 		}
 	}
 	
-	private void updateStudentGrades(Student student) {
+	private void updateStudentGrades(GradeService service, Student student) {
 		do {
-			var disciplineName = showStringInputDialog(UPDATE_STUDENT_DATA, DISCIPLINE_NAME, emptyNameValidator);			
-			var grade = InputDialog.showDoubleInputDialog(UPDATE_GRADES, GRADE, gradeRangeValidator);
+			var disciplineName = showStringInputDialog(UPDATE_STUDENT_DATA, DISCIPLINE_NAME, emptyInputValidator);
+			if(disciplineName == null)
+				continue;
+			
+			var grade = InputDialog.showDoubleInputDialog(UPDATE_GRADES, GRADE, gradeValidator);
 			
 			if(grade != null) {	
-				if(student.updateGrade(disciplineName, grade)) {
+				var result = execute(service, new UpdateGrade(student.getRegistration(), disciplineName, grade));
+				
+				if(result.isSuccess()) {
 					showInformationDialog(UPDATE_GRADES, RECORD_UPDATED_SUCCESSFULLY);
 				}else {
-					showAlertDialog(UPDATE_GRADES, STUDENT_NOT_ENROLLED_IN_THIS_DISCIPLINE);
+					showAlertDialog(UPDATE_GRADES, result.getMessage());
 				}
 			}
 		}while(showConfirmationDialog(UPDATE_STUDENT_DATA, UPDATE_ANOTHER_GRADE));
 	}
 
-	private boolean isClassEmpty() {
-		return Student.getStudentsCount() == 0;
+	private GradeService service(final StudentRepository students) {
+		return new GradeService(students, RegistrationAllocator.getInstance());
+	}
+	
+	/**
+	 * Executes a command, measuring it apart from the dialogs around it.
+	 */
+	private static Result execute(GradeService service, Command command) {
+		return COMMAND_METRICS.get(command.getClass()).call(() -> service.execute(command));
+	}
+	
+	/**
+	 * Adapts a check of the {@link GradeService} to the dialogs, measuring it.
+	 * 
+	 * @param metric the name of the check in the metrics.
+	 */
+	private static <T> InputValidator<T> validator(String metric, Function<T, String> check) {
+		var metrics = Metrics.getInstance().operation(metric);
+		
+		return input -> orSuccess(metrics.call(() -> check.apply(input)));
+	}
+	
+	/**
+	 * @return the date typed in the <code>DATE_PATTERN</code> format or null if it is not a valid date.
+	 */
+	private static LocalDate parseDate(String input) {
+		if(isBlank(input))
+			return null;
+		
+		try {
+			return LocalDate.parse(input.strip(), DATE_FORMATTER);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the year typed or -1 if it is not a number.
+	 */
+	private static int parseYear(String input) {
+		try {
+			return Integer.parseInt(input.strip());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static boolean isBlank(String input) {
+		return input == null || input.isBlank();
+	}
+	
+	private static String orSuccess(String message) {
+		return message == null ? InputValidator.DEFAULT_SUCCESS_MESSAGE : message;
+	}
+
+	private boolean isClassEmpty(final StudentRepository students) {
+		return students.isEmpty();
 	}
 }
\ No newline at end of file
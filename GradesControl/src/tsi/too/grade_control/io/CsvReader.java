@@ -0,0 +1,114 @@
+package tsi.too.grade_control.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * A streaming CSV parser reading one record at a time.
+ *
+ * Fields can be enclosed in double quotes, in which case they may contain separators, line breaks and
+ * doubled quotes. Both LF and CRLF line endings are accepted.
+ */
+public class CsvReader implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Reader in;
+	private final char separator;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	private final StringBuilder field = new StringBuilder();
+	private long line = 1;
+	private long recordLine;
+
+	public CsvReader(Reader in, char separator) {
+		this.in = in;
+		this.separator = separator;
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @param fields receives the fields of the record, it is cleared first.
+	 * @return false if the end of the input was reached before any field.
+	 * @throws IOException if the input fails or a quoted field is not closed.
+	 */
+	public boolean next(List<String> fields) throws IOException {
+		fields.clear();
+		field.setLength(0);
+		recordLine = line;
+
+		int c = read();
+		if(c < 0)
+			return false;
+
+		var quoted = false;
+
+		while(true) {
+			if(quoted) {
+				if(c < 0)
+					throw new IOException("Unclosed quote in the record at line " + recordLine);
+
+				if(c == '"') {
+					c = read();
+					if(c != '"') {
+						quoted = false;
+						continue;
+					}
+				} else if(c == '\n') {
+					line++;
+				}
+
+				field.append((char) c);
+			} else if(c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if(c == separator) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if(c == '\n' || c < 0) {
+				if(c == '\n')
+					line++;
+
+				var length = field.length();
+				if(length > 0 && field.charAt(length - 1) == '\r')
+					field.setLength(length - 1);
+
+				fields.add(field.toString());
+				return true;
+			} else {
+				field.append((char) c);
+			}
+
+			c = read();
+		}
+	}
+
+	/**
+	 * @return the line where the last read record starts.
+	 */
+	public long getRecordLine() {
+		return recordLine;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private int read() throws IOException {
+		if(position == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+
+			if(limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+
+		return buffer[position++];
+	}
+}
@@ -0,0 +1,299 @@
+package tsi.too.grade_control.io;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.DisciplineReport;
+
+/**
+ * The JSON written by the exporter and the service mode, plus a small parser for request bodies.
+ *
+ * Parsed objects are <code>Map</code>s keeping the key order, arrays are <code>List</code>s, numbers are
+ * <code>Double</code>s and <code>null</code>, <code>true</code> and <code>false</code> are their Java
+ * counterparts.
+ */
+public final class Json {
+	private final String text;
+	private int position;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses a JSON document.
+	 *
+	 * @param text the document.
+	 * @return the parsed value.
+	 * @throws IllegalArgumentException if the text is not valid JSON.
+	 */
+	public static Object parse(String text) {
+		var parser = new Json(text);
+		var value = parser.readValue();
+
+		parser.skipSpaces();
+		if(parser.position != text.length())
+			throw parser.error("Unexpected content");
+
+		return value;
+	}
+
+	/**
+	 * Appends a student with its approval status and disciplines.
+	 *
+	 * @param out where to append.
+	 * @param s the student.
+	 * @param approved the student approval status.
+	 * @return <code>out</code>.
+	 */
+	public static StringBuilder appendStudent(StringBuilder out, Student s, boolean approved) {
+		out.append("{\"matricula\":");
+		appendString(out, s.getRegistration()).append(",\"nome\":");
+		appendString(out, s.getName()).append(",\"curso\":");
+		appendString(out, s.getCourse()).append(",\"aprovado\":").append(approved)
+			.append(",\"disciplinas\":[");
+
+		var first = new boolean[] {true};
+		s.forEachDiscipline((discipline, grade) -> {
+			out.append(first[0] ? "{\"nome\":" : ",{\"nome\":");
+			appendString(out, discipline).append(",\"nota\":").append((float) grade).append('}');
+			first[0] = false;
+		});
+
+		return out.append("]}");
+	}
+
+	/**
+	 * Appends the enrollment count, the approval count, the mean, median, lowest and highest grades and the
+	 * percentage of approved students of a discipline.
+	 *
+	 * @param out where to append.
+	 * @param d the discipline report.
+	 * @return <code>out</code>.
+	 */
+	public static StringBuilder appendDisciplineReport(StringBuilder out, DisciplineReport d) {
+		appendString(out.append("{\"disciplina\":"), d.getName())
+			.append(",\"alunos\":").append(d.getEnrollmentCount())
+			.append(",\"aprovados\":").append(d.getApprovedCount())
+			.append(",\"media\":").append(round(d.getMean(), 100))
+			.append(",\"mediana\":").append(round(d.getMedian(), 100))
+			.append(",\"menor_nota\":").append((float) d.getMin())
+			.append(",\"maior_nota\":").append((float) d.getMax())
+			.append(",\"percentual_aprovados\":").append(round(d.getPassRate(), 10));
+
+		return out.append('}');
+	}
+
+	/**
+	 * Appends a string literal, escaping quotes, backslashes and control chars.
+	 *
+	 * @param out where to append.
+	 * @param value the string.
+	 * @return <code>out</code>.
+	 */
+	public static StringBuilder appendString(StringBuilder out, String value) {
+		out.append('"');
+
+		for(int i = 0; i < value.length(); i++) {
+			var c = value.charAt(i);
+
+			switch(c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if(c < 0x20)
+					out.append(String.format("\\u%04x", (int) c));
+				else
+					out.append(c);
+			}
+		}
+
+		return out.append('"');
+	}
+
+	private static double round(double value, int scale) {
+		return (double) Math.round(value * scale) / scale;
+	}
+
+	private Object readValue() {
+		skipSpaces();
+
+		if(position == text.length())
+			throw error("Unexpected end");
+
+		var c = text.charAt(position);
+		switch(c) {
+		case '{':
+			return readObject();
+		case '[':
+			return readArray();
+		case '"':
+			return readString();
+		case 't':
+			return readLiteral("true", Boolean.TRUE);
+		case 'f':
+			return readLiteral("false", Boolean.FALSE);
+		case 'n':
+			return readLiteral("null", null);
+		default:
+			return readNumber();
+		}
+	}
+
+	private Map<String, Object> readObject() {
+		var object = new LinkedHashMap<String, Object>();
+		position++;
+
+		skipSpaces();
+		if(consume('}'))
+			return object;
+
+		do {
+			skipSpaces();
+			if(position == text.length() || text.charAt(position) != '"')
+				throw error("Expected a key");
+
+			var key = readString();
+
+			skipSpaces();
+			if(!consume(':'))
+				throw error("Expected ':'");
+
+			object.put(key, readValue());
+			skipSpaces();
+		}while(consume(','));
+
+		if(!consume('}'))
+			throw error("Expected '}'");
+
+		return object;
+	}
+
+	private List<Object> readArray() {
+		var array = new ArrayList<Object>();
+		position++;
+
+		skipSpaces();
+		if(consume(']'))
+			return array;
+
+		do {
+			array.add(readValue());
+			skipSpaces();
+		}while(consume(','));
+
+		if(!consume(']'))
+			throw error("Expected ']'");
+
+		return array;
+	}
+
+	private String readString() {
+		var value = new StringBuilder();
+		position++;
+
+		while(position < text.length()) {
+			var c = text.charAt(position++);
+
+			if(c == '"')
+				return value.toString();
+
+			if(c != '\\') {
+				value.append(c);
+				continue;
+			}
+
+			if(position == text.length())
+				break;
+
+			c = text.charAt(position++);
+			switch(c) {
+			case 'b':
+				value.append('\b');
+				break;
+			case 'f':
+				value.append('\f');
+				break;
+			case 'n':
+				value.append('\n');
+				break;
+			case 'r':
+				value.append('\r');
+				break;
+			case 't':
+				value.append('\t');
+				break;
+			case 'u':
+				if(position + 4 > text.length())
+					throw error("Invalid escape");
+				try {
+					value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+				} catch (NumberFormatException e) {
+					throw error("Invalid escape");
+				}
+				position += 4;
+				break;
+			default:
+				value.append(c);
+			}
+		}
+
+		throw error("Unterminated string");
+	}
+
+	private Object readLiteral(String literal, Object value) {
+		if(!text.startsWith(literal, position))
+			throw error("Unexpected token");
+
+		position += literal.length();
+
+		return value;
+	}
+
+	private Double readNumber() {
+		var start = position;
+
+		while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0)
+			position++;
+
+		try {
+			return Double.valueOf(text.substring(start, position));
+		} catch (NumberFormatException e) {
+			throw error("Invalid number");
+		}
+	}
+
+	private boolean consume(char c) {
+		if(position < text.length() && text.charAt(position) == c) {
+			position++;
+			return true;
+		}
+
+		return false;
+	}
+
+	private void skipSpaces() {
+		while(position < text.length() && Character.isWhitespace(text.charAt(position)))
+			position++;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + position);
+	}
+}
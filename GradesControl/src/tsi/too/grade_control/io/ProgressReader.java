@@ -0,0 +1,62 @@
+package tsi.too.grade_control.io;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the characters read through it and stops the reading when asked, so a long import can show its
+ * progress and be cancelled without knowing anything about it.
+ */
+public class ProgressReader extends FilterReader {
+	private final LongConsumer progress;
+	private final BooleanSupplier cancelled;
+	private long count;
+
+	/**
+	 * @param in the reader.
+	 * @param progress receives the number of characters read so far after each read.
+	 * @param cancelled tells if the reading must stop.
+	 */
+	public ProgressReader(Reader in, LongConsumer progress, BooleanSupplier cancelled) {
+		super(in);
+		this.progress = progress;
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * @throws InterruptedIOException if the reading was cancelled.
+	 */
+	@Override
+	public int read() throws IOException {
+		checkCancelled();
+
+		var c = super.read();
+		if(c >= 0)
+			progress.accept(++count);
+
+		return c;
+	}
+
+	/**
+	 * @throws InterruptedIOException if the reading was cancelled.
+	 */
+	@Override
+	public int read(char[] buffer, int offset, int length) throws IOException {
+		checkCancelled();
+
+		var n = super.read(buffer, offset, length);
+		if(n > 0)
+			progress.accept(count += n);
+
+		return n;
+	}
+
+	private void checkCancelled() throws InterruptedIOException {
+		if(cancelled.getAsBoolean())
+			throw new InterruptedIOException("Cancelled");
+	}
+}
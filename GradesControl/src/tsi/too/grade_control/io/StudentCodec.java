@@ -0,0 +1,362 @@
+package tsi.too.grade_control.io;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.GradeTable;
+import tsi.too.grade_control.model.Student;
+
+/**
+ * A compact binary encoding of students and disciplines, to store or send them.
+ *
+ * A student is encoded as the <code>FORMAT_VERSION</code> byte, its registration, name and course, the
+ * number of disciplines and each discipline. A discipline is encoded as its name and its grade, and also
+ * starts with the version byte when it is encoded on its own. Strings are their length in UTF-8 bytes
+ * followed by the bytes, counts and lengths are unsigned varints, 7 bits per byte with the high bit set on
+ * every byte but the last, and grades are big-endian <code>float</code>s, the precision the
+ * {@link GradeTable} keeps.
+ *
+ * Encoding writes straight into the array of a heap buffer and creates no objects. Decoding creates the
+ * strings and the model objects only. The chars and bytes of the strings go through arrays kept by the
+ * codec, so an instance is not thread safe, each thread should keep its own.
+ */
+public final class StudentCodec {
+	public static final byte FORMAT_VERSION = 1;
+
+	/**
+	 * The most bytes of an encoded varint of an <code>int</code>.
+	 */
+	private static final int MAX_VARINT_SIZE = 5;
+
+	private static final int INITIAL_SCRATCH_SIZE = 64;
+	private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+	/**
+	 * Writes the visited disciplines of a student, or adds up their size when there is no buffer, so encoding
+	 * does not create a visitor per student.
+	 */
+	private class DisciplineWriter implements Student.DisciplineVisitor {
+		ByteBuffer out;
+		int count;
+
+		@Override
+		public void visit(String name, double grade) {
+			if(out != null)
+				writeDiscipline(out, name, grade);
+			else
+				size += disciplineSize(name);
+
+			count++;
+		}
+	}
+
+	private final DisciplineWriter disciplines = new DisciplineWriter();
+	private byte[] scratch = new byte[INITIAL_SCRATCH_SIZE];
+	private char[] chars = new char[INITIAL_SCRATCH_SIZE];
+	private int size;
+
+	/**
+	 * Computes the size of the encoding of a student, to size a buffer before encoding it.
+	 *
+	 * @param student the student.
+	 * @return the size in bytes.
+	 */
+	public int encodedSize(Student student) {
+		size = 1 + stringSize(student.getRegistration()) + stringSize(student.getName())
+				+ stringSize(student.getCourse()) + 1;
+
+		disciplines.out = null;
+		student.forEachDiscipline(disciplines);
+
+		return size;
+	}
+
+	/**
+	 * @param discipline the discipline.
+	 * @return the size of the encoding of the discipline in bytes.
+	 */
+	public int encodedSize(Discipline discipline) {
+		return 1 + disciplineSize(discipline.getName());
+	}
+
+	/**
+	 * Encodes a student at the position of a buffer, advancing it.
+	 *
+	 * The disciplines are counted while they are written, so a discipline added meanwhile by another
+	 * thread does not leave the count out of step with them.
+	 *
+	 * @param student the student.
+	 * @param out the buffer.
+	 * @throws BufferOverflowException if the buffer has no room for the student, see
+	 * {@link #encodedSize(Student)}.
+	 */
+	public void encode(Student student, ByteBuffer out) {
+		out.put(FORMAT_VERSION);
+		writeString(out, student.getRegistration());
+		writeString(out, student.getName());
+		writeString(out, student.getCourse());
+
+		/* A student has fewer than 128 disciplines, so the count is a single byte written at the end */
+		var countPosition = out.position();
+		out.put((byte) 0);
+
+		disciplines.out = out;
+		disciplines.count = 0;
+
+		try {
+			student.forEachDiscipline(disciplines);
+		} finally {
+			disciplines.out = null;
+		}
+
+		out.put(countPosition, (byte) disciplines.count);
+	}
+
+	/**
+	 * Encodes a discipline at the position of a buffer, advancing it.
+	 *
+	 * @param discipline the discipline.
+	 * @param out the buffer.
+	 * @throws BufferOverflowException if the buffer has no room for the discipline.
+	 */
+	public void encode(Discipline discipline, ByteBuffer out) {
+		out.put(FORMAT_VERSION);
+		writeDiscipline(out, discipline.getName(), discipline.getGrade());
+	}
+
+	/**
+	 * Decodes a student at the position of a buffer into the grade table of the class, advancing it.
+	 *
+	 * @see #decodeStudent(ByteBuffer, GradeTable)
+	 */
+	public Student decodeStudent(ByteBuffer in) {
+		return decodeStudent(in, GradeTable.getInstance());
+	}
+
+	/**
+	 * Decodes a student at the position of a buffer, advancing it.
+	 *
+	 * @param in the buffer.
+	 * @param grades the table that keeps the grades of the student.
+	 * @return the decoded student.
+	 * @throws IllegalArgumentException if the bytes are not an encoded student.
+	 * @throws BufferUnderflowException if the buffer ends before the student.
+	 */
+	public Student decodeStudent(ByteBuffer in, GradeTable grades) {
+		checkVersion(in);
+
+		var student = new Student(grades, readString(in), readString(in), readString(in));
+		var count = readVarint(in);
+
+		if(count > Student.MAX_SUBSCRIPTION_ALLWOED)
+			throw new IllegalArgumentException("Too many disciplines: " + count);
+
+		for(int i = 0; i < count; i++)
+			student.addDiscipline(readString(in), in.getFloat());
+
+		return student;
+	}
+
+	/**
+	 * Decodes a discipline at the position of a buffer, advancing it.
+	 *
+	 * @param in the buffer.
+	 * @return the decoded discipline.
+	 * @throws IllegalArgumentException if the bytes are not an encoded discipline.
+	 * @throws BufferUnderflowException if the buffer ends before the discipline.
+	 */
+	public Discipline decodeDiscipline(ByteBuffer in) {
+		checkVersion(in);
+
+		return new Discipline(readString(in), in.getFloat());
+	}
+
+	private void writeDiscipline(ByteBuffer out, String name, double grade) {
+		writeString(out, name);
+		out.putFloat((float) grade);
+	}
+
+	private int disciplineSize(String name) {
+		return stringSize(name) + Float.BYTES;
+	}
+
+	private static void checkVersion(ByteBuffer in) {
+		var version = in.get();
+		if(version != FORMAT_VERSION)
+			throw new IllegalArgumentException("Unsupported encoding version " + version);
+	}
+
+	/**
+	 * Writes the length and the UTF-8 bytes of a string. The chars are copied at once to the scratch array,
+	 * then encoded straight into the array of a heap buffer or through the scratch bytes otherwise.
+	 */
+	private void writeString(ByteBuffer out, String value) {
+		var chars = copyChars(value);
+		var length = utf8Length(chars, value.length());
+
+		writeVarint(out, length);
+		if(length > out.remaining())
+			throw new BufferOverflowException();
+
+		if(out.hasArray()) {
+			if(length == value.length())
+				copyAscii(value, out.array(), out.arrayOffset() + out.position());
+			else
+				encodeUtf8(chars, value.length(), out.array(), out.arrayOffset() + out.position());
+
+			out.position(out.position() + length);
+			return;
+		}
+
+		if(scratch.length < length)
+			scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length << 1));
+
+		encodeUtf8(chars, value.length(), scratch, 0);
+		out.put(scratch, 0, length);
+	}
+
+	private int stringSize(String value) {
+		var length = utf8Length(copyChars(value), value.length());
+
+		return varintSize(length) + length;
+	}
+
+	private char[] copyChars(String value) {
+		if(chars.length < value.length())
+			chars = new char[Math.max(value.length(), chars.length << 1)];
+
+		value.getChars(0, value.length(), chars, 0);
+
+		return chars;
+	}
+
+	/**
+	 * Copies an ASCII string, whose UTF-8 bytes are the low bytes of its chars, with the bulk copy of
+	 * <code>String</code>, deprecated because it drops the high bytes but not creating any array.
+	 */
+	@SuppressWarnings("deprecation")
+	private static void copyAscii(String value, byte[] out, int position) {
+		value.getBytes(0, value.length(), out, position);
+	}
+
+	/**
+	 * Encodes chars as UTF-8, writing an unpaired surrogate as the replacement character U+FFFD.
+	 */
+	private static void encodeUtf8(char[] chars, int count, byte[] out, int position) {
+		for(int i = 0; i < count; i++) {
+			var c = chars[i];
+
+			if(c < 0x80) {
+				out[position++] = (byte) c;
+			} else if(c < 0x800) {
+				out[position++] = (byte) (0xC0 | c >> 6);
+				out[position++] = (byte) (0x80 | c & 0x3F);
+			} else if(Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(chars[i + 1])) {
+				var codePoint = Character.toCodePoint(c, chars[++i]);
+
+				out[position++] = (byte) (0xF0 | codePoint >> 18);
+				out[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+				out[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+				out[position++] = (byte) (0x80 | codePoint & 0x3F);
+			} else {
+				if(Character.isSurrogate(c))
+					c = REPLACEMENT_CHARACTER;
+
+				out[position++] = (byte) (0xE0 | c >> 12);
+				out[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+				out[position++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+	}
+
+	/**
+	 * @return the length of the UTF-8 encoding of chars, equal to their count only if they are all ASCII.
+	 */
+	private static int utf8Length(char[] chars, int count) {
+		var length = count;
+
+		for(int i = 0; i < count; i++) {
+			var c = chars[i];
+
+			if(c < 0x80)
+				continue;
+
+			if(c < 0x800) {
+				length++;
+			} else if(Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(chars[i + 1])) {
+				/* 4 bytes for the 2 chars of the pair */
+				length += 2;
+				i++;
+			} else {
+				length += 2;
+			}
+		}
+
+		return length;
+	}
+
+	/**
+	 * Reads a string, straight from the array of a heap buffer or through the scratch array otherwise.
+	 */
+	private String readString(ByteBuffer in) {
+		var length = readVarint(in);
+		if(length > in.remaining())
+			throw new BufferUnderflowException();
+
+		if(in.hasArray()) {
+			var value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+			in.position(in.position() + length);
+
+			return value;
+		}
+
+		if(scratch.length < length)
+			scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length << 1));
+
+		in.get(scratch, 0, length);
+
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarint(ByteBuffer out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+
+		out.put((byte) value);
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		var value = 0;
+
+		for(int shift = 0; shift < MAX_VARINT_SIZE * 7; shift += 7) {
+			var b = in.get();
+			value |= (b & 0x7F) << shift;
+
+			if(b >= 0) {
+				if(value < 0)
+					throw new IllegalArgumentException("Negative length");
+
+				return value;
+			}
+		}
+
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private static int varintSize(int value) {
+		var size = 1;
+
+		while((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+
+		return size;
+	}
+}
@@ -0,0 +1,365 @@
+package tsi.too.grade_control.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.ClassStatistics;
+import tsi.too.grade_control.report.ReportWriter;
+import tsi.too.grade_control.repository.StudentRepository;
+
+/**
+ * Exports the roster, the approval status of each student and the class summary to CSV and JSON files.
+ *
+ * The students are split by the <code>Spliterator</code> of the repository in ranges of about
+ * <code>chunkSize</code>, without copying the roster, and the ranges are serialized concurrently by an
+ * <code>Executor</code>, each into its own buffer. The buffers are written to the channel in roster order as
+ * soon as they are ready, so the output is the same of a sequential run and only a few ranges are held in
+ * memory at a time.
+ *
+ * The class may change while an export is running, as when it is served over HTTP. Each student is
+ * serialized again if its stamp changes meanwhile, so its line shows a state it had, with the approval read
+ * from its own grades, and it is left out if it was removed. The students registered or removed during the
+ * export may or may not be listed, like in the iterators of the repository, and the summary is the one of
+ * the start of the export.
+ */
+public class StudentExporter {
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	public static final String ROSTER_FILE = "roster.csv";
+	public static final String APPROVAL_FILE = "approval.csv";
+	public static final String SUMMARY_FILE = "summary.csv";
+	public static final String JSON_FILE = "report.json";
+
+	private static final String ROSTER_HEADER = "matricula,nome,curso,disciplina,nota\n";
+	private static final String APPROVAL_HEADER = "matricula,nome,curso,aprovado\n";
+	private static final String SUMMARY_HEADER = "indicador,valor\n";
+
+	/**
+	 * Serializes a single student.
+	 */
+	@FunctionalInterface
+	private interface StudentSerializer {
+		void serialize(Student student, boolean approved, StringBuilder out);
+	}
+
+	private final StudentRepository students;
+	private final ClassStatistics statistics;
+	private final int chunkSize;
+	private final Executor executor;
+
+	/**
+	 * @param students the class to be exported.
+	 * @param statistics the up to date statistics of the class.
+	 */
+	public StudentExporter(StudentRepository students, ClassStatistics statistics) {
+		this(students, statistics, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param students the class to be exported.
+	 * @param statistics the up to date statistics of the class.
+	 * @param chunkSize the number of students serialized by each task.
+	 * @param executor runs the serialization tasks, <code>Runnable::run</code> exports sequentially.
+	 */
+	public StudentExporter(StudentRepository students, ClassStatistics statistics, int chunkSize,
+			Executor executor) {
+		if(chunkSize <= 0)
+			throw new IllegalArgumentException("chunkSize must be positive");
+
+		this.students = students;
+		this.statistics = statistics;
+		this.chunkSize = chunkSize;
+		this.executor = executor;
+	}
+
+	/**
+	 * Writes the roster, the approval status and the summary CSV files and the JSON report.
+	 *
+	 * @param directory where the files are written, created if it does not exist.
+	 * @throws IOException if a file can not be written.
+	 */
+	public void exportAll(Path directory) throws IOException {
+		Files.createDirectories(directory);
+
+		exportRosterCsv(directory.resolve(ROSTER_FILE));
+		exportApprovalCsv(directory.resolve(APPROVAL_FILE));
+		exportSummaryCsv(directory.resolve(SUMMARY_FILE));
+		exportJson(directory.resolve(JSON_FILE));
+	}
+
+	/**
+	 * Writes one line per enrollment, in the format read by {@link StudentImporter}.
+	 *
+	 * @param file the target file, it is replaced if it exists.
+	 * @throws IOException if the file can not be written.
+	 */
+	public void exportRosterCsv(Path file) throws IOException {
+		writeRanges(file, ROSTER_HEADER, (s, approved, out) -> {
+			s.forEachDiscipline((discipline, grade) -> {
+				appendCsv(out, s.getRegistration()).append(',');
+				appendCsv(out, s.getName()).append(',');
+				appendCsv(out, s.getCourse()).append(',');
+				appendCsv(out, discipline).append(',').append((float) grade).append('\n');
+			});
+		}, "", "");
+	}
+
+	/**
+	 * Writes one line per student with its approval status.
+	 *
+	 * @param file the target file, it is replaced if it exists.
+	 * @throws IOException if the file can not be written.
+	 */
+	public void exportApprovalCsv(Path file) throws IOException {
+		writeRanges(file, APPROVAL_HEADER, (s, approved, out) -> {
+			appendCsv(out, s.getRegistration()).append(',');
+			appendCsv(out, s.getName()).append(',');
+			appendCsv(out, s.getCourse()).append(',').append(approved).append('\n');
+		}, "", "");
+	}
+
+	/**
+	 * Writes the indicators of the report summary, one per line.
+	 *
+	 * @param file the target file, it is replaced if it exists.
+	 * @throws IOException if the file can not be written.
+	 */
+	public void exportSummaryCsv(Path file) throws IOException {
+		var out = new StringBuilder(SUMMARY_HEADER);
+		var numbers = new ReportWriter(out, Locale.ROOT);
+		var count = statistics.getStudentsCount();
+
+		out.append("alunos,").append(count)
+			.append("\naprovados,").append(statistics.getApprovedCount())
+			.append("\nreprovados,").append(statistics.getReprovedCount())
+			.append("\npercentual_aprovados,");
+		numbers.appendDecimal(percentage(statistics.getApprovedCount(), count), 1);
+		out.append("\npercentual_reprovados,");
+		numbers.appendDecimal(percentage(statistics.getReprovedCount(), count), 1);
+
+		for(var d : statistics.getDisciplines()) {
+			if(d.getCount() > 0) {
+				appendCsv(out.append('\n'), "media:" + d.getName()).append(',');
+				numbers.appendDecimal(d.getAverage(), 2);
+			}
+		}
+
+		for(int i = 0; i < ClassStatistics.HISTOGRAM_BUCKETS; i++)
+			out.append("\nnotas:").append(i).append(',').append(statistics.getHistogramCount(i));
+
+		write(file, out.append('\n'));
+	}
+
+	/**
+	 * Writes a single JSON document with the students, their disciplines and approval status, and the
+	 * report summary.
+	 *
+	 * @param file the target file, it is replaced if it exists.
+	 * @throws IOException if the file can not be written.
+	 */
+	public void exportJson(Path file) throws IOException {
+		try(var channel = open(file)) {
+			exportJson(channel);
+		}
+	}
+
+	/**
+	 * Writes the JSON report to a channel, which is not closed.
+	 *
+	 * @param channel the target channel.
+	 * @throws IOException if the channel fails.
+	 * @see #exportJson(Path)
+	 */
+	public void exportJson(WritableByteChannel channel) throws IOException {
+		var summary = new StringBuilder("\n],\"resumo\":");
+		appendJsonSummary(summary);
+		summary.append("}\n");
+
+		writeRanges(channel, "{\"alunos\":[", (s, approved, out) -> Json.appendStudent(out.append('\n'), s, approved),
+				",", summary);
+	}
+
+	private void writeRanges(Path file, CharSequence head, StudentSerializer serializer, String separator,
+			CharSequence tail) throws IOException {
+		try(var channel = open(file)) {
+			writeRanges(channel, head, serializer, separator, tail);
+		}
+	}
+
+	/**
+	 * Serializes the roster range by range, writing the ranges in order. Every student is preceded by the
+	 * separator, which is dropped before the first one written.
+	 */
+	private void writeRanges(WritableByteChannel channel, CharSequence head, StudentSerializer serializer,
+			String separator, CharSequence tail) throws IOException {
+		var window = 2 * Runtime.getRuntime().availableProcessors();
+		var pending = new ArrayDeque<CompletableFuture<ByteBuffer>>(window);
+		var ranges = new ArrayDeque<Spliterator<Student>>();
+		ranges.push(students.spliterator());
+
+		try {
+			writeFully(channel, encode(head));
+
+			var first = true;
+			while(!ranges.isEmpty() || !pending.isEmpty()) {
+				while(!ranges.isEmpty() && pending.size() < window) {
+					var range = nextRange(ranges);
+
+					pending.add(CompletableFuture.supplyAsync(() -> {
+						var out = new StringBuilder((int) Math.min(range.estimateSize(), chunkSize) * 64);
+						range.forEachRemaining(s -> serialize(s, serializer, separator, out));
+						return encode(out);
+					}, executor));
+				}
+
+				var buffer = pending.poll().join();
+				if(first && buffer.hasRemaining()) {
+					buffer.position(separator.length());
+					first = false;
+				}
+
+				writeFully(channel, buffer);
+			}
+
+			writeFully(channel, encode(tail));
+		} finally {
+			pending.forEach(f -> f.cancel(false));
+		}
+	}
+
+	/**
+	 * Takes the first range of the roster not yet serialized, splitting it until it has at most
+	 * <code>chunkSize</code> students or can not be split.
+	 */
+	private Spliterator<Student> nextRange(ArrayDeque<Spliterator<Student>> ranges) {
+		while(true) {
+			var range = ranges.pop();
+			var prefix = range.estimateSize() > chunkSize ? range.trySplit() : null;
+
+			if(prefix == null)
+				return range;
+
+			ranges.push(range);
+			ranges.push(prefix);
+		}
+	}
+
+	/**
+	 * Serializes a student after the separator, again if its stamp changes meanwhile, or nothing if it is no
+	 * longer registered.
+	 */
+	private void serialize(Student student, StudentSerializer serializer, String separator, StringBuilder out) {
+		var start = out.length();
+
+		while(true) {
+			var stamp = student.getStamp();
+
+			serializer.serialize(student, student.isAproved(), out.append(separator));
+
+			if(student.getStamp() == stamp)
+				break;
+
+			out.setLength(start);
+		}
+
+		if(students.findByRegistration(student.getRegistration()) != student)
+			out.setLength(start);
+	}
+
+	private void appendJsonSummary(StringBuilder out) throws IOException {
+		var numbers = new ReportWriter(out, Locale.ROOT);
+		var count = statistics.getStudentsCount();
+
+		out.append("{\"alunos\":").append(count)
+			.append(",\"aprovados\":").append(statistics.getApprovedCount())
+			.append(",\"reprovados\":").append(statistics.getReprovedCount())
+			.append(",\"percentual_aprovados\":");
+		numbers.appendDecimal(percentage(statistics.getApprovedCount(), count), 1);
+		out.append(",\"percentual_reprovados\":");
+		numbers.appendDecimal(percentage(statistics.getReprovedCount(), count), 1);
+		out.append(",\"medias\":[");
+
+		var first = true;
+		for(var d : statistics.getDisciplines()) {
+			if(d.getCount() > 0) {
+				Json.appendString(out.append(first ? "{\"disciplina\":" : ",{\"disciplina\":"), d.getName())
+					.append(",\"alunos\":").append(d.getCount())
+					.append(",\"aprovados\":").append(d.getApprovedCount())
+					.append(",\"media\":");
+				numbers.appendDecimal(d.getAverage(), 2);
+				out.append('}');
+				first = false;
+			}
+		}
+
+		out.append("],\"distribuicao\":[");
+		for(int i = 0; i < ClassStatistics.HISTOGRAM_BUCKETS; i++)
+			out.append(i == 0 ? "" : ",").append(statistics.getHistogramCount(i));
+		out.append("]}");
+	}
+
+	/**
+	 * An empty class has no percentages, they are written as zero.
+	 */
+	private static double percentage(int value, int from) {
+		return from == 0 ? 0 : (double) value / from * 100;
+	}
+
+	/**
+	 * Appends a CSV field, quoted only if it holds a separator, a quote or a line break.
+	 */
+	private static StringBuilder appendCsv(StringBuilder out, String value) {
+		var quote = false;
+		for(int i = 0; i < value.length() && !quote; i++) {
+			var c = value.charAt(i);
+			quote = c == ',' || c == ';' || c == '"' || c == '\n' || c == '\r';
+		}
+
+		if(!quote)
+			return out.append(value);
+
+		out.append('"');
+		for(int i = 0; i < value.length(); i++) {
+			var c = value.charAt(i);
+			if(c == '"')
+				out.append('"');
+			out.append(c);
+		}
+
+		return out.append('"');
+	}
+
+	private static ByteBuffer encode(CharSequence text) {
+		return StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+	}
+
+	private static FileChannel open(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private static void write(Path file, CharSequence text) throws IOException {
+		try(var channel = open(file)) {
+			writeFully(channel, encode(text));
+		}
+	}
+
+	private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+}
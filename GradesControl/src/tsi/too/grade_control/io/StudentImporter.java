@@ -0,0 +1,423 @@
+package tsi.too.grade_control.io;
+
+import static tsi.too.grade_control.Constants.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.service.GradeService;
+import tsi.too.grade_control.util.CaseInsensitiveKey;
+
+/**
+ * Imports students and grades from CSV without user interaction.
+ *
+ * Each row holds a registration number or course initials, the student name, the course, a discipline
+ * and its grade. Rows with the same student name are grouped in a single student, the first row of a
+ * student defines its registration and course. When the first column holds course initials, a new
+ * registration number is taken from a block reserved for the chunk.
+ *
+ * The input is read in chunks. The rules that depend only on the row, such as the grade range, are
+ * checked in parallel; the rules that depend on the class, such as the unique name, the maximum number of
+ * disciplines and duplicated disciplines, are checked in row order while the chunk is applied. The new
+ * students of a chunk are registered together at the end of the chunk, so the class may change meanwhile:
+ * all the rows of a student that can not be registered then are reported as well. Invalid rows are skipped
+ * and reported with their line number.
+ */
+public class StudentImporter {
+	public static final int DEFAULT_CHUNK_SIZE = 50_000;
+
+	private static final int FIELDS = 5;
+	private static final int HEADER_PEEK_LIMIT = 1 << 16;
+
+	/**
+	 * A row that could not be imported.
+	 */
+	public static class ImportError {
+		private final long line;
+		private final String message;
+
+		ImportError(long line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+
+		public long getLine() {
+			return line;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return line + ": " + message;
+		}
+	}
+
+	/**
+	 * The outcome of an import.
+	 */
+	public static class ImportResult {
+		private long rows;
+		private long importedRows;
+		private int importedStudents;
+		private final List<ImportError> errors = new ArrayList<>();
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long getImportedRows() {
+			return importedRows;
+		}
+
+		public int getImportedStudents() {
+			return importedStudents;
+		}
+
+		public List<ImportError> getErrors() {
+			return Collections.unmodifiableList(errors);
+		}
+
+		/**
+		 * Generates a report with the import counts followed by the errors.
+		 *
+		 * @param maxErrors the maximum number of errors listed.
+		 * @return the generated String.
+		 */
+		public String toReportString(int maxErrors) {
+			var message = new StringBuilder()
+					.append(String.format("%s = %d", IMPORTED_ROWS, importedRows))
+					.append(String.format("\n%s = %d", IMPORTED_STUDENTS, importedStudents))
+					.append(String.format("\n%s = %d", REJECTED_ROWS, errors.size()));
+
+			for(int i = 0; i < errors.size() && i < maxErrors; i++) {
+				var e = errors.get(i);
+				message.append(String.format("\n%s %d: %s", LINE, e.getLine(), e.getMessage()));
+			}
+
+			if(errors.size() > maxErrors)
+				message.append("\n...");
+
+			return message.toString();
+		}
+	}
+
+	private final StudentRepository students;
+	private final RegistrationAllocator registrations;
+	private final int chunkSize;
+
+	/* The columns of the chunk being imported */
+	private final long[] lines;
+	private final String[] keys;
+	private final String[] names;
+	private final String[] courses;
+	private final String[] disciplines;
+	private final String[] gradeTexts;
+	private final double[] grades;
+	private final String[] errors;
+	private final Student[] owners;
+
+	private final HashMap<CaseInsensitiveKey, Student> importedByName = new HashMap<>();
+	private final HashMap<CaseInsensitiveKey, Student> importedByRegistration = new HashMap<>();
+	private final List<Student> pending = new ArrayList<>();
+	private final HashMap<String, RegistrationAllocator.Block> blocks = new HashMap<>();
+
+	/**
+	 * @param students where the students are registered.
+	 * @param registrations allocates the registration numbers of the rows holding course initials.
+	 */
+	public StudentImporter(StudentRepository students, RegistrationAllocator registrations) {
+		this(students, registrations, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param students where the students are registered.
+	 * @param registrations allocates the registration numbers of the rows holding course initials.
+	 * @param chunkSize the number of rows validated and applied together.
+	 */
+	public StudentImporter(StudentRepository students, RegistrationAllocator registrations, int chunkSize) {
+		this.students = students;
+		this.registrations = registrations;
+		this.chunkSize = chunkSize;
+
+		lines = new long[chunkSize];
+		keys = new String[chunkSize];
+		names = new String[chunkSize];
+		courses = new String[chunkSize];
+		disciplines = new String[chunkSize];
+		gradeTexts = new String[chunkSize];
+		grades = new double[chunkSize];
+		errors = new String[chunkSize];
+		owners = new Student[chunkSize];
+	}
+
+	/**
+	 * Imports the rows of a CSV input. The separator can be a comma or a semicolon and a header row is
+	 * skipped if present.
+	 *
+	 * @param in the CSV input.
+	 * @return the import counts and the errors found.
+	 * @throws IOException if the input fails.
+	 */
+	public ImportResult importCsv(Reader in) throws IOException {
+		var buffered = new BufferedReader(in, HEADER_PEEK_LIMIT);
+		var result = new ImportResult();
+
+		var csv = new CsvReader(buffered, detectSeparator(buffered));
+		var fields = new ArrayList<String>(FIELDS);
+		var count = 0;
+
+		while(csv.next(fields)) {
+			if(fields.size() == 1 && fields.get(0).isBlank())
+				continue;
+
+			if(csv.getRecordLine() == 1 && isHeader(fields))
+				continue;
+
+			lines[count] = csv.getRecordLine();
+			errors[count] = fields.size() == FIELDS ? null : INVALID_IMPORT_ROW;
+
+			if(errors[count] == null) {
+				keys[count] = fields.get(0).strip();
+				names[count] = fields.get(1).strip();
+				courses[count] = fields.get(2).strip();
+				disciplines[count] = fields.get(3).strip();
+				gradeTexts[count] = fields.get(4).strip();
+			}
+
+			if(++count == chunkSize) {
+				importChunk(count, result);
+				count = 0;
+			}
+		}
+
+		importChunk(count, result);
+		importedByName.clear();
+		importedByRegistration.clear();
+
+		return result;
+	}
+
+	private void importChunk(int count, ImportResult result) {
+		IntStream.range(0, count).parallel().forEach(this::validate);
+		reserveRegistrations(count);
+
+		for(int i = 0; i < count; i++) {
+			if(errors[i] == null)
+				errors[i] = apply(i);
+		}
+
+		var rejected = registerPending(result);
+
+		for(int i = 0; i < count; i++) {
+			result.rows++;
+
+			if(errors[i] == null && rejected.containsKey(owners[i]))
+				errors[i] = rejected.get(owners[i]);
+
+			if(errors[i] == null)
+				result.importedRows++;
+			else
+				result.errors.add(new ImportError(lines[i], errors[i]));
+		}
+
+		Arrays.fill(owners, 0, count, null);
+	}
+
+	/**
+	 * Registers the new students of the chunk, forgetting the ones the class no longer accepts.
+	 *
+	 * @return the error of each student that could not be registered.
+	 */
+	private IdentityHashMap<Student, String> registerPending(ImportResult result) {
+		var rejected = new IdentityHashMap<Student, String>();
+
+		for(var s : pending) {
+			if(students.register(s)) {
+				result.importedStudents++;
+				continue;
+			}
+
+			rejected.put(s, students.findByName(s.getName()) != null ? NAME_ALREADY_REGISTERED
+					: REGISTRATION_ALREADY_REGISTERED);
+			importedByName.remove(CaseInsensitiveKey.lookup(s.getName()));
+			importedByRegistration.remove(CaseInsensitiveKey.lookup(s.getRegistration()));
+			s.release();
+		}
+
+		pending.clear();
+
+		return rejected;
+	}
+
+	/**
+	 * Checks the rules that depend only on the row itself.
+	 */
+	private void validate(int i) {
+		if(errors[i] != null)
+			return;
+
+		if(keys[i].isEmpty())
+			errors[i] = REGISTRATION_NUMBER_CANOT_BE_BLANK;
+		else if(names[i].isEmpty())
+			errors[i] = NAME_CANNOT_BE_BLANK;
+		else if(courses[i].isEmpty())
+			errors[i] = COURSE_CANNOT_BE_BLANK;
+		else if(disciplines[i].isEmpty())
+			errors[i] = String.format("%s: %s", DISCIPLINE_NAME, THIS_FIELD_CANNOT_BE_EMPTY);
+		else if((errors[i] = checkLengths(i)) == null) {
+			try {
+				grades[i] = Double.parseDouble(gradeTexts[i].replace(',', '.'));
+
+				if(!(grades[i] >= Discipline.MIN_GRADE && grades[i] <= Discipline.MAX_GRADE))
+					errors[i] = GRADE_MUST_BE_BETWEEN_ZERO_AND_TEN;
+			} catch (NumberFormatException e) {
+				errors[i] = GRADE_MUST_BE_BETWEEN_ZERO_AND_TEN;
+			}
+		}
+	}
+
+	/**
+	 * @return why a text of the row is too long or null if they all fit.
+	 */
+	private String checkLengths(int i) {
+		var message = GradeService.checkLength(REGISTRATION_NUMBER, keys[i]);
+
+		if(message == null)
+			message = GradeService.checkLength(NAME, names[i]);
+		if(message == null)
+			message = GradeService.checkLength(COURSE, courses[i]);
+		if(message == null)
+			message = GradeService.checkLength(DISCIPLINE_NAME, disciplines[i]);
+
+		return message;
+	}
+
+	/**
+	 * Reserves a block of registration numbers per course initials, one number for each new student of the
+	 * chunk whose first valid row holds course initials. A student removed from the class before its row is
+	 * applied was not counted, its number is then allocated alone.
+	 */
+	private void reserveRegistrations(int count) {
+		var counts = new HashMap<String, int[]>();
+		var seen = new HashSet<CaseInsensitiveKey>();
+
+		for(int i = 0; i < count; i++) {
+			if(errors[i] != null || importedByName.containsKey(CaseInsensitiveKey.lookup(names[i]))
+					|| !seen.add(new CaseInsensitiveKey(names[i])))
+				continue;
+
+			if(keys[i].length() <= Student.MAX_COURSE_INITIALS_LENGTH && students.findByName(names[i]) == null)
+				counts.computeIfAbsent(keys[i].toUpperCase(), k -> new int[1])[0]++;
+		}
+
+		blocks.clear();
+		counts.forEach((initials, n) -> blocks.put(initials, registrations.reserve(initials, n[0])));
+	}
+
+	/**
+	 * Checks the rules that depend on the class and applies the row.
+	 *
+	 * @return the error message or null if the row was applied.
+	 */
+	private String apply(int i) {
+		var student = importedByName.get(CaseInsensitiveKey.lookup(names[i]));
+
+		if(student == null) {
+			if(students.findByName(names[i]) != null)
+				return NAME_ALREADY_REGISTERED;
+
+			String registration;
+			if(keys[i].length() <= Student.MAX_COURSE_INITIALS_LENGTH) {
+				var initials = keys[i].toUpperCase();
+				var block = blocks.get(initials);
+
+				registration = block != null && block.remaining() > 0 ? block.next() : registrations.next(initials);
+			} else {
+				registration = keys[i];
+
+				if(students.findByRegistration(registration) != null
+						|| importedByRegistration.containsKey(CaseInsensitiveKey.lookup(registration)))
+					return REGISTRATION_ALREADY_REGISTERED;
+			}
+
+			student = new Student(registration, names[i], courses[i]);
+			student.addDiscipline(disciplines[i], grades[i]);
+
+			importedByName.put(new CaseInsensitiveKey(student.getName()), student);
+			importedByRegistration.put(new CaseInsensitiveKey(student.getRegistration()), student);
+			pending.add(student);
+			owners[i] = student;
+
+			return null;
+		}
+
+		if(student.isEnrolled(disciplines[i]))
+			return STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE;
+
+		if(!student.canEnrollInAnotherDiscipline())
+			return MAX_DISCIPLINES_REACHED;
+
+		var added = students.findByRegistration(student.getRegistration()) == student
+				? students.addDiscipline(student, disciplines[i], grades[i])
+				: student.addDiscipline(disciplines[i], grades[i]);
+
+		if(!added)
+			return STUDENT_NOT_FOUND;
+
+		owners[i] = student;
+
+		return null;
+	}
+
+	/**
+	 * Chooses the separator that appears more in the first line.
+	 */
+	private static char detectSeparator(BufferedReader in) throws IOException {
+		in.mark(HEADER_PEEK_LIMIT);
+
+		var commas = 0;
+		var semicolons = 0;
+
+		for(int c = in.read(), read = 1; c >= 0 && c != '\n' && read < HEADER_PEEK_LIMIT; c = in.read(), read++) {
+			if(c == ',')
+				commas++;
+			else if(c == ';')
+				semicolons++;
+		}
+
+		in.reset();
+
+		return semicolons > commas ? ';' : ',';
+	}
+
+	/**
+	 * A first row whose grade is not a number is taken as a header.
+	 */
+	private static boolean isHeader(List<String> fields) {
+		if(fields.size() != FIELDS)
+			return false;
+
+		try {
+			Double.parseDouble(fields.get(4).strip().replace(',', '.'));
+			return false;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+}
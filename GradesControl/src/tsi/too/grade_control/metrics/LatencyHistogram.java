@@ -0,0 +1,123 @@
+package tsi.too.grade_control.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts values, usually nanoseconds, in buckets whose width grows with the value, the way HdrHistogram
+ * does, so any value up to <code>Long.MAX_VALUE</code> is kept in a fixed array with a relative error
+ * below 1/64.
+ *
+ * Values below <code>SUB_BUCKET_COUNT</code> have a bucket each, above it every power of two is split in
+ * <code>SUB_BUCKET_COUNT / 2</code> buckets of the same width.
+ *
+ * Recording does not block. Percentiles read while values are recorded may miss the latest ones.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param value the value, negative values are counted as 0.
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+
+		if(value > max.get())
+			max.accumulateAndGet(value, Math::max);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		var n = count.sum();
+
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Gets several percentiles from the same counts.
+	 *
+	 * @param percentiles the percentiles, from 0 to 100, in ascending order.
+	 * @return the highest value of the bucket holding each percentile, never above the maximum recorded,
+	 * or zeros if nothing was recorded.
+	 */
+	public long[] getValuesAt(double... percentiles) {
+		var snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+
+		var values = new long[percentiles.length];
+		if(total == 0)
+			return values;
+
+		var maxValue = max.get();
+		long seen = 0;
+		int bucket = -1;
+
+		for(int p = 0; p < percentiles.length; p++) {
+			var rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * total));
+
+			while(seen < rank && bucket < BUCKET_COUNT - 1)
+				seen += snapshot[++bucket];
+
+			values[p] = Math.min(highestValueOf(bucket), maxValue);
+		}
+
+		return values;
+	}
+
+	/**
+	 * @param percentile the percentile, from 0 to 100.
+	 * @return the value at the percentile.
+	 * @see #getValuesAt(double...)
+	 */
+	public long getValueAt(double percentile) {
+		return getValuesAt(percentile)[0];
+	}
+
+	private static int bucketOf(long value) {
+		if(value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		var shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+	}
+
+	private static long highestValueOf(int bucket) {
+		if(bucket < SUB_BUCKET_COUNT)
+			return bucket;
+
+		var shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+		var subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+
+		return ((subBucket + 1L) << shift) - 1;
+	}
+}
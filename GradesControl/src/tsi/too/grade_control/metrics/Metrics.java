@@ -0,0 +1,186 @@
+package tsi.too.grade_control.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The registry of the {@link OperationMetrics} and the gauges of the application.
+ *
+ * The registry and each operation are registered as MXBeans in the platform MBean server, under the
+ * <code>JMX_DOMAIN</code> domain, so they can be read with JConsole or any JMX client. They can also be
+ * written in the Prometheus text format by {@link #writePrometheus(Appendable)}, periodically by a
+ * {@link MetricsDump}.
+ */
+public class Metrics implements MetricsMXBean {
+	public static final String JMX_DOMAIN = "tsi.too.grade_control";
+
+	private static final String PREFIX = "grades_control_";
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private static Metrics instance;
+
+	private final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	private Metrics() {
+		register(this, "type=Metrics");
+	}
+
+	/**
+	 * Ensures that only one instance of this class is created.
+	 *
+	 * @return an instance of this class.
+	 */
+	public static Metrics getInstance() {
+		synchronized (Metrics.class) {
+			if(instance == null)
+				instance = new Metrics();
+
+			return instance;
+		}
+	}
+
+	/**
+	 * Gets the metrics of an operation, creating them on the first call. Callers on frequent paths should
+	 * keep the returned object instead of looking it up on every call.
+	 *
+	 * @param name the name of the operation, made of letters, digits, dots and underscores.
+	 * @return the metrics of the operation.
+	 */
+	public OperationMetrics operation(String name) {
+		var metrics = operations.get(name);
+		if(metrics != null)
+			return metrics;
+
+		metrics = new OperationMetrics(name);
+
+		var previous = operations.putIfAbsent(name, metrics);
+		if(previous != null)
+			return previous;
+
+		register(metrics, "type=Operation,name=" + name);
+
+		return metrics;
+	}
+
+	/**
+	 * Adds or replaces a gauge, a value read when the metrics are.
+	 *
+	 * @param name the name of the gauge, made of letters, digits and underscores.
+	 * @param value reads the value, it must be cheap and thread safe.
+	 */
+	public void gauge(String name, LongSupplier value) {
+		gauges.put(name, value);
+	}
+
+	/**
+	 * @return the metrics of every operation, by name.
+	 */
+	public List<OperationMetrics> getOperations() {
+		var list = new ArrayList<>(operations.values());
+		list.sort(Comparator.comparing(OperationMetrics::getName));
+
+		return list;
+	}
+
+	@Override
+	public List<String> getOperationNames() {
+		var names = new ArrayList<String>();
+		for(var metrics : getOperations())
+			names.add(metrics.getName());
+
+		return names;
+	}
+
+	@Override
+	public Map<String, Long> getGauges() {
+		var values = new TreeMap<String, Long>();
+		gauges.forEach((name, value) -> values.put(name, value.getAsLong()));
+
+		return values;
+	}
+
+	/**
+	 * Writes every metric in the Prometheus text format: the latencies as a summary in seconds, labeled
+	 * with the operation, the allocated bytes as a counter and each gauge under its own name.
+	 *
+	 * @param out where to write.
+	 * @throws IOException if the output fails.
+	 */
+	public void writePrometheus(Appendable out) throws IOException {
+		var operations = getOperations();
+		var duration = PREFIX + "operation_duration_seconds";
+		var allocated = PREFIX + "operation_allocated_bytes_total";
+
+		header(out, duration, "summary", "Time taken by the operations.");
+		for(var metrics : operations) {
+			var latency = metrics.getLatency();
+			var label = "operation=\"" + escape(metrics.getName()) + '"';
+			var percentiles = new double[QUANTILES.length];
+
+			for(int i = 0; i < percentiles.length; i++)
+				percentiles[i] = QUANTILES[i] * 100;
+
+			var values = latency.getValuesAt(percentiles);
+			for(int i = 0; i < values.length; i++)
+				sample(out, duration, label + ",quantile=\"" + QUANTILES[i] + '"', values[i] / NANOS_PER_SECOND);
+
+			sample(out, duration + "_sum", label, latency.getSum() / NANOS_PER_SECOND);
+			sample(out, duration + "_count", label, latency.getCount());
+		}
+
+		header(out, allocated, "counter", "Bytes allocated by the threads running the operations.");
+		for(var metrics : operations) {
+			if(metrics.getAllocatedBytes() >= 0)
+				sample(out, allocated, "operation=\"" + escape(metrics.getName()) + '"', metrics.getAllocatedBytes());
+		}
+
+		for(var gauge : getGauges().entrySet()) {
+			header(out, PREFIX + gauge.getKey(), "gauge", null);
+			sample(out, PREFIX + gauge.getKey(), null, gauge.getValue());
+		}
+	}
+
+	private static void header(Appendable out, String name, String type, String help) throws IOException {
+		if(help != null)
+			out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(Appendable out, String name, String labels, double value) throws IOException {
+		out.append(name);
+		if(labels != null)
+			out.append('{').append(labels).append('}');
+
+		out.append(' ').append(value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+				: Double.toString(value)).append('\n');
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * Registers a bean in the platform MBean server. The metrics still work if it can not be registered,
+	 * e.g. when another class loader has already registered them.
+	 */
+	private static void register(Object bean, String properties) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName(JMX_DOMAIN + ':' + properties));
+		} catch (JMException e) {
+			// Only JMX is affected
+		}
+	}
+}
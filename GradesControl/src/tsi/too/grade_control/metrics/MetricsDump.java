@@ -0,0 +1,87 @@
+package tsi.too.grade_control.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the {@link Metrics} to a file in the Prometheus text format at a fixed interval, and once more when
+ * closed, so the file can be read by the node exporter's textfile collector or by hand.
+ *
+ * Each dump is written to a temporary file that replaces the previous one, so readers never see a partial
+ * dump. A dump that fails is retried on the next interval.
+ */
+public class MetricsDump implements Closeable {
+	public static final long DEFAULT_INTERVAL_SECONDS = 60;
+
+	private final Metrics metrics;
+	private final Path file;
+	private final ScheduledExecutorService executor;
+
+	private MetricsDump(Metrics metrics, Path file) {
+		this.metrics = metrics;
+		this.file = file;
+
+		executor = Executors.newSingleThreadScheduledExecutor(task -> {
+			var thread = new Thread(task, "metrics-dump");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts writing the metrics to a file.
+	 *
+	 * @param metrics the metrics.
+	 * @param file the file, created or replaced.
+	 * @param intervalSeconds the time between two dumps.
+	 * @return the started dump.
+	 * @throws IOException if the first dump fails.
+	 */
+	public static MetricsDump start(Metrics metrics, Path file, long intervalSeconds) throws IOException {
+		var dump = new MetricsDump(metrics, file);
+		dump.write();
+
+		dump.executor.scheduleWithFixedDelay(() -> {
+			try {
+				dump.write();
+			} catch (IOException e) {
+				// Retried on the next interval
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+		return dump;
+	}
+
+	/**
+	 * Writes the metrics now.
+	 *
+	 * @throws IOException if the file can not be written.
+	 */
+	public synchronized void write() throws IOException {
+		var text = new StringBuilder();
+		metrics.writePrometheus(text);
+
+		var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.writeString(temporary, text, StandardCharsets.UTF_8);
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Stops the periodic dumps and writes the last one.
+	 *
+	 * @throws IOException if the last dump fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		write();
+	}
+}
@@ -0,0 +1,19 @@
+package tsi.too.grade_control.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link Metrics} registry.
+ */
+public interface MetricsMXBean {
+	/**
+	 * @return the names of the operations measured so far, each one is also registered on its own.
+	 */
+	List<String> getOperationNames();
+
+	/**
+	 * @return the current value of every gauge, by name.
+	 */
+	Map<String, Long> getGauges();
+}
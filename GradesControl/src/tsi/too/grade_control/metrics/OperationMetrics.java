@@ -0,0 +1,140 @@
+package tsi.too.grade_control.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Measures the calls of an operation: how many, how long they took and how much they allocated.
+ *
+ * The allocated bytes are read from the <code>ThreadMXBean</code> of the JVM, before and after each call,
+ * on the calling thread only. Measuring a call costs a few hundred nanoseconds, so it is meant for the
+ * operations of the menu and the controllers, not for the model.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+	private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder allocatedBytes = new LongAdder();
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Runs and measures a call.
+	 *
+	 * @param action the call.
+	 */
+	public void run(Runnable action) {
+		var bytes = allocatedBytes();
+		var start = System.nanoTime();
+
+		try {
+			action.run();
+		} finally {
+			record(System.nanoTime() - start, allocatedBytes() - bytes);
+		}
+	}
+
+	/**
+	 * Runs and measures a call that returns a value.
+	 *
+	 * @param action the call.
+	 * @return the value returned by the call.
+	 */
+	public <T> T call(Supplier<T> action) {
+		var bytes = allocatedBytes();
+		var start = System.nanoTime();
+
+		try {
+			return action.get();
+		} finally {
+			record(System.nanoTime() - start, allocatedBytes() - bytes);
+		}
+	}
+
+	/**
+	 * Records a call measured elsewhere.
+	 *
+	 * @param nanos how long it took.
+	 * @param bytes how much it allocated.
+	 */
+	public void record(long nanos, long bytes) {
+		latency.record(nanos);
+		allocatedBytes.add(bytes);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public long getCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latency.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return latency.getValueAt(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP90Millis() {
+		return latency.getValueAt(90) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return latency.getValueAt(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP999Millis() {
+		return latency.getValueAt(99.9) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latency.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getAllocatedBytes() {
+		return THREADS == null ? -1 : allocatedBytes.sum();
+	}
+
+	private static long allocatedBytes() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return the bean that measures the allocations of a thread, null if the JVM does not measure them.
+	 */
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		var threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean))
+			return null;
+
+		var counter = (com.sun.management.ThreadMXBean) threads;
+		if(!counter.isThreadAllocatedMemorySupported())
+			return null;
+
+		if(!counter.isThreadAllocatedMemoryEnabled())
+			counter.setThreadAllocatedMemoryEnabled(true);
+
+		return counter;
+	}
+}
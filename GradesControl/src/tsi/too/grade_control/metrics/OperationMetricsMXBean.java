@@ -0,0 +1,28 @@
+package tsi.too.grade_control.metrics;
+
+/**
+ * The JMX view of an {@link OperationMetrics}, the times are in milliseconds.
+ */
+public interface OperationMetricsMXBean {
+	String getName();
+
+	long getCount();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP90Millis();
+
+	double getP99Millis();
+
+	double getP999Millis();
+
+	double getMaxMillis();
+
+	/**
+	 * @return the bytes allocated by the threads while running the operation, or -1 if the JVM does not
+	 * measure it.
+	 */
+	long getAllocatedBytes();
+}
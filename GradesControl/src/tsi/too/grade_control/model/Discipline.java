@@ -1,7 +1,9 @@
 package tsi.too.grade_control.model;
 
 public class Discipline implements Cloneable{
-	private final double MIN_FOR_APPROVAL = 6;
+	public static final double MIN_FOR_APPROVAL = 6;
+	public static final double MIN_GRADE = 0;
+	public static final double MAX_GRADE = 10;
 
 	private String name;
 	private double grade;
@@ -28,9 +30,13 @@ public class Discipline implements Cloneable{
 		return grade >= MIN_FOR_APPROVAL;
 	}
 
+	/**
+	 * Shows the grade as a <code>float</code>, the precision the <code>GradeTable</code> keeps, so a stored
+	 * 7.3 is not shown as 7.300000190734863.
+	 */
 	@Override
 	public String toString() {
-		return "name= " + name + ", grade= " + grade + "";
+		return "name= " + name + ", grade= " + (float) grade;
 	}
 
 	@Override
@@ -0,0 +1,726 @@
+package tsi.too.grade_control.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.StampedLock;
+
+import tsi.too.grade_control.util.SymbolTable;
+
+/**
+ * Columnar storage of the grades of a whole class.
+ *
+ * Each enrollment is a row spread over primitive arrays: the student id, the discipline id and the grade.
+ * Discipline names are interned in a {@link SymbolTable}, ignoring case, accents and repeated spaces, so
+ * disciplines are matched and grouped comparing ids. A row holds the name it was enrolled with only when it
+ * is spelled differently from the interned one, so the student sees its own spelling and the rows of the
+ * common spelling do not hold a <code>String</code>. The course names of the students are interned in a
+ * table of their own. The rows of a student are chained in enrollment order through <code>nextRow</code>.
+ *
+ * Every grade a row had is kept as a version, the time it was set and the grade, in a log shared by all
+ * the rows. The versions of a row are chained from the newest through <code>previousVersion</code>, so the
+ * grade at a past instant is found walking back from the current one, and a version is appended only when
+ * a grade is set, without copying the rest of the table. The versions of a removed row are reused.
+ *
+ * The table is safe for concurrent use. Changes take a write lock, while the rows of a single student are
+ * read optimistically and only read again under the read lock if a change happened meanwhile, so readers
+ * do not block each other and rarely wait for a writer. The versions are always read under the read lock.
+ * Grades and approvals are read into local variables, and the rows to be visited are copied into a buffer of
+ * the reading thread, so reads do not allocate.
+ * A student has at most <code>Student.MAX_SUBSCRIPTION_ALLWOED</code> rows.
+ *
+ * The id of a released student is reused by a new student. Each id has a generation, increased when it is
+ * released and kept by its student next to the id. Every read and change checks it, so a student kept after
+ * its release reads no rows and can not change the rows of the student that reused its id. The generation is
+ * stored next to the first row of the id, so the check does not read another cache line.
+ */
+public class GradeTable {
+	/**
+	 * The instant of the grades in use, later than any version.
+	 */
+	public static final long CURRENT = Long.MAX_VALUE;
+
+	private static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static GradeTable instance;
+
+	/**
+	 * The rows of a student copied out of the table, so they can be used without holding the lock.
+	 */
+	private static class Rows {
+		final short[] disciplines = new short[Student.MAX_SUBSCRIPTION_ALLWOED];
+		final String[] spellings = new String[Student.MAX_SUBSCRIPTION_ALLWOED];
+		final float[] grades = new float[Student.MAX_SUBSCRIPTION_ALLWOED];
+		int count;
+
+		/* Set while the rows are visited, a visitor reading the table again needs other rows */
+		boolean inUse;
+	}
+
+	private final StampedLock lock = new StampedLock();
+
+	/* The rows each thread copies before visiting them, so the visits do not allocate */
+	private final ThreadLocal<Rows> buffers = ThreadLocal.withInitial(Rows::new);
+
+	private final SymbolTable disciplines = new SymbolTable();
+	private final SymbolTable courses = new SymbolTable();
+
+	private int[] studentIds = new int[INITIAL_CAPACITY];
+	private short[] rowDisciplines = new short[INITIAL_CAPACITY];
+	private String[] rowSpellings = new String[INITIAL_CAPACITY];
+	private float[] grades = new float[INITIAL_CAPACITY];
+	private int[] nextRow = new int[INITIAL_CAPACITY];
+	private int[] rowVersion = new int[INITIAL_CAPACITY];
+	private int rowCount;
+	private int freeRow = NONE;
+
+	private long[] versionTimes = new long[INITIAL_CAPACITY];
+	private float[] versionGrades = new float[INITIAL_CAPACITY];
+	private int[] previousVersion = new int[INITIAL_CAPACITY];
+	private int versionCount;
+	private int freeVersion = NONE;
+
+	/* The first row and the generation of each student id, at heads[id * 2] and heads[id * 2 + 1] */
+	private int[] heads = new int[INITIAL_CAPACITY * 2];
+	private int studentCount;
+	private int[] freeStudents = new int[INITIAL_CAPACITY];
+	private int freeStudentCount;
+
+	/**
+	 * Gets the table shared by the students of the class.
+	 *
+	 * @return an instance of this class.
+	 */
+	public static GradeTable getInstance() {
+		synchronized (GradeTable.class) {
+			if (instance == null)
+				instance = new GradeTable();
+
+			return instance;
+		}
+	}
+
+	/**
+	 * Allocates the id used to store the grades of a new student, reusing the id of a released one if any.
+	 *
+	 * @return the new student id.
+	 */
+	int newStudent() {
+		long stamp = lock.writeLock();
+		try {
+			int student;
+
+			if(freeStudentCount > 0) {
+				student = freeStudents[--freeStudentCount];
+			} else {
+				if(studentCount << 1 == heads.length)
+					heads = Arrays.copyOf(heads, heads.length << 1);
+
+				student = studentCount++;
+			}
+
+			heads[student << 1] = NONE;
+
+			return student;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param student the id of a student not yet released.
+	 * @return the generation of the id, kept by the student.
+	 */
+	int generationOf(int student) {
+		long stamp = lock.readLock();
+		try {
+			return heads[(student << 1) + 1];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Removes all the enrollments of a student and makes its id available for a new student.
+	 *
+	 * @return false if the student was already released.
+	 */
+	boolean release(Student student) {
+		long stamp = lock.writeLock();
+		try {
+			if(!owns(student))
+				return false;
+
+			removeRows(student.getId());
+			heads[(student.getId() << 1) + 1]++;
+
+			if(freeStudentCount == freeStudents.length)
+				freeStudents = Arrays.copyOf(freeStudents, freeStudentCount << 1);
+
+			freeStudents[freeStudentCount++] = student.getId();
+
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Appends an enrollment to the rows of a student.
+	 *
+	 * @param student the student.
+	 * @param discipline the discipline name.
+	 * @param grade the grade.
+	 * @param time when the grade was set, in milliseconds since the epoch.
+	 * @return false if the student was released.
+	 */
+	boolean add(Student student, String discipline, double grade, long time) {
+		long stamp = lock.writeLock();
+		try {
+			if(!owns(student))
+				return false;
+
+			int id = student.getId();
+			int row = allocateRow();
+
+			studentIds[row] = id;
+			rowDisciplines[row] = intern(discipline);
+			rowSpellings[row] = disciplines.nameOf(rowDisciplines[row]).equals(discipline) ? null : discipline;
+			grades[row] = (float) grade;
+			nextRow[row] = NONE;
+			rowVersion[row] = appendVersion(NONE, grade, time);
+
+			if(heads[id << 1] == NONE) {
+				heads[id << 1] = row;
+				return true;
+			}
+
+			int last = heads[id << 1];
+			while(nextRow[last] != NONE)
+				last = nextRow[last];
+
+			nextRow[last] = row;
+
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes all the enrollments of a student, making their rows available for reuse.
+	 *
+	 * @param student the student.
+	 */
+	void removeAll(Student student) {
+		long stamp = lock.writeLock();
+		try {
+			if(owns(student))
+				removeRows(student.getId());
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Tries to update the grade of an enrollment, keeping the previous grade as a version.
+	 *
+	 * @param time when the grade was set, in milliseconds since the epoch.
+	 * @return true if success, false if the student is not enrolled in the discipline or was released.
+	 */
+	boolean update(Student student, String discipline, double grade, long time) {
+		long stamp = lock.writeLock();
+		try {
+			int row = find(student, discipline);
+
+			if(row == NONE)
+				return false;
+
+			if(grades[row] != (float) grade) {
+				grades[row] = (float) grade;
+				rowVersion[row] = appendVersion(rowVersion[row], grade, time);
+			}
+
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Gets the grade of an enrollment.
+	 *
+	 * @return the grade or <code>Double.NaN</code> if the student is not enrolled in the discipline.
+	 */
+	double gradeOf(Student student, String discipline) {
+		return gradeOf(student, discipline, CURRENT);
+	}
+
+	/**
+	 * Gets the grade an enrollment had at an instant.
+	 *
+	 * @param asOf the instant, in milliseconds since the epoch, or <code>CURRENT</code>.
+	 * @return the grade or <code>Double.NaN</code> if the student was not enrolled in the discipline then.
+	 */
+	double gradeOf(Student student, String discipline, long asOf) {
+		var id = disciplines.idOf(discipline);
+		if(id == SymbolTable.NONE)
+			return Double.NaN;
+
+		if(asOf == CURRENT) {
+			long stamp = lock.tryOptimisticRead();
+			if(stamp != 0) {
+				try {
+					var grade = readGrade(student, id, asOf);
+
+					if(lock.validate(stamp))
+						return grade;
+				} catch (RuntimeException e) {
+					// A torn read of arrays being changed, read again below
+				}
+			}
+		}
+
+		long stamp = lock.readLock();
+		try {
+			return readGrade(student, id, asOf);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Checks if all the grades of a student are equal to or higher than <code>Discipline.MIN_FOR_APPROVAL</code>.
+	 * A student released by the table, removed from the class, is not part of it and is never approved.
+	 */
+	boolean isAproved(Student student) {
+		return isAproved(student, CURRENT);
+	}
+
+	/**
+	 * Checks the approval of a student with the grades of an instant, the disciplines not yet enrolled then
+	 * are not considered.
+	 */
+	boolean isAproved(Student student, long asOf) {
+		if(asOf == CURRENT) {
+			long stamp = lock.tryOptimisticRead();
+			if(stamp != 0) {
+				try {
+					var aproved = readApproval(student, asOf);
+
+					if(lock.validate(stamp))
+						return aproved;
+				} catch (RuntimeException e) {
+					// A torn read of arrays being changed, read again below
+				}
+			}
+		}
+
+		long stamp = lock.readLock();
+		try {
+			return readApproval(student, asOf);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	void forEach(Student student, Student.DisciplineVisitor visitor) {
+		forEach(student, CURRENT, visitor);
+	}
+
+	/**
+	 * Visits the enrollments of a student at an instant, with the grades they had then.
+	 */
+	void forEach(Student student, long asOf, Student.DisciplineVisitor visitor) {
+		var rows = acquireRows();
+		try {
+			copyRows(student, asOf, rows);
+
+			for(int i = 0; i < rows.count; i++)
+				visitor.visit(nameOf(rows, i), rows.grades[i]);
+		} finally {
+			rows.inUse = false;
+		}
+	}
+
+	/**
+	 * Gets when the current grade of an enrollment was set.
+	 *
+	 * @return the time in milliseconds since the epoch, or <code>Long.MIN_VALUE</code> if the student is not
+	 * enrolled in the discipline.
+	 */
+	long timeOf(Student student, String discipline) {
+		long stamp = lock.readLock();
+		try {
+			int row = find(student, discipline);
+
+			return row == NONE ? Long.MIN_VALUE : versionTimes[rowVersion[row]];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Visits the versions of an enrollment, the oldest first.
+	 *
+	 * @return false if the student is not enrolled in the discipline.
+	 */
+	boolean forEachVersion(Student student, String discipline, Student.GradeVersionVisitor visitor) {
+		long[] times;
+		float[] values;
+
+		long stamp = lock.readLock();
+		try {
+			int row = find(student, discipline);
+			if(row == NONE)
+				return false;
+
+			var count = 0;
+			for(int v = rowVersion[row]; v != NONE; v = previousVersion[v])
+				count++;
+
+			times = new long[count];
+			values = new float[count];
+
+			for(int v = rowVersion[row]; v != NONE; v = previousVersion[v]) {
+				times[--count] = versionTimes[v];
+				values[count] = versionGrades[v];
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+
+		for(int i = 0; i < times.length; i++)
+			visitor.visit(times[i], values[i]);
+
+		return true;
+	}
+
+	boolean anyMatches(Student student, Student.DisciplineMatcher matcher) {
+		var rows = acquireRows();
+		try {
+			copyRows(student, CURRENT, rows);
+
+			for(int i = 0; i < rows.count; i++) {
+				if(matcher.matches(nameOf(rows, i), rows.grades[i]))
+					return true;
+			}
+
+			return false;
+		} finally {
+			rows.inUse = false;
+		}
+	}
+
+	/**
+	 * Scans all the rows marking the students that have at least one grade below
+	 * <code>Discipline.MIN_FOR_APPROVAL</code>.
+	 *
+	 * @return the ids of the reproved students.
+	 */
+	public BitSet reprovedStudents() {
+		long stamp = lock.readLock();
+		try {
+			var reproved = new BitSet(studentCount);
+			var studentIds = this.studentIds;
+			var grades = this.grades;
+
+			for(int row = 0; row < rowCount; row++) {
+				if(studentIds[row] != NONE && grades[row] < Discipline.MIN_FOR_APPROVAL)
+					reproved.set(studentIds[row]);
+			}
+
+			return reproved;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int getDisciplineCount() {
+		return disciplines.size();
+	}
+
+	/**
+	 * Gets the name of an interned discipline, as it was typed the first time.
+	 *
+	 * @param id the discipline id.
+	 * @return the discipline name.
+	 */
+	public String getDisciplineName(int id) {
+		return disciplines.nameOf(id);
+	}
+
+	/**
+	 * @return the ids of the discipline names.
+	 */
+	public SymbolTable getDisciplines() {
+		return disciplines;
+	}
+
+	/**
+	 * @return the ids of the course names of the students.
+	 */
+	public SymbolTable getCourses() {
+		return courses;
+	}
+
+	/**
+	 * @return the discipline name of a copied row, as the student was enrolled.
+	 */
+	private String nameOf(Rows rows, int i) {
+		var spelling = rows.spellings[i];
+
+		return spelling != null ? spelling : disciplines.nameOf(rows.disciplines[i]);
+	}
+
+	/**
+	 * Takes the buffer of the calling thread, or new rows if a visitor of the buffer is reading the table
+	 * again. The caller clears <code>inUse</code> once done.
+	 */
+	private Rows acquireRows() {
+		var rows = buffers.get();
+
+		if(rows.inUse)
+			rows = new Rows();
+
+		rows.inUse = true;
+
+		return rows;
+	}
+
+	/**
+	 * Copies the rows of a student at an instant, the current rows first with an optimistic read that does
+	 * not block and, if a writer interfered, again under the read lock. The rows of another instant are
+	 * copied under the read lock, since walking the versions of a row being changed might not end.
+	 */
+	private void copyRows(Student student, long asOf, Rows rows) {
+		if(asOf == CURRENT) {
+			long stamp = lock.tryOptimisticRead();
+			if(stamp != 0) {
+				try {
+					readRows(student, rows);
+
+					if(lock.validate(stamp))
+						return;
+				} catch (RuntimeException e) {
+					// A torn read of arrays being changed, read again below
+				}
+			}
+		}
+
+		long stamp = lock.readLock();
+		try {
+			if(asOf == CURRENT)
+				readRows(student, rows);
+			else
+				readRows(student, asOf, rows);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private void readRows(Student student, Rows rows) {
+		rows.count = 0;
+
+		if(!owns(student))
+			return;
+
+		for(int row = heads[student.getId() << 1]; row != NONE; row = nextRow[row]) {
+			if(rows.count == Student.MAX_SUBSCRIPTION_ALLWOED)
+				throw new IllegalStateException("Too many rows for student " + student.getId());
+
+			rows.disciplines[rows.count] = rowDisciplines[row];
+			rows.spellings[rows.count] = rowSpellings[row];
+			rows.grades[rows.count++] = grades[row];
+		}
+	}
+
+	/**
+	 * Reads the rows enrolled at an instant, each with the grade of its newest version not after it.
+	 */
+	private void readRows(Student student, long asOf, Rows rows) {
+		rows.count = 0;
+
+		if(!owns(student))
+			return;
+
+		for(int row = heads[student.getId() << 1]; row != NONE; row = nextRow[row]) {
+			var grade = versionAt(row, asOf);
+
+			if(!Double.isNaN(grade)) {
+				rows.disciplines[rows.count] = rowDisciplines[row];
+				rows.spellings[rows.count] = rowSpellings[row];
+				rows.grades[rows.count++] = (float) grade;
+			}
+		}
+	}
+
+	/**
+	 * Reads the grade of an enrollment at an instant, walking the versions unless it is <code>CURRENT</code>.
+	 */
+	private double readGrade(Student student, int discipline, long asOf) {
+		if(!owns(student))
+			return Double.NaN;
+
+		int count = 0;
+		for(int row = heads[student.getId() << 1]; row != NONE; row = nextRow[row]) {
+			if(++count > Student.MAX_SUBSCRIPTION_ALLWOED)
+				throw new IllegalStateException("Too many rows for student " + student.getId());
+
+			if(rowDisciplines[row] == discipline)
+				return asOf == CURRENT ? grades[row] : versionAt(row, asOf);
+		}
+
+		return Double.NaN;
+	}
+
+	/**
+	 * Reads the approval of a student at an instant, the rows without a version then are not considered.
+	 * A student the table no longer owns is not approved.
+	 */
+	private boolean readApproval(Student student, long asOf) {
+		if(!owns(student))
+			return false;
+
+		int count = 0;
+		for(int row = heads[student.getId() << 1]; row != NONE; row = nextRow[row]) {
+			if(++count > Student.MAX_SUBSCRIPTION_ALLWOED)
+				throw new IllegalStateException("Too many rows for student " + student.getId());
+
+			var grade = asOf == CURRENT ? grades[row] : versionAt(row, asOf);
+			if(grade < Discipline.MIN_FOR_APPROVAL)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the grade of the newest version of a row not after an instant, or <code>Double.NaN</code> if
+	 * the row was enrolled later.
+	 */
+	private double versionAt(int row, long asOf) {
+		int v = rowVersion[row];
+		while(v != NONE && versionTimes[v] > asOf)
+			v = previousVersion[v];
+
+		return v == NONE ? Double.NaN : versionGrades[v];
+	}
+
+	private int find(Student student, String discipline) {
+		var id = disciplines.idOf(discipline);
+		if(id == SymbolTable.NONE || !owns(student))
+			return NONE;
+
+		for(int row = heads[student.getId() << 1]; row != NONE; row = nextRow[row]) {
+			if(rowDisciplines[row] == id)
+				return row;
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * @return true if the id of the student was not released, and so not reused by another one.
+	 */
+	private boolean owns(Student student) {
+		var index = (student.getId() << 1) + 1;
+
+		return index < heads.length && heads[index] == student.getGeneration();
+	}
+
+	private void removeRows(int student) {
+		int row = heads[student << 1];
+
+		while(row != NONE) {
+			int next = nextRow[row];
+
+			studentIds[row] = NONE;
+			rowSpellings[row] = null;
+			nextRow[row] = freeRow;
+			freeRow = row;
+			releaseVersions(rowVersion[row]);
+
+			row = next;
+		}
+
+		heads[student << 1] = NONE;
+	}
+
+	private short intern(String discipline) {
+		var id = disciplines.intern(discipline);
+
+		if(id > Short.MAX_VALUE)
+			throw new IllegalStateException("Too many disciplines");
+
+		return (short) id;
+	}
+
+	/**
+	 * Appends a version to a chain of versions.
+	 *
+	 * @param previous the newest version of the chain, or <code>NONE</code> for a new chain.
+	 * @param time when the grade was set, usually now, or the time of a version restored from disk.
+	 * @return the appended version, the new head of the chain.
+	 */
+	private int appendVersion(int previous, double grade, long time) {
+		int version;
+
+		if(freeVersion != NONE) {
+			version = freeVersion;
+			freeVersion = previousVersion[version];
+		} else {
+			if(versionCount == versionTimes.length) {
+				int capacity = versionCount << 1;
+
+				versionTimes = Arrays.copyOf(versionTimes, capacity);
+				versionGrades = Arrays.copyOf(versionGrades, capacity);
+				previousVersion = Arrays.copyOf(previousVersion, capacity);
+			}
+
+			version = versionCount++;
+		}
+
+		/* The versions of a chain never go back in time, even if the clock does */
+		versionTimes[version] = previous == NONE ? time : Math.max(time, versionTimes[previous]);
+		versionGrades[version] = (float) grade;
+		previousVersion[version] = previous;
+
+		return version;
+	}
+
+	/**
+	 * Makes a chain of versions available for reuse.
+	 */
+	private void releaseVersions(int version) {
+		while(version != NONE) {
+			int previous = previousVersion[version];
+
+			previousVersion[version] = freeVersion;
+			freeVersion = version;
+
+			version = previous;
+		}
+	}
+
+	private int allocateRow() {
+		if(freeRow != NONE) {
+			int row = freeRow;
+			freeRow = nextRow[row];
+			return row;
+		}
+
+		if(rowCount == studentIds.length) {
+			int capacity = rowCount << 1;
+
+			studentIds = Arrays.copyOf(studentIds, capacity);
+			rowDisciplines = Arrays.copyOf(rowDisciplines, capacity);
+			rowSpellings = Arrays.copyOf(rowSpellings, capacity);
+			grades = Arrays.copyOf(grades, capacity);
+			nextRow = Arrays.copyOf(nextRow, capacity);
+			rowVersion = Arrays.copyOf(rowVersion, capacity);
+		}
+
+		return rowCount++;
+	}
+}
@@ -1,40 +1,135 @@
 package tsi.too.grade_control.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
+import tsi.too.grade_control.util.Pair;
 
 public class Student {
-	private final int MAX_SUBSCRIPTION_ALLWOED = 5;
-	private static int studentsCount = 0;
+	/**
+	 * Receives the data of each enrolled discipline without exposing the <code>Discipline</code> instances.
+	 */
+	@FunctionalInterface
+	public interface DisciplineVisitor {
+		void visit(String name, double grade);
+	}
 
-	private String registration;
-	private String course;
-	private String name;
-	private Discipline[] enrolledDisciplines = new Discipline[MAX_SUBSCRIPTION_ALLWOED];
+	/**
+	 * Tests the data of an enrolled discipline without exposing the <code>Discipline</code> instance.
+	 */
+	@FunctionalInterface
+	public interface DisciplineMatcher {
+		boolean matches(String name, double grade);
+	}
 
-	private int enrolledDisciplinesCount = 0;
+	/**
+	 * Receives the versions of the grade of an enrolled discipline.
+	 */
+	@FunctionalInterface
+	public interface GradeVersionVisitor {
+		/**
+		 * @param time when the grade was set, in milliseconds since the epoch.
+		 * @param grade the grade.
+		 */
+		void visit(long time, double grade);
+	}
+
+
+	public static final int MAX_SUBSCRIPTION_ALLWOED = 5;
+	public static final int MIN_COURSE_INITIALS_LENGTH = 1;
+	public static final int MAX_COURSE_INITIALS_LENGTH = 3;
+	public static final int MAX_TEXT_LENGTH = 200;
+
+	/* Increments the stamp atomically, so two changes made at once never leave the same stamp */
+	private static final VarHandle STAMP = stampHandle();
+
+	private final String registration;
+	private volatile String name;
+	
+	/* The course is interned in the courses table of the GradeTable, the id is used to compare and group
+	 * courses and the name keeps the spelling given to this student. */
+	private volatile int course;
+	private volatile String courseName;
+	
+	/* The disciplines are stored as rows of a GradeTable shared by the whole class. */
+	private final GradeTable grades;
+	private final int id;
+	
+	/* Tells this student from a later one reusing its id after it is released */
+	private final int generation;
+
+	private volatile int enrolledDisciplinesCount = 0;
+	
+	private volatile long stamp;
 
 	public Student(String registration, String name, String course) {
+		this(GradeTable.getInstance(), registration, name, course);
+	}
+
+	public Student(GradeTable grades, String registration, String name, String course) {
 		super();
 		this.registration = registration.toUpperCase();
-		this.course = course;
+		this.grades = grades;
+		this.course = grades.getCourses().intern(course);
+		this.courseName = spelling(this.course, course);
 		this.name = name;
+		this.id = grades.newStudent();
+		this.generation = grades.generationOf(id);
+	}
+
+	/**
+	 * Gets the id that identifies this student in its <code>GradeTable</code>.
+	 * 
+	 * @return the id.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	int getGeneration() {
+		return generation;
 	}
 
 	public String getRegistration() {
 		return registration;
 	}
 
+	/**
+	 * Gets the course name, as it was given to this student.
+	 * 
+	 * @return the course name.
+	 */
 	public String getCourse() {
+		return courseName;
+	}
+
+	/**
+	 * Gets the id of the course in the courses table of the class, equal for every equivalent course name.
+	 * 
+	 * @return the course id.
+	 */
+	public int getCourseId() {
 		return course;
 	}
 
 	public void setCourse(String course) {
-		this.course = course;
+		var id = grades.getCourses().intern(course);
+
+		this.courseName = spelling(id, course);
+		this.course = id;
+		touch();
+	}
+	
+	/**
+	 * @return the interned name of the course if it is spelled the same, so most students share it.
+	 */
+	private String spelling(int id, String course) {
+		var interned = grades.getCourses().nameOf(id);
+
+		return interned.equals(course) ? interned : course;
 	}
 
 	public String getName() {
@@ -43,35 +138,69 @@ public class Student {
 
 	public void setName(String name) {
 		this.name = name;
+		touch();
+	}
+	
+	/**
+	 * Gets the modification stamp, which changes after every change of the name, the course or the
+	 * disciplines, so anything derived from the student can tell if it is out of date. The stamps of
+	 * different students are not related.
+	 * 
+	 * @return the stamp.
+	 */
+	public long getStamp() {
+		return stamp;
 	}
 
-	public static int getStudentsCount() {
-		return studentsCount;
+	public int getEnrolledDisciplinesCount() {
+		return enrolledDisciplinesCount;
 	}
 	
-	public static void increaseStudentsCount() {
-		studentsCount++;
+	public boolean addDiscipline(String disciplineName, double grade) {
+		return addDiscipline(disciplineName, grade, System.currentTimeMillis());
 	}
 	
-	public boolean addDiscipline(String disciplineName, double grade) {
-		if(enrolledDisciplinesCount >= MAX_SUBSCRIPTION_ALLWOED - 1)
+	/**
+	 * Enrolls in a discipline with a grade set at a given time, such as a grade restored from disk.
+	 * 
+	 * @param disciplineName the discipline name.
+	 * @param grade the grade.
+	 * @param time when the grade was set, in milliseconds since the epoch.
+	 * @return true if success, false otherwise.
+	 */
+	public synchronized boolean addDiscipline(String disciplineName, double grade, long time) {
+		if(!canEnrollInAnotherDiscipline())
+			return false;
+
+		if(!grades.add(this, disciplineName, grade, time))
 			return false;
 
-		enrolledDisciplines[enrolledDisciplinesCount] = new Discipline(disciplineName, grade);
 		enrolledDisciplinesCount++;
+		touch();
 		
 		return true;
 	}
 
 	/**
 	 * The student will be considered approved if his grades in the <code>MAX_SUBSCRIPTION_ALLWOED</code>
-	 * subjects are equal to or higher than <code>Discipline.MIN_FOR_APPROVAL</code>.
+	 * subjects are equal to or higher than <code>Discipline.MIN_FOR_APPROVAL</code>. A student already
+	 * removed from the class is never approved.
 	 *  
 	 * @return the approval status
 	 */
 	public boolean isAproved() {
-		return getEnrolledDisciplines().stream()
-				.filter(d -> d!= null && !d.isAproved()).count() == 0;
+		return grades.isAproved(this);
+	}
+	
+	/**
+	 * Checks the approval status with the grades of a past instant, only the disciplines already enrolled
+	 * then are considered.
+	 * 
+	 * @param asOf the instant.
+	 * @return the approval status at the instant.
+	 */
+	public boolean isAproved(Instant asOf) {
+		return grades.isAproved(this, asOf.toEpochMilli());
 	}
 	
 	/**
@@ -94,41 +223,65 @@ public class Student {
 	/**
 	 * Checks if student is enrolled in a specific discipline.
 	 * 
-	 * @param discipline the name of discipline to be checked
+	 * @param discipline the name of discipline to be checked, ignoring case, accents and repeated spaces
 	 * @return true or false
 	 */
 	public boolean isEnrolled(String discipline) {
-		return getEnrolledDisciplines().stream()
-				.filter(d -> d != null && d.getName().equalsIgnoreCase(discipline))
-				.count() > 0;
+		return !Double.isNaN(gradeOf(discipline));
 	}
 	
 	/**
-	 * Recovers all registered disciplines, cloning them without breaking the composition
+	 * Recovers all registered disciplines, cloning them without breaking the composition.
+	 * 
+	 * Prefer {@link #forEachDiscipline(DisciplineVisitor)} when a copy is not needed.
 	 * 
 	 * @return all enrolled disciplines as a list.
 	 */
 	public List<Discipline> getEnrolledDisciplines(){
-		return retriveEnrolledDisciplines().stream().map(d -> d.clone()).collect(Collectors.toList());
-	}
-
-	private List<Discipline> retriveEnrolledDisciplines(){
-		var l = new ArrayList<Discipline>(Arrays.asList(enrolledDisciplines));		
-		l.removeAll(Collections.singleton(null));
+		var l = new ArrayList<Discipline>(enrolledDisciplinesCount);
+		
+		grades.forEach(this, (discipline, grade) -> l.add(new Discipline(discipline, grade)));
 		
 		return l;
 	}
 	
 	/**
-	 * Gets all enrolled disciplines based on the name of a discipline
+	 * Visits every enrolled discipline in enrollment order.
 	 * 
-	 * @param name the discipline to be searched
-	 * @return all disciplines found 
+	 * @param visitor receives the name and grade of each discipline.
 	 */
-	private List<Discipline> getDisciplines(String name){
-		return getEnrolledDisciplines()
-				.stream().filter(s-> s.getName().equalsIgnoreCase(name))
-				.collect(Collectors.toList());	
+	public void forEachDiscipline(DisciplineVisitor visitor) {
+		grades.forEach(this, visitor);
+	}
+	
+	/**
+	 * Visits the disciplines enrolled at a past instant, with the grades they had then.
+	 * 
+	 * @param asOf the instant.
+	 * @param visitor receives the name and grade of each discipline.
+	 */
+	public void forEachDiscipline(Instant asOf, DisciplineVisitor visitor) {
+		grades.forEach(this, asOf.toEpochMilli(), visitor);
+	}
+	
+	/**
+	 * Checks if any enrolled discipline satisfies a condition.
+	 * 
+	 * @param matcher the condition to be tested.
+	 * @return true if at least one discipline matches, false otherwise.
+	 */
+	public boolean anyDisciplineMatches(DisciplineMatcher matcher) {
+		return grades.anyMatches(this, matcher);
+	}
+	
+	/**
+	 * Gets the grade of a specific discipline without boxing it.
+	 * 
+	 * @param discipline the discipline name.
+	 * @return the grade or <code>Double.NaN</code> if student not enrolled in the discipline.
+	 */
+	public double gradeOf(final String discipline) {
+		return grades.gradeOf(this, discipline);
 	}
 	
 	/**
@@ -138,9 +291,59 @@ public class Student {
 	 * @return the grade found or null if student not enrolled in the discipline.
 	 */
 	public Float getGrade(final String discipline) {
-		var disciplinesFound = getDisciplines(discipline).stream().mapToDouble(Discipline::getGrade).findFirst();
+		var grade = gradeOf(discipline);
+		
+		return Double.isNaN(grade) ? null : (float) grade;
+	}
+	
+	/**
+	 * Gets the grade a discipline had at a past instant.
+	 * 
+	 * @param discipline the discipline name.
+	 * @param asOf the instant.
+	 * @return the grade or null if student was not enrolled in the discipline then.
+	 */
+	public Float getGrade(final String discipline, final Instant asOf) {
+		var grade = grades.gradeOf(this, discipline, asOf.toEpochMilli());
+		
+		return Double.isNaN(grade) ? null : (float) grade;
+	}
+	
+	/**
+	 * Gets when the grade of a discipline was set, without allocating an <code>Instant</code>.
+	 * 
+	 * @param discipline the discipline name.
+	 * @return the time in milliseconds since the epoch or <code>Long.MIN_VALUE</code> if student not enrolled
+	 * in the discipline.
+	 */
+	public long gradeTimeOf(final String discipline) {
+		return grades.timeOf(this, discipline);
+	}
+	
+	/**
+	 * Visits every grade a discipline had since the enrollment, the oldest first.
+	 * 
+	 * @param discipline the discipline name.
+	 * @param visitor receives when each grade was set and the grade.
+	 * @return false if student not enrolled in the discipline.
+	 */
+	public boolean forEachGradeVersion(final String discipline, GradeVersionVisitor visitor) {
+		return grades.forEachVersion(this, discipline, visitor);
+	}
+	
+	/**
+	 * Gets every grade a discipline had since the enrollment.
+	 * 
+	 * @param discipline the discipline name.
+	 * @return when each grade was set and the grade, the oldest first, empty if student not enrolled in the
+	 * discipline.
+	 */
+	public List<Pair<Instant, Double>> getGradeHistory(final String discipline) {
+		var history = new ArrayList<Pair<Instant, Double>>();
+		
+		grades.forEachVersion(this, discipline, (time, grade) -> history.add(new Pair<>(Instant.ofEpochMilli(time), grade)));
 		
-		return disciplinesFound == null || disciplinesFound.isEmpty() ? null : (float)disciplinesFound.getAsDouble();
+		return history;
 	}
 	
 	/**
@@ -151,24 +354,77 @@ public class Student {
 	 * @return true if success, false otherwise.
 	 */
 	public boolean updateGrade(String disciplineName, double grade ) {
-		var discipline = retriveEnrolledDisciplines().stream()
-				.filter(d -> d!= null && d.getName().equalsIgnoreCase(disciplineName))
-				.collect(Collectors.toList());
-		
-		if(discipline.isEmpty())
+		return updateGrade(disciplineName, grade, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Tries to update the student grade for a discipline with a grade set at a given time, such as a grade
+	 * restored from disk.
+	 * 
+	 * @param disciplineName the target discipline name.
+	 * @param grade the new grade value.
+	 * @param time when the grade was set, in milliseconds since the epoch.
+	 * @return true if success, false otherwise.
+	 */
+	public boolean updateGrade(String disciplineName, double grade, long time) {
+		if(!grades.update(this, disciplineName, grade, time))
 			return false;
 		
-		discipline.get(0).setGrade(grade);
+		touch();
 		
-		return true;	
-	}	
+		return true;
+	}
+	
+	/**
+	 * Removes all the disciplines of this student, releasing their storage.
+	 */
+	public synchronized void unenrollAll() {
+		grades.removeAll(this);
+		enrolledDisciplinesCount = 0;
+		touch();
+	}
+	
+	/**
+	 * Removes all the disciplines of this student and gives its id back to the <code>GradeTable</code>, to be
+	 * reused by a new student. Called once the student is removed from the class or could not be registered,
+	 * afterwards it has no disciplines and can not enroll in any.
+	 */
+	public synchronized void release() {
+		if(grades.release(this)) {
+			enrolledDisciplinesCount = 0;
+			touch();
+		}
+	}
+	
+	/**
+	 * Changes the stamp, after the change is applied.
+	 */
+	private void touch() {
+		STAMP.getAndAdd(this, 1L);
+	}
+
+	private static VarHandle stampHandle() {
+		try {
+			return MethodHandles.lookup().findVarHandle(Student.class, "stamp", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
 	
 	@Override
 	public String toString() {
-		return "Student {registration= " + registration +
-				", course= " + course + 
-				", name= " + name + 
-				", disciplines= " + getEnrolledDisciplines() 
-				+ "}";
+		var sb = new StringBuilder("Student {registration= ").append(registration)
+				.append(", course= ").append(getCourse())
+				.append(", name= ").append(name)
+				.append(", disciplines= [");
+		
+		grades.forEach(this, (discipline, grade) -> {
+			if(sb.charAt(sb.length() - 1) != '[')
+				sb.append(", ");
+			
+			sb.append("name= ").append(discipline).append(", grade= ").append((float) grade);
+		});
+		
+		return sb.append("]}").toString();
 	}	
 }
\ No newline at end of file
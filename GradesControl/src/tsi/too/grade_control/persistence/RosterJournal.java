@@ -0,0 +1,916 @@
+package tsi.too.grade_control.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+import tsi.too.grade_control.model.GradeTable;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.repository.ConcurrentStudentRepository;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.RosterListener;
+import tsi.too.grade_control.repository.StudentRepository;
+
+/**
+ * Keeps the roster of a class on disk as a compacted snapshot plus an append-only journal of the changes
+ * made after it.
+ *
+ * Every change notified by the repository is encoded on the caller thread and queued. A single writer
+ * thread appends everything that is queued and syncs the file once per batch (group commit), so the
+ * caller never waits for the disk. When the journal grows past <code>COMPACTION_THRESHOLD</code> records,
+ * the writer thread seals it and starts the journal of the next generation, then a compactor thread
+ * replays the previous snapshot and the sealed journal into a private repository and writes the snapshot of
+ * the next generation from it. The files are folded instead of the live repository, which may be changing,
+ * and the callers never wait for the compaction. If the compaction fails, it is done again on the next open
+ * or close.
+ *
+ * If a write fails, the journal is truncated back to the end of the last synced batch and stops recording:
+ * the later changes are not recorded, the failure is reported to the {@link FailureListener} and thrown by
+ * {@link #close()}. The repository has already applied a change when it is notified, so the callbacks never
+ * throw.
+ *
+ * Each journal record is framed by its length and a CRC32, so a record torn by a crash is detected and
+ * discarded on recovery.
+ *
+ * The records of a {@link StudentRepository#batch(Runnable)} are queued together, as a single write.
+ *
+ * The high-water marks of the {@link RegistrationAllocator} are recorded too, so a registration number
+ * handed out to a student that was removed or never registered is not handed out again.
+ *
+ * A snapshot holds the generation, the high-water marks and then every student encoded like the journal
+ * records, each preceded by a marker, so it is written in a single pass over a repository that may be
+ * changing. It is read sequentially into the repository, whose listeners (the statistics and the search,
+ * discipline and year indexes) hold every student as soon as the class is loaded, so a layout read through
+ * a mapping, building the students on access, would not shorten the startup.
+ *
+ * The grades are recorded with the time they were set, and the students with every version of their
+ * grades, so the grade history survives a restart. The files of <code>LEGACY_FORMAT_VERSION</code> have no
+ * times, their grades are stamped with the time they are replayed and the journal is compacted right away.
+ *
+ * The texts are written as their UTF-8 length followed by their bytes, which fits any text. The files up to
+ * <code>MODIFIED_UTF_FORMAT_VERSION</code> hold them in the modified UTF-8 of <code>DataOutput</code>,
+ * limited to 65535 bytes, and are compacted right away as well.
+ */
+public class RosterJournal implements RosterListener, Closeable {
+	public static final String SNAPSHOT_PREFIX = "roster-";
+	public static final String SNAPSHOT_SUFFIX = ".snapshot";
+	public static final String JOURNAL_FILE = "roster.journal";
+	public static final String SEALED_JOURNAL_SUFFIX = ".journal";
+
+	private static final int JOURNAL_MAGIC = 0x47434A4C;
+	private static final int SNAPSHOT_MAGIC = 0x47435353;
+	private static final byte FORMAT_VERSION = 3;
+	private static final byte MODIFIED_UTF_FORMAT_VERSION = 2;
+	private static final byte LEGACY_FORMAT_VERSION = 1;
+	private static final int JOURNAL_HEADER_SIZE = 4 + 1 + 8;
+	private static final int COMPACTION_THRESHOLD = 10_000;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte REGISTER = 1;
+	private static final byte UPDATE = 2;
+	private static final byte UPDATE_GRADE = 3;
+	private static final byte REMOVE = 4;
+	private static final byte ADD_DISCIPLINE = 5;
+	private static final byte RESERVE = 6;
+
+	private static final byte[] CLOSE = new byte[0];
+	private static final byte[] ROTATE = new byte[0];
+
+	/**
+	 * Receives the failures of the background threads, on the thread that failed.
+	 */
+	public interface FailureListener {
+		/**
+		 * The journal could not be written and stopped recording, the failure is thrown again by
+		 * {@link RosterJournal#close()}.
+		 */
+		void writeFailed(IOException failure);
+
+		/**
+		 * A background compaction failed, it is done again on the next open or close.
+		 */
+		void compactionFailed(Exception failure);
+	}
+
+	/**
+	 * Where the files are loaded, the live repository on recovery or a private one while compacting in the
+	 * background.
+	 */
+	private static class Target {
+		final StudentRepository students;
+		final GradeTable grades;
+		final ObjIntConsumer<String> sequences;
+		int records;
+		byte version = FORMAT_VERSION;
+
+		Target(StudentRepository students, GradeTable grades, ObjIntConsumer<String> sequences) {
+			this.students = students;
+			this.grades = grades;
+			this.sequences = sequences;
+		}
+	}
+
+	private final Path directory;
+	private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+	private final DataOutputStream record = new DataOutputStream(recordBytes);
+	private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>();
+	private final ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+	private boolean inBatch;
+
+	private long generation;
+	private int journalRecords;
+	private byte journalVersion = FORMAT_VERSION;
+	private FileChannel journal;
+	private Thread writer;
+	private Thread compactor;
+	private volatile boolean compacting;
+	private volatile IOException writeFailure;
+	private volatile FailureListener failureListener;
+	private long syncedLength;
+
+	private RosterJournal(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Opens the files kept in a directory, creating it if needed.
+	 *
+	 * The returned journal does not record anything until {@link #recover(StudentRepository)} is called.
+	 *
+	 * @param directory where the files are kept.
+	 * @return the opened journal.
+	 * @throws IOException if the directory can not be created.
+	 */
+	public static RosterJournal open(Path directory) throws IOException {
+		Files.createDirectories(directory);
+
+		return new RosterJournal(directory);
+	}
+
+	/**
+	 * Loads the latest snapshot and replays the journal tail into an empty repository, then starts
+	 * recording the changes made to it.
+	 *
+	 * @param students the repository to be filled.
+	 * @throws IOException if the files can not be read or written.
+	 */
+	public void recover(StudentRepository students) throws IOException {
+		var target = new Target(students, GradeTable.getInstance(), RegistrationAllocator.getInstance()::restore);
+
+		var snapshot = findLatestSnapshot();
+		if(snapshot != null)
+			generation = readSnapshot(snapshot, target);
+
+		/* A journal sealed but not yet folded into the next snapshot comes before the live journal */
+		var sealed = directory.resolve(sealedJournalFileName(generation));
+		var sealedReplayed = Files.exists(sealed) && replay(sealed, generation, target) >= 0;
+		if(sealedReplayed)
+			generation++;
+
+		var journalFile = directory.resolve(JOURNAL_FILE);
+		var validLength = Files.exists(journalFile) ? replay(journalFile, generation, target) : -1;
+		journalRecords = target.records;
+		journalVersion = target.version;
+
+		if(validLength < 0 || sealedReplayed || journalRecords >= COMPACTION_THRESHOLD
+				|| journalVersion != FORMAT_VERSION) {
+			compact(students);
+		} else {
+			journal = FileChannel.open(journalFile, StandardOpenOption.WRITE);
+			journal.truncate(validLength);
+			journal.position(validLength);
+			syncedLength = validLength;
+		}
+
+		students.addListener(this);
+		RegistrationAllocator.getInstance().setListener(this::registrationsReserved);
+		startWriter();
+	}
+
+	/**
+	 * Writes everything still queued and closes the journal, compacting it if it grew too much or the last
+	 * background compaction failed.
+	 *
+	 * @param students the recorded repository, used if a compaction is needed.
+	 * @throws IOException if the files can not be written.
+	 */
+	public void close(StudentRepository students) throws IOException {
+		close();
+
+		if(journalRecords >= COMPACTION_THRESHOLD || compacting) {
+			compact(students);
+			journal.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(writer == null)
+			return;
+
+		RegistrationAllocator.getInstance().setListener(null);
+		pending.add(CLOSE);
+
+		try {
+			writer.join();
+
+			if(compactor != null)
+				compactor.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		writer = null;
+		compactor = null;
+
+		if(journal.isOpen()) {
+			journal.force(false);
+			journal.close();
+		}
+
+		if(writeFailure != null)
+			throw writeFailure;
+	}
+
+	/**
+	 * Sets who is told about the failures of the background threads.
+	 *
+	 * @param listener the listener, null for none.
+	 */
+	public void setFailureListener(FailureListener listener) {
+		failureListener = listener;
+	}
+
+	/**
+	 * Records the high-water mark of a registration prefix, it may be called by any thread.
+	 */
+	private synchronized void registrationsReserved(String prefix, int highWater) {
+		try {
+			begin(RESERVE);
+			writeString(record, prefix);
+			record.writeInt(highWater);
+			append();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void studentRegistered(Student student) {
+		try {
+			begin(REGISTER);
+			writeStudent(record, student);
+			append();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void studentUpdated(Student student, String oldName, String oldCourse) {
+		try {
+			begin(UPDATE);
+			writeString(record, student.getRegistration());
+			writeString(record, student.getName());
+			writeString(record, student.getCourse());
+			append();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void disciplineAdded(Student student, String discipline, double grade) {
+		try {
+			begin(ADD_DISCIPLINE);
+			writeString(record, student.getRegistration());
+			writeString(record, discipline);
+			record.writeFloat((float) grade);
+			record.writeLong(student.gradeTimeOf(discipline));
+			append();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void gradeUpdated(Student student, String discipline, double oldGrade, double newGrade) {
+		try {
+			begin(UPDATE_GRADE);
+			writeString(record, student.getRegistration());
+			writeString(record, discipline);
+			record.writeFloat((float) newGrade);
+			record.writeLong(student.gradeTimeOf(discipline));
+			append();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void studentRemoved(Student student) {
+		try {
+			begin(REMOVE);
+			writeString(record, student.getRegistration());
+			append();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void batchStarted() {
+		inBatch = true;
+	}
+
+	@Override
+	public synchronized void batchFinished() {
+		inBatch = false;
+
+		if(batchBytes.size() > 0) {
+			queue(batchBytes.toByteArray());
+			batchBytes.reset();
+		}
+	}
+
+	private void begin(byte type) throws IOException {
+		recordBytes.reset();
+		record.writeInt(0);
+		record.writeInt(0);
+		record.writeByte(type);
+	}
+
+	/**
+	 * Fills the frame of the record being written and queues it to the writer thread, or holds it until the
+	 * end of the batch. Nothing is recorded once the journal stopped.
+	 */
+	private void append() {
+		if(writeFailure != null)
+			return;
+
+		var bytes = recordBytes.toByteArray();
+		var length = bytes.length - 8;
+
+		var crc = new CRC32();
+		crc.update(bytes, 8, length);
+
+		ByteBuffer.wrap(bytes)
+			.putInt(length)
+			.putInt((int) crc.getValue());
+
+		journalRecords++;
+
+		if(inBatch)
+			batchBytes.writeBytes(bytes);
+		else
+			queue(bytes);
+	}
+
+	/**
+	 * Queues records to the writer thread, followed by a rotation if the journal grew too much and is not
+	 * being compacted yet.
+	 */
+	private void queue(byte[] bytes) {
+		pending.add(bytes);
+
+		if(journalRecords >= COMPACTION_THRESHOLD && !compacting) {
+			compacting = true;
+			journalRecords = 0;
+			pending.add(ROTATE);
+		}
+	}
+
+	private void startWriter() {
+		writer = new Thread(this::writeLoop, "roster-journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Appends the queued records in batches, syncing the file once per batch. Once a write fails, the queued
+	 * records are discarded.
+	 */
+	private void writeLoop() {
+		var batch = new ArrayList<byte[]>();
+		var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		var closing = false;
+
+		while(!closing) {
+			try {
+				batch.add(pending.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			pending.drainTo(batch);
+
+			var end = batch.indexOf(CLOSE);
+			closing = end >= 0;
+
+			if(writeFailure == null) {
+				try {
+					for(var bytes : closing ? batch.subList(0, end) : batch) {
+						if(bytes == ROTATE) {
+							sync(buffer);
+							rotate();
+							continue;
+						}
+
+						if(bytes.length > buffer.remaining())
+							flush(buffer);
+
+						if(bytes.length > buffer.capacity())
+							writeFully(ByteBuffer.wrap(bytes));
+						else
+							buffer.put(bytes);
+					}
+
+					sync(buffer);
+				} catch (IOException e) {
+					stop(e, buffer);
+				}
+			}
+
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Writes the buffered records and syncs them, they survive a crash from now on.
+	 */
+	private void sync(ByteBuffer buffer) throws IOException {
+		flush(buffer);
+		journal.force(false);
+		syncedLength = journal.position();
+	}
+
+	/**
+	 * Stops recording after a failed write, truncating the journal back to the last synced batch so a batch
+	 * written in part is not replayed.
+	 */
+	private void stop(IOException failure, ByteBuffer buffer) {
+		buffer.clear();
+
+		try {
+			if(journal.isOpen())
+				journal.truncate(syncedLength);
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+
+		fail(failure);
+	}
+
+	/**
+	 * Stops recording, the records still queued are discarded by the writer thread.
+	 */
+	private void fail(IOException failure) {
+		if(writeFailure != null)
+			return;
+
+		writeFailure = failure;
+
+		var listener = failureListener;
+		if(listener != null)
+			listener.writeFailed(failure);
+	}
+
+	/**
+	 * Seals the journal of the current generation and starts the journal of the next one, then folds the
+	 * sealed journal into the snapshot of the next generation on the compactor thread.
+	 */
+	private void rotate() throws IOException {
+		var sealedGeneration = generation;
+		var sealed = directory.resolve(sealedJournalFileName(sealedGeneration));
+
+		journal.close();
+		Files.move(directory.resolve(JOURNAL_FILE), sealed, StandardCopyOption.ATOMIC_MOVE);
+		createJournal(sealedGeneration + 1);
+		syncedLength = journal.position();
+
+		compactor = new Thread(() -> fold(sealed, sealedGeneration), "roster-journal-compactor");
+		compactor.setDaemon(true);
+		compactor.start();
+	}
+
+	/**
+	 * Replays a snapshot and the journal sealed after it into a private repository and writes the snapshot of
+	 * the next generation, then deletes both. The live journal already belongs to the next generation.
+	 */
+	private void fold(Path sealed, long sealedGeneration) {
+		try {
+			var sequences = new LinkedHashMap<String, Integer>();
+			var target = new Target(new ConcurrentStudentRepository(), new GradeTable(),
+					(prefix, highWater) -> sequences.merge(prefix, highWater, Math::max));
+
+			readSnapshot(directory.resolve(snapshotFileName(sealedGeneration)), target);
+			if(replay(sealed, sealedGeneration, target) < 0)
+				throw new IOException("Invalid sealed roster journal " + sealed);
+
+			writeSnapshotFile(sealedGeneration + 1, sequences, target.students);
+			deleteFilesOlderThan(sealedGeneration + 1);
+
+			compacting = false;
+		} catch (IOException | RuntimeException e) {
+			var listener = failureListener;
+			if(listener != null)
+				listener.compactionFailed(e);
+		}
+	}
+
+	private void flush(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		writeFully(buffer);
+		buffer.clear();
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			journal.write(buffer);
+	}
+
+	/**
+	 * Replays the records of a journal that belong to a generation, counting them in the target.
+	 *
+	 * @return the length of the valid part of the journal or -1 if it must be discarded.
+	 */
+	private static long replay(Path file, long generation, Target target) throws IOException {
+		try(var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+			if(in.readInt() != JOURNAL_MAGIC)
+				return -1;
+
+			var version = in.readByte();
+			if(!isKnownVersion(version) || in.readLong() != generation)
+				return -1;
+
+			target.version = version;
+
+			long position = JOURNAL_HEADER_SIZE;
+			var crc = new CRC32();
+			var payload = new byte[256];
+
+			while(true) {
+				int length;
+				int checksum;
+
+				try {
+					length = in.readInt();
+					checksum = in.readInt();
+
+					if(length <= 0)
+						return position;
+
+					if(payload.length < length)
+						payload = new byte[Math.max(length, payload.length << 1)];
+
+					in.readFully(payload, 0, length);
+				} catch (EOFException e) {
+					return position;
+				}
+
+				crc.reset();
+				crc.update(payload, 0, length);
+				if((int) crc.getValue() != checksum)
+					return position;
+
+				apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)), version, target);
+
+				position += 8 + length;
+				target.records++;
+			}
+		} catch (EOFException e) {
+			return -1;
+		}
+	}
+
+	private static void apply(DataInputStream in, byte version, Target target) throws IOException {
+		var students = target.students;
+		var type = in.readByte();
+
+		if(type == REGISTER) {
+			var student = readStudent(in, version, target.grades);
+			if(!students.register(student))
+				student.release();
+
+			return;
+		}
+
+		if(type == RESERVE) {
+			target.sequences.accept(readString(in, version), in.readInt());
+			return;
+		}
+
+		var student = students.findByRegistration(readString(in, version));
+		if(student == null)
+			return;
+
+		switch (type) {
+			case UPDATE:
+				students.update(student, readString(in, version), readString(in, version));
+				break;
+			case ADD_DISCIPLINE:
+				students.addDiscipline(student, readString(in, version), in.readFloat(), readTime(in, version));
+				break;
+			case UPDATE_GRADE:
+				students.updateGrade(student, readString(in, version), in.readFloat(), readTime(in, version));
+				break;
+			case REMOVE:
+				students.remove(student);
+				break;
+			default:
+				throw new IOException("Unknown journal record " + type);
+		}
+	}
+
+	/**
+	 * Writes all the students to a new snapshot and starts a new empty journal for it.
+	 *
+	 * Both files are written to temporary files and moved over the old ones. If the process dies between
+	 * the two moves, the old journal is ignored on recovery because its generation is older than the
+	 * snapshot.
+	 */
+	private void compact(StudentRepository students) throws IOException {
+		var nextGeneration = generation + 1;
+
+		var sequences = new LinkedHashMap<String, Integer>();
+		RegistrationAllocator.getInstance().forEach(sequences::put);
+		writeSnapshotFile(nextGeneration, sequences, students);
+
+		createJournal(nextGeneration);
+		journalRecords = 0;
+		journalVersion = FORMAT_VERSION;
+		syncedLength = journal.position();
+
+		deleteFilesOlderThan(generation);
+	}
+
+	/**
+	 * Writes a snapshot to a temporary file and moves it over the snapshot of its generation.
+	 */
+	private void writeSnapshotFile(long generation, Map<String, Integer> sequences, Iterable<Student> students)
+			throws IOException {
+		var snapshotTemp = directory.resolve(snapshotFileName(generation) + ".tmp");
+		writeSnapshot(snapshotTemp, generation, sequences, students);
+		Files.move(snapshotTemp, directory.resolve(snapshotFileName(generation)), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Starts an empty journal for a generation, written to a temporary file and moved over the live journal,
+	 * and opens it for appending.
+	 */
+	private void createJournal(long nextGeneration) throws IOException {
+		var journalTemp = directory.resolve(JOURNAL_FILE + ".tmp");
+		var header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE)
+				.putInt(JOURNAL_MAGIC)
+				.put(FORMAT_VERSION)
+				.putLong(nextGeneration)
+				.flip();
+		try(var channel = FileChannel.open(journalTemp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(header.hasRemaining())
+				channel.write(header);
+			channel.force(true);
+		}
+		Files.move(journalTemp, directory.resolve(JOURNAL_FILE), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		generation = nextGeneration;
+		journal = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.WRITE);
+		journal.position(journal.size());
+	}
+
+	private static void writeSnapshot(Path file, long generation, Map<String, Integer> sequences,
+			Iterable<Student> students) throws IOException {
+		try(var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeByte(FORMAT_VERSION);
+			out.writeLong(generation);
+
+			out.writeInt(sequences.size());
+			for(var e : sequences.entrySet()) {
+				writeString(out, e.getKey());
+				out.writeInt(e.getValue());
+			}
+
+			for(var s : students) {
+				out.writeBoolean(true);
+				writeStudent(out, s);
+			}
+
+			out.writeBoolean(false);
+			out.flush();
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Loads a snapshot into the repository.
+	 *
+	 * @return the snapshot generation.
+	 */
+	private static long readSnapshot(Path file, Target target) throws IOException {
+		try(var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+			byte version;
+			if(in.readInt() != SNAPSHOT_MAGIC || !isKnownVersion(version = in.readByte()))
+				throw new IOException("Invalid roster snapshot " + file);
+
+			var snapshotGeneration = in.readLong();
+
+			for(int i = in.readInt(); i > 0; i--)
+				target.sequences.accept(readString(in, version), in.readInt());
+
+			while(in.readBoolean()) {
+				var student = readStudent(in, version, target.grades);
+				if(!target.students.register(student))
+					student.release();
+			}
+
+			return snapshotGeneration;
+		}
+	}
+
+	/**
+	 * Finds the snapshot with the highest generation.
+	 *
+	 * @return the snapshot file or null if there is none.
+	 */
+	private Path findLatestSnapshot() throws IOException {
+		Path latest = null;
+		var latestGeneration = -1L;
+
+		try(var files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+			for(var file : files) {
+				var generation = generationOf(file, SNAPSHOT_SUFFIX);
+
+				if(generation > latestGeneration) {
+					latest = file;
+					latestGeneration = generation;
+				}
+			}
+		}
+
+		return latest;
+	}
+
+	/**
+	 * Deletes the snapshots and the sealed journals replaced by a compaction, a file that can not be deleted
+	 * now is left for the next compaction.
+	 */
+	private void deleteFilesOlderThan(long generation) {
+		for(var suffix : new String[] { SNAPSHOT_SUFFIX, SEALED_JOURNAL_SUFFIX }) {
+			try(var files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + suffix)) {
+				for(var file : files) {
+					if(generationOf(file, suffix) < generation)
+						Files.deleteIfExists(file);
+				}
+			} catch (IOException e) {
+				// Retried on the next compaction
+			}
+		}
+	}
+
+	private static String snapshotFileName(long generation) {
+		return SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX;
+	}
+
+	private static String sealedJournalFileName(long generation) {
+		return SNAPSHOT_PREFIX + generation + SEALED_JOURNAL_SUFFIX;
+	}
+
+	private static long generationOf(Path file, String suffix) {
+		var name = file.getFileName().toString();
+
+		try {
+			return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - suffix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static boolean isKnownVersion(byte version) {
+		return version >= LEGACY_FORMAT_VERSION && version <= FORMAT_VERSION;
+	}
+
+	private static void writeString(DataOutputStream out, String text) throws IOException {
+		var bytes = text.getBytes(StandardCharsets.UTF_8);
+
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in, byte version) throws IOException {
+		if(version <= MODIFIED_UTF_FORMAT_VERSION)
+			return in.readUTF();
+
+		var length = in.readInt();
+		if(length < 0)
+			throw new IOException("Invalid text length " + length);
+
+		var bytes = new byte[length];
+		in.readFully(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a student with every version of its grades, the oldest first. The names of the disciplines are
+	 * taken before their versions, the table can not be read again while it is being visited.
+	 */
+	private static void writeStudent(DataOutputStream out, Student student) throws IOException {
+		var disciplines = new ArrayList<String>(Student.MAX_SUBSCRIPTION_ALLWOED);
+		student.forEachDiscipline((discipline, grade) -> disciplines.add(discipline));
+
+		writeString(out, student.getRegistration());
+		writeString(out, student.getName());
+		writeString(out, student.getCourse());
+		out.writeByte(disciplines.size());
+
+		var versionBytes = new ByteArrayOutputStream();
+		var versions = new DataOutputStream(versionBytes);
+		var count = new int[1];
+
+		for(var discipline : disciplines) {
+			versionBytes.reset();
+			count[0] = 0;
+
+			try {
+				student.forEachGradeVersion(discipline, (time, grade) -> {
+					try {
+						versions.writeLong(time);
+						versions.writeFloat((float) grade);
+						count[0]++;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			writeString(out, discipline);
+			out.writeInt(count[0]);
+			versionBytes.writeTo(out);
+		}
+	}
+
+	private static Student readStudent(DataInputStream in, byte version, GradeTable grades) throws IOException {
+		var student = new Student(grades, readString(in, version), readString(in, version), readString(in, version));
+		var disciplines = in.readByte();
+
+		for(int i = 0; i < disciplines; i++) {
+			var discipline = readString(in, version);
+
+			if(version == LEGACY_FORMAT_VERSION) {
+				student.addDiscipline(discipline, in.readFloat());
+				continue;
+			}
+
+			var versions = in.readInt();
+			if(versions <= 0)
+				throw new IOException("Discipline without grades " + discipline);
+
+			var time = in.readLong();
+			student.addDiscipline(discipline, in.readFloat(), time);
+
+			for(int v = 1; v < versions; v++) {
+				time = in.readLong();
+				student.updateGrade(discipline, in.readFloat(), time);
+			}
+		}
+
+		return student;
+	}
+
+	/**
+	 * @return the time recorded after a grade, or now for the records without times.
+	 */
+	private static long readTime(DataInputStream in, byte version) throws IOException {
+		return version == LEGACY_FORMAT_VERSION ? System.currentTimeMillis() : in.readLong();
+	}
+}
@@ -0,0 +1,245 @@
+package tsi.too.grade_control.report;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.GradeTable;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.repository.RosterListener;
+import tsi.too.grade_control.util.SymbolTable;
+
+/**
+ * Keeps the approval counts, the per-discipline averages and the grade distribution of a class up to date
+ * as students are registered, updated and removed, so the report summary does not need to visit every
+ * student.
+ *
+ * The totals are kept by discipline id, so equivalent discipline names share the same totals.
+ *
+ * The events may come from several threads, every method is synchronized.
+ */
+public class ClassStatistics implements RosterListener {
+	/**
+	 * Grades are grouped by their integer part, the last bucket holds only the maximum grade.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 11;
+
+	/**
+	 * The running totals of a single discipline.
+	 */
+	public static class DisciplineStatistics {
+		private final String name;
+		private double sum;
+		private int count;
+		private int approvedCount;
+
+		private DisciplineStatistics(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public int getApprovedCount() {
+			return approvedCount;
+		}
+
+		public double getAverage() {
+			return count == 0 ? 0 : sum / count;
+		}
+
+		private DisciplineStatistics copy() {
+			var copy = new DisciplineStatistics(name);
+
+			copy.sum = sum;
+			copy.count = count;
+			copy.approvedCount = approvedCount;
+
+			return copy;
+		}
+
+		private void add(double grade, int sign) {
+			sum += sign * grade;
+			count += sign;
+
+			if(grade >= Discipline.MIN_FOR_APPROVAL)
+				approvedCount += sign;
+		}
+	}
+
+	private int studentsCount;
+	private int approvedCount;
+	private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+
+	private final SymbolTable symbols;
+	/* Indexed by discipline id, null for the disciplines never enrolled */
+	private final List<DisciplineStatistics> byDiscipline = new ArrayList<>();
+	private final List<DisciplineStatistics> disciplines = new ArrayList<>();
+
+	public ClassStatistics() {
+		this(GradeTable.getInstance().getDisciplines());
+	}
+
+	/**
+	 * @param symbols the ids of the discipline names of the students.
+	 */
+	public ClassStatistics(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Builds the statistics of the students with the grades of a past instant. The students not enrolled in
+	 * any discipline then are left out.
+	 *
+	 * @param students the students.
+	 * @param asOf the instant.
+	 * @return the statistics at the instant, not meant to be registered as a listener.
+	 */
+	public static ClassStatistics asOf(Iterable<Student> students, Instant asOf) {
+		var statistics = new ClassStatistics();
+		var failing = new int[1];
+		var enrolled = new int[1];
+
+		for(var s : students) {
+			failing[0] = 0;
+			enrolled[0] = 0;
+
+			s.forEachDiscipline(asOf, (discipline, grade) -> {
+				statistics.add(discipline, grade, 1);
+				failing[0] += failing(grade);
+				enrolled[0]++;
+			});
+
+			if(enrolled[0] > 0) {
+				statistics.studentsCount++;
+
+				if(failing[0] == 0)
+					statistics.approvedCount++;
+			}
+		}
+
+		return statistics;
+	}
+
+	@Override
+	public synchronized void studentRegistered(Student student) {
+		studentsCount++;
+
+		if(student.isAproved())
+			approvedCount++;
+
+		student.forEachDiscipline((discipline, grade) -> add(discipline, grade, 1));
+	}
+
+	@Override
+	public synchronized void disciplineAdded(Student student, String discipline, double grade) {
+		add(discipline, grade, 1);
+
+		var failingAfter = countFailing(student);
+		var failingBefore = failingAfter - failing(grade);
+
+		if(failingBefore == 0 && failingAfter > 0)
+			approvedCount--;
+	}
+
+	@Override
+	public synchronized void gradeUpdated(Student student, String discipline, double oldGrade, double newGrade) {
+		add(discipline, oldGrade, -1);
+		add(discipline, newGrade, 1);
+
+		var failingAfter = countFailing(student);
+		var failingBefore = failingAfter - failing(newGrade) + failing(oldGrade);
+
+		if(failingBefore == 0 && failingAfter > 0)
+			approvedCount--;
+		else if(failingBefore > 0 && failingAfter == 0)
+			approvedCount++;
+	}
+
+	@Override
+	public synchronized void studentRemoved(Student student) {
+		studentsCount--;
+
+		if(student.isAproved())
+			approvedCount--;
+
+		student.forEachDiscipline((discipline, grade) -> add(discipline, grade, -1));
+	}
+
+	public synchronized int getStudentsCount() {
+		return studentsCount;
+	}
+
+	public synchronized int getApprovedCount() {
+		return approvedCount;
+	}
+
+	public synchronized int getReprovedCount() {
+		return studentsCount - approvedCount;
+	}
+
+	/**
+	 * Gets the number of grades in a bucket of the grade distribution.
+	 * 
+	 * @param bucket the integer part of the grades, from 0 to <code>HISTOGRAM_BUCKETS - 1</code>.
+	 * @return the number of grades.
+	 */
+	public synchronized int getHistogramCount(int bucket) {
+		return histogram[bucket];
+	}
+
+	/**
+	 * Gets the totals of every discipline that had at least one enrollment, in order of first enrollment.
+	 * 
+	 * @return a copy of the discipline totals.
+	 */
+	public synchronized List<DisciplineStatistics> getDisciplines() {
+		var copy = new ArrayList<DisciplineStatistics>(disciplines.size());
+
+		for(var d : disciplines)
+			copy.add(d.copy());
+
+		return Collections.unmodifiableList(copy);
+	}
+
+	private void add(String discipline, double grade, int sign) {
+		var id = symbols.intern(discipline);
+
+		while(byDiscipline.size() <= id)
+			byDiscipline.add(null);
+
+		var stats = byDiscipline.get(id);
+
+		if(stats == null) {
+			stats = new DisciplineStatistics(symbols.nameOf(id));
+			byDiscipline.set(id, stats);
+			disciplines.add(stats);
+		}
+
+		stats.add(grade, sign);
+		histogram[bucketOf(grade)] += sign;
+	}
+
+	private static int bucketOf(double grade) {
+		return Math.max(0, Math.min(HISTOGRAM_BUCKETS - 1, (int) grade));
+	}
+
+	private static int failing(double grade) {
+		return grade < Discipline.MIN_FOR_APPROVAL ? 1 : 0;
+	}
+
+	private static int countFailing(Student student) {
+		var failing = new int[1];
+
+		student.forEachDiscipline((discipline, grade) -> failing[0] += failing(grade));
+
+		return failing[0];
+	}
+}
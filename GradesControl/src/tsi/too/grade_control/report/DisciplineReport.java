@@ -0,0 +1,77 @@
+package tsi.too.grade_control.report;
+
+/**
+ * The enrollments and grades of a discipline at a given moment.
+ */
+public class DisciplineReport {
+	private final String name;
+	private final int enrollmentCount;
+	private final int approvedCount;
+	private final double mean;
+	private final double median;
+	private final double min;
+	private final double max;
+
+	/**
+	 * @param name the discipline name.
+	 * @param enrollmentCount the number of enrolled students, at least one.
+	 * @param approvedCount the number of grades equal to or higher than <code>Discipline.MIN_FOR_APPROVAL</code>.
+	 * @param mean the mean grade.
+	 * @param median the median grade.
+	 * @param min the lowest grade.
+	 * @param max the highest grade.
+	 */
+	public DisciplineReport(String name, int enrollmentCount, int approvedCount, double mean, double median,
+			double min, double max) {
+		this.name = name;
+		this.enrollmentCount = enrollmentCount;
+		this.approvedCount = approvedCount;
+		this.mean = mean;
+		this.median = median;
+		this.min = min;
+		this.max = max;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getEnrollmentCount() {
+		return enrollmentCount;
+	}
+
+	public int getApprovedCount() {
+		return approvedCount;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getMedian() {
+		return median;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the percentage of enrolled students with a grade equal to or higher than
+	 * <code>Discipline.MIN_FOR_APPROVAL</code>.
+	 */
+	public double getPassRate() {
+		return (double) approvedCount / enrollmentCount * 100;
+	}
+
+	@Override
+	public String toString() {
+		return "DisciplineReport {name= " + name + ", enrollments= " + enrollmentCount + ", approved= "
+				+ approvedCount + ", mean= " + mean + ", median= " + median + ", min= " + (float) min
+				+ ", max= " + (float) max + "}";
+	}
+}
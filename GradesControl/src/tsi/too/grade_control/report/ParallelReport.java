@@ -0,0 +1,231 @@
+package tsi.too.grade_control.report;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Builds the approval status lines of the general report on a <code>ForkJoinPool</code>.
+ *
+ * The students are split by the <code>Spliterator</code> of their source, so the ranges of the repository
+ * itself are formatted without copying the roster. The students are taken a window at a time, the windows
+ * are split until the parts have at most <code>chunkSize</code> students, each chunk is formatted by its own
+ * {@link ReportWriter} into a {@link Block} and the blocks are handed over in roster order, so the text is
+ * the same of a sequential run whatever the parallelism.
+ */
+public class ParallelReport {
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	/**
+	 * How many chunks per thread of the pool are built at a time by
+	 * {@link ReportWriter#writeReport(Iterable, ClassStatistics, ParallelReport)}, which bounds the memory
+	 * used while keeping the threads busy.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * The formatted lines and the counts of a chunk of the roster.
+	 */
+	public static class Block {
+		private final StringBuilder lines;
+		private final ReportWriter writer;
+		private int[] lineEnds = new int[16];
+		private int studentsCount;
+		private int approvedCount;
+
+		private Block(int capacity) {
+			lines = new StringBuilder(capacity);
+			writer = new ReportWriter(lines);
+		}
+
+		public CharSequence getLines() {
+			return lines;
+		}
+
+		/**
+		 * Gets where the line of a student ends, so the lines can be split in pages.
+		 *
+		 * @param student the position of the student in the block.
+		 * @return the index after the line break of the student.
+		 */
+		public int getLineEnd(int student) {
+			return lineEnds[student];
+		}
+
+		public int getStudentsCount() {
+			return studentsCount;
+		}
+
+		public int getApprovedCount() {
+			return approvedCount;
+		}
+	}
+
+	/**
+	 * Receives the blocks of each window of the roster.
+	 */
+	@FunctionalInterface
+	public interface BlockHandler {
+		/**
+		 * @param blocks the blocks of a window, in roster order.
+		 * @return true to build the next window, false to stop.
+		 * @throws IOException if the output fails.
+		 */
+		boolean onBlocks(List<Block> blocks) throws IOException;
+	}
+
+	/**
+	 * Formats the students of a part of a window, splitting it in halves down to single chunks.
+	 */
+	private class ChunkTask extends RecursiveTask<List<Block>> {
+		private static final long serialVersionUID = 1L;
+
+		private final Spliterator<Student> students;
+		private final Queue<Block> spare;
+
+		ChunkTask(Spliterator<Student> students, Queue<Block> spare) {
+			this.students = students;
+			this.spare = spare;
+		}
+
+		@Override
+		protected List<Block> compute() {
+			var prefix = students.estimateSize() > chunkSize ? students.trySplit() : null;
+
+			if(prefix == null)
+				return List.of(format(students, spare));
+
+			var second = new ChunkTask(students, spare);
+			second.fork();
+
+			var blocks = new ArrayList<>(new ChunkTask(prefix, spare).compute());
+			blocks.addAll(second.join());
+
+			return blocks;
+		}
+	}
+
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+
+	public ParallelReport() {
+		this(DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param chunkSize the number of students formatted by each task.
+	 * @param pool runs the tasks, its parallelism is the number of chunks formatted at the same time.
+	 */
+	public ParallelReport(int chunkSize, ForkJoinPool pool) {
+		if(chunkSize <= 0)
+			throw new IllegalArgumentException("chunkSize must be positive");
+
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * @return the number of students built at a time when the report is not paged.
+	 */
+	int getWindowSize() {
+		return (int) Math.min(Integer.MAX_VALUE, (long) chunkSize * CHUNKS_PER_THREAD * getParallelism());
+	}
+
+	/**
+	 * Formats the approval status lines of the students, a window at a time. The windows are the first parts
+	 * split from the students until they have at most <code>windowSize</code> students, or can not be split,
+	 * so they are taken in roster order and only the parts not yet formatted are kept meanwhile. The blocks
+	 * of a window are reused by the next ones once the handler returns.
+	 *
+	 * @param students the students, usually the <code>spliterator()</code> of a repository.
+	 * @param windowSize the number of students formatted at a time.
+	 * @param handler receives the blocks of each window.
+	 * @throws IOException if the handler fails.
+	 */
+	public void build(Spliterator<Student> students, int windowSize, BlockHandler handler) throws IOException {
+		var pending = new ArrayDeque<Spliterator<Student>>();
+		var spare = new ConcurrentLinkedQueue<Block>();
+		pending.push(students);
+
+		while(!pending.isEmpty()) {
+			var window = pending.pop();
+
+			if(window.estimateSize() > windowSize) {
+				var prefix = window.trySplit();
+
+				if(prefix != null) {
+					pending.push(window);
+					pending.push(prefix);
+					continue;
+				}
+			}
+
+			var blocks = window.estimateSize() <= chunkSize ? List.of(format(window, spare))
+					: pool.invoke(new ChunkTask(window, spare));
+
+			if(!handler.onBlocks(blocks))
+				return;
+
+			spare.addAll(blocks);
+		}
+	}
+
+	private Block format(Spliterator<Student> students, Queue<Block> spare) {
+		var block = takeBlock(spare, students.estimateSize());
+
+		students.forEachRemaining(s -> {
+			var approved = s.isAproved();
+
+			try {
+				block.writer.writeApprovalStatus(s, approved);
+			} catch (IOException e) {
+				// A StringBuilder does not fail
+			}
+
+			block.lines.append('\n');
+
+			if(block.studentsCount == block.lineEnds.length)
+				block.lineEnds = Arrays.copyOf(block.lineEnds, block.studentsCount << 1);
+
+			block.lineEnds[block.studentsCount++] = block.lines.length();
+
+			if(approved)
+				block.approvedCount++;
+		});
+
+		return block;
+	}
+
+	/**
+	 * @return a spare block emptied, or a new one sized for the students.
+	 */
+	private Block takeBlock(Queue<Block> spare, long students) {
+		var block = spare.poll();
+
+		if(block == null)
+			return new Block((int) Math.min(students, chunkSize) * 48);
+
+		block.lines.setLength(0);
+		block.studentsCount = 0;
+		block.approvedCount = 0;
+
+		return block;
+	}
+}
@@ -0,0 +1,287 @@
+package tsi.too.grade_control.report;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Ranks the students of a class by their grades, keeping only the <code>n</code> asked for.
+ *
+ * The students are split in chunks by their <code>Spliterator</code> like in {@link ParallelReport}, so a
+ * repository is ranked without being copied. Each chunk is scanned by its own task, which computes the value
+ * of each student on the fly, visiting its grades without allocating, and keeps the best <code>n</code> in a
+ * bounded heap whose root is the worst of them, so a student that does not beat the root is dropped at once.
+ * The heaps of the chunks are merged two by two as the tasks join. A query takes O(s log n) time for s
+ * students and O(n) memory per chunk being scanned, instead of sorting the whole class.
+ *
+ * Ties are broken by registration number, so the result does not depend on the chunks.
+ */
+public class Ranking {
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	/**
+	 * A ranked student and the value it was ranked by.
+	 */
+	public static class Entry {
+		private final Student student;
+		private final double value;
+
+		private Entry(Student student, double value) {
+			this.student = student;
+			this.value = value;
+		}
+
+		public Student getStudent() {
+			return student;
+		}
+
+		/**
+		 * @return the average, the grade or the lowest grade, depending on the query.
+		 */
+		public double getValue() {
+			return value;
+		}
+	}
+
+	/**
+	 * Computes the value a student is ranked by.
+	 */
+	@FunctionalInterface
+	private interface Measure {
+		/**
+		 * @return the value or NaN if the student is not ranked.
+		 */
+		double of(Student student, Accumulator accumulator);
+	}
+
+	/**
+	 * Sums the grades of a student, reused by every student of a chunk.
+	 */
+	private static class Accumulator implements Student.DisciplineVisitor {
+		double sum;
+		double lowest;
+		int count;
+
+		Accumulator reset() {
+			sum = 0;
+			lowest = Double.POSITIVE_INFINITY;
+			count = 0;
+
+			return this;
+		}
+
+		@Override
+		public void visit(String name, double grade) {
+			sum += grade;
+			lowest = Math.min(lowest, grade);
+			count++;
+		}
+	}
+
+	/**
+	 * Keeps the best <code>capacity</code> entries offered, the worst of them at the root.
+	 */
+	private static class BoundedHeap {
+		private final int capacity;
+		private final boolean highestFirst;
+		private final Comparator<Entry> order;
+		private final PriorityQueue<Entry> entries;
+
+		/**
+		 * @param highestFirst whether the highest values are the best.
+		 */
+		BoundedHeap(int capacity, boolean highestFirst) {
+			this.capacity = capacity;
+			this.highestFirst = highestFirst;
+			this.order = highestFirst ? HIGHEST_FIRST : LOWEST_FIRST;
+			this.entries = new PriorityQueue<>(Math.min(capacity, MAX_INITIAL_CAPACITY) + 1, order.reversed());
+		}
+
+		/**
+		 * Adds a student if the heap is not full or it beats the root. The value alone decides most
+		 * comparisons, so a student that does not get in creates no entry.
+		 */
+		void offer(Student student, double value) {
+			if(entries.size() == capacity) {
+				var root = entries.peek().value;
+				if(highestFirst ? value < root : value > root)
+					return;
+			}
+
+			offer(new Entry(student, value));
+		}
+
+		void offer(Entry entry) {
+			if(entries.size() < capacity) {
+				entries.add(entry);
+			} else if(order.compare(entry, entries.peek()) < 0) {
+				entries.poll();
+				entries.add(entry);
+			}
+		}
+
+		BoundedHeap merge(BoundedHeap other) {
+			for(var entry : other.entries)
+				offer(entry);
+
+			return this;
+		}
+
+		List<Entry> toList() {
+			var list = new ArrayList<>(entries);
+			list.sort(order);
+
+			return list;
+		}
+	}
+
+	/**
+	 * Ranks a part of the students, splitting it in halves down to single chunks.
+	 */
+	private class ChunkTask extends RecursiveTask<BoundedHeap> {
+		private static final long serialVersionUID = 1L;
+
+		private final Spliterator<Student> students;
+		private final Measure measure;
+		private final boolean highestFirst;
+		private final int n;
+
+		ChunkTask(Spliterator<Student> students, Measure measure, boolean highestFirst, int n) {
+			this.students = students;
+			this.measure = measure;
+			this.highestFirst = highestFirst;
+			this.n = n;
+		}
+
+		@Override
+		protected BoundedHeap compute() {
+			var prefix = students.estimateSize() > chunkSize ? students.trySplit() : null;
+
+			if(prefix == null)
+				return scan(students, measure, new BoundedHeap(n, highestFirst));
+
+			var second = new ChunkTask(students, measure, highestFirst, n);
+			second.fork();
+
+			var heap = new ChunkTask(prefix, measure, highestFirst, n).compute();
+
+			return heap.merge(second.join());
+		}
+	}
+
+	private static final Comparator<Entry> BY_REGISTRATION = Comparator.comparing(e -> e.student.getRegistration());
+	private static final Comparator<Entry> HIGHEST_FIRST =
+			Comparator.<Entry>comparingDouble(e -> -e.value).thenComparing(BY_REGISTRATION);
+	private static final Comparator<Entry> LOWEST_FIRST =
+			Comparator.<Entry>comparingDouble(e -> e.value).thenComparing(BY_REGISTRATION);
+
+	private static final Measure AVERAGE = (student, accumulator) -> {
+		student.forEachDiscipline(accumulator.reset());
+
+		return accumulator.count == 0 ? Double.NaN : accumulator.sum / accumulator.count;
+	};
+
+	private static final Measure LOWEST_FAILING_GRADE = (student, accumulator) -> {
+		student.forEachDiscipline(accumulator.reset());
+
+		return accumulator.lowest < Discipline.MIN_FOR_APPROVAL ? accumulator.lowest : Double.NaN;
+	};
+
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+
+	public Ranking() {
+		this(DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param chunkSize the number of students scanned by each task.
+	 * @param pool runs the tasks.
+	 */
+	public Ranking(int chunkSize, ForkJoinPool pool) {
+		if(chunkSize <= 0)
+			throw new IllegalArgumentException("chunkSize must be positive");
+
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+	}
+
+	/**
+	 * Finds the students with the highest averages, the students with no disciplines are left out.
+	 *
+	 * @param students the students, usually a repository.
+	 * @param n how many students.
+	 * @return up to <code>n</code> students, the highest average first.
+	 */
+	public List<Entry> highestAverages(Iterable<Student> students, int n) {
+		return rank(students, AVERAGE, true, n);
+	}
+
+	/**
+	 * Finds the students with the lowest averages, the students with no disciplines are left out.
+	 *
+	 * @param students the students, usually a repository.
+	 * @param n how many students.
+	 * @return up to <code>n</code> students, the lowest average first.
+	 */
+	public List<Entry> lowestAverages(Iterable<Student> students, int n) {
+		return rank(students, AVERAGE, false, n);
+	}
+
+	/**
+	 * Finds the students with the lowest grades in a discipline.
+	 *
+	 * @param students the students, usually a repository.
+	 * @param discipline the discipline name, ignoring case, accents and repeated spaces.
+	 * @param n how many students.
+	 * @return up to <code>n</code> students enrolled in the discipline, the lowest grade first.
+	 */
+	public List<Entry> lowestGrades(Iterable<Student> students, String discipline, int n) {
+		return rank(students, (student, accumulator) -> student.gradeOf(discipline), false, n);
+	}
+
+	/**
+	 * Finds the students at risk, those with any grade lower than <code>Discipline.MIN_FOR_APPROVAL</code>.
+	 *
+	 * @param students the students, usually a repository.
+	 * @param n how many students.
+	 * @return up to <code>n</code> students at risk, ranked by their lowest grade, the lowest first.
+	 */
+	public List<Entry> atRisk(Iterable<Student> students, int n) {
+		return rank(students, LOWEST_FAILING_GRADE, false, n);
+	}
+
+	private List<Entry> rank(Iterable<Student> students, Measure measure, boolean highestFirst, int n) {
+		if(n <= 0)
+			return List.of();
+
+		var spliterator = students.spliterator();
+
+		if(spliterator.estimateSize() <= chunkSize)
+			return scan(spliterator, measure, new BoundedHeap(n, highestFirst)).toList();
+
+		return pool.invoke(new ChunkTask(spliterator, measure, highestFirst, n)).toList();
+	}
+
+	private static BoundedHeap scan(Spliterator<Student> students, Measure measure, BoundedHeap heap) {
+		var accumulator = new Accumulator();
+
+		students.forEachRemaining(student -> {
+			var value = measure.of(student, accumulator);
+
+			if(!Double.isNaN(value))
+				heap.offer(student, value);
+		});
+
+		return heap;
+	}
+}
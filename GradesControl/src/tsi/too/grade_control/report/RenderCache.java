@@ -0,0 +1,263 @@
+package tsi.too.grade_control.report;
+
+import static tsi.too.grade_control.Constants.RENDER_CACHE_BYTES_PROPERTY;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.repository.RosterListener;
+
+/**
+ * Keeps the text rendered for the students, so the students that did not change since the last time are
+ * not formatted again.
+ *
+ * An entry is keyed by the student id and holds the student and the {@link Student#getStamp()} it was
+ * rendered at, so it is used only for the same student while it is unchanged. The entries are kept in least
+ * recently used order and, once their estimated size reaches the byte budget, a new entry is admitted only if
+ * it was asked for more often than the least recently used one, which is then evicted. The frequencies are
+ * estimated by a small sketch that halves them periodically (TinyLFU), so a report going through a class
+ * larger than the budget does not evict the students that are looked up often.
+ *
+ * The cache is split in <code>SEGMENTS</code> segments by student id, each with its own lock and its share
+ * of the budget, so the threads of a parallel report rarely wait for each other. As a listener, it drops the
+ * entries of the removed students.
+ */
+public class RenderCache implements RosterListener {
+	public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+	private static final int SEGMENT_BITS = 4;
+	private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+	/* The estimated bytes of an entry besides the characters: the map node, the key, the entry and the string */
+	private static final int ENTRY_OVERHEAD = 112;
+
+	/* The size of a typical entry, used to size the frequency sketch of a segment */
+	private static final int TYPICAL_ENTRY_BYTES = ENTRY_OVERHEAD + 2 * 256;
+
+	private static final int MAX_FREQUENCY = 15;
+
+	private static RenderCache instance;
+
+	private static class Entry {
+		final Student student;
+		final long stamp;
+		final String text;
+
+		Entry(Student student, long stamp, String text) {
+			this.student = student;
+			this.stamp = stamp;
+			this.text = text;
+		}
+
+		long bytes() {
+			return ENTRY_OVERHEAD + 2L * text.length();
+		}
+	}
+
+	private static class Segment extends LinkedHashMap<Integer, Entry> {
+		private static final long serialVersionUID = 1L;
+
+		final byte[] frequencies;
+		final int sampleSize;
+		int samples;
+		long bytes;
+
+		Segment(long maxBytes) {
+			super(16, 0.75f, true);
+
+			var entries = (int) Math.min(1 << 20, Math.max(16, maxBytes / TYPICAL_ENTRY_BYTES));
+			frequencies = new byte[Integer.highestOneBit(entries - 1) << 2];
+			sampleSize = 10 * entries;
+		}
+
+		/**
+		 * Counts a look up of a student in each of the two counters of the id, halving every counter once
+		 * <code>sampleSize</code> look ups are counted.
+		 */
+		void increment(int id) {
+			var hash = spread(id);
+
+			for(int i = 0; i < 2; i++, hash = Integer.rotateLeft(hash, 16)) {
+				var index = hash & (frequencies.length - 1);
+				if(frequencies[index] < MAX_FREQUENCY)
+					frequencies[index]++;
+			}
+
+			if(++samples == sampleSize) {
+				for(int i = 0; i < frequencies.length; i++)
+					frequencies[i] >>= 1;
+
+				samples /= 2;
+			}
+		}
+
+		/**
+		 * @return the estimated look ups of a student, the least of its counters.
+		 */
+		int frequency(int id) {
+			var hash = spread(id);
+			var first = frequencies[hash & (frequencies.length - 1)];
+			var second = frequencies[Integer.rotateLeft(hash, 16) & (frequencies.length - 1)];
+
+			return Math.min(first, second);
+		}
+
+		private static int spread(int id) {
+			var hash = id * 0x85EBCA6B;
+
+			return hash ^ (hash >>> 15);
+		}
+	}
+
+	private final long maxBytesPerSegment;
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maxBytes the budget of the estimated size of the entries, 0 disables the cache.
+	 */
+	public RenderCache(long maxBytes) {
+		this.maxBytesPerSegment = Math.max(0, maxBytes) / SEGMENTS;
+
+		for(int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(maxBytesPerSegment);
+	}
+
+	/**
+	 * Gets the cache shared by the class, with the budget given by the
+	 * <code>RENDER_CACHE_BYTES_PROPERTY</code> system property.
+	 *
+	 * @return an instance of this class.
+	 */
+	public static RenderCache getInstance() {
+		synchronized (RenderCache.class) {
+			if(instance == null)
+				instance = new RenderCache(Long.getLong(RENDER_CACHE_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+			return instance;
+		}
+	}
+
+	/**
+	 * Gets the text of a student, rendering it if it is not cached or the student changed since.
+	 *
+	 * @param student the student.
+	 * @param renderer renders the text, called without holding any lock.
+	 * @return the text.
+	 */
+	public String render(Student student, Function<Student, String> renderer) {
+		var stamp = student.getStamp();
+		if(maxBytesPerSegment == 0)
+			return renderer.apply(student);
+
+		var id = student.getId();
+		var segment = segmentOf(id);
+
+		boolean admitted;
+
+		synchronized (segment) {
+			segment.increment(id);
+
+			var entry = segment.get(id);
+			if(entry != null && entry.student == student && entry.stamp == stamp) {
+				hits.increment();
+				return entry.text;
+			}
+
+			admitted = entry != null || admits(segment, id);
+		}
+
+		misses.increment();
+
+		var entry = new Entry(student, stamp, renderer.apply(student));
+		if(!admitted || entry.bytes() > maxBytesPerSegment)
+			return entry.text;
+
+		synchronized (segment) {
+			var old = segment.put(id, entry);
+			if(old != null)
+				segment.bytes -= old.bytes();
+
+			segment.bytes += entry.bytes();
+
+			var eldest = segment.values().iterator();
+			while(segment.bytes > maxBytesPerSegment) {
+				segment.bytes -= eldest.next().bytes();
+				eldest.remove();
+			}
+		}
+
+		return entry.text;
+	}
+
+	/**
+	 * Decides whether a new entry should be added to a segment: always while the segment has room, otherwise
+	 * only if the student is asked for more often than the least recently used one.
+	 */
+	private boolean admits(Segment segment, int id) {
+		if(segment.isEmpty() || segment.bytes + TYPICAL_ENTRY_BYTES <= maxBytesPerSegment)
+			return true;
+
+		return segment.frequency(id) > segment.frequency(segment.values().iterator().next().student.getId());
+	}
+
+	@Override
+	public void studentRemoved(Student student) {
+		var segment = segmentOf(student.getId());
+
+		synchronized (segment) {
+			var entry = segment.get(student.getId());
+
+			if(entry != null && entry.student == student) {
+				segment.remove(student.getId());
+				segment.bytes -= entry.bytes();
+			}
+		}
+	}
+
+	/**
+	 * Picks the segment from the high bits of the hashed id, so the ids of a segment still spread over the
+	 * buckets of its map.
+	 */
+	private Segment segmentOf(int id) {
+		return segments[(id * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS)];
+	}
+
+	/**
+	 * @return the estimated size of the entries.
+	 */
+	public long getBytes() {
+		long bytes = 0;
+
+		for(var segment : segments) {
+			synchronized (segment) {
+				bytes += segment.bytes;
+			}
+		}
+
+		return bytes;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Drops every entry.
+	 */
+	public void clear() {
+		for(var segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+				segment.bytes = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package tsi.too.grade_control.report;
+
+import static tsi.too.grade_control.Constants.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Writes the student data and the class report straight to an <code>Appendable</code>, one line at a time.
+ *
+ * The text is the same produced by <code>String.format</code> with the default locale, but numbers are
+ * written digit by digit, so nothing is formatted into intermediate strings. In paged mode the lines are
+ * accumulated in a single reused buffer and handed to a {@link PageHandler} every <code>pageSize</code>
+ * students, so the memory used does not depend on the size of the class.
+ */
+public class ReportWriter {
+	private static final int SEPARATOR_LENGTH = 20;
+	private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000};
+
+	/**
+	 * Receives the pages of a paged report.
+	 */
+	@FunctionalInterface
+	public interface PageHandler {
+		/**
+		 * @param page the page number, starting at 1.
+		 * @param content the page text, only valid during this call.
+		 * @return true to continue the student listing, false to skip to the summary.
+		 */
+		boolean onPage(int page, CharSequence content);
+	}
+
+	private final Appendable out;
+	private final char decimalSeparator;
+	private final char[] digits = new char[20];
+
+	private final StringBuilder page;
+	private final int pageSize;
+	private final PageHandler pageHandler;
+	private int linesInPage;
+	private int pageNumber;
+
+	public ReportWriter(Appendable out) {
+		this(out, Locale.getDefault(Locale.Category.FORMAT));
+	}
+
+	public ReportWriter(Appendable out, Locale locale) {
+		this.out = out;
+		this.decimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+		this.page = null;
+		this.pageSize = 0;
+		this.pageHandler = null;
+	}
+
+	private ReportWriter(int pageSize, PageHandler pageHandler) {
+		this.page = new StringBuilder();
+		this.out = page;
+		this.decimalSeparator = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT))
+				.getDecimalSeparator();
+		this.pageSize = pageSize;
+		this.pageHandler = pageHandler;
+	}
+
+	/**
+	 * Creates a writer that splits the report in pages of <code>pageSize</code> students, the summary is
+	 * written in the last page.
+	 *
+	 * @param pageSize the number of students per page.
+	 * @param pageHandler receives each page as soon as it is complete.
+	 * @return the created writer.
+	 */
+	public static ReportWriter paged(int pageSize, PageHandler pageHandler) {
+		if(pageSize <= 0)
+			throw new IllegalArgumentException("pageSize must be positive");
+
+		return new ReportWriter(pageSize, pageHandler);
+	}
+
+	/**
+	 * Writes the general report: the approval status of every student followed by the class summary. The
+	 * approval is read from each student, so the students may belong to any <code>GradeTable</code>.
+	 *
+	 * @param students the data source.
+	 * @param statistics the up to date statistics of the students.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeReport(Iterable<Student> students, ClassStatistics statistics) throws IOException {
+		for(Student s : students) {
+			writeApprovalStatus(s, s.isAproved());
+			out.append('\n');
+
+			if(page != null && ++linesInPage == pageSize && !flushPage())
+				break;
+		}
+
+		writeSummary(statistics);
+
+		if(page != null && page.length() > 0)
+			flushPage();
+	}
+
+	/**
+	 * Writes the same report of {@link #writeReport(Iterable, ClassStatistics)}, formatting the students of
+	 * each page, or of a few chunks per thread when not paged, in parallel. The students are split by their
+	 * <code>Spliterator</code>, so a repository is not copied.
+	 *
+	 * @param students the data source.
+	 * @param statistics the up to date statistics of the students.
+	 * @param engine formats the students.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeReport(Iterable<Student> students, ClassStatistics statistics, ParallelReport engine)
+			throws IOException {
+		var window = page != null ? pageSize : engine.getWindowSize();
+
+		engine.build(students.spliterator(), window, blocks -> {
+			for(var block : blocks) {
+				if(!writeBlock(block))
+					return false;
+			}
+
+			return true;
+		});
+
+		writeSummary(statistics);
+
+		if(page != null && page.length() > 0)
+			flushPage();
+	}
+
+	/**
+	 * Writes the general report with the grades of a past instant, leaving out the students not enrolled in
+	 * any discipline then.
+	 *
+	 * @param students the data source.
+	 * @param statistics the statistics of the students at the instant, see
+	 * {@link ClassStatistics#asOf(Iterable, Instant)}.
+	 * @param asOf the instant.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeReport(Iterable<Student> students, ClassStatistics statistics, Instant asOf)
+			throws IOException {
+		var enrolled = new boolean[1];
+
+		for(Student s : students) {
+			enrolled[0] = false;
+			s.forEachDiscipline(asOf, (discipline, grade) -> enrolled[0] = true);
+
+			if(!enrolled[0])
+				continue;
+
+			writeApprovalStatus(s, s.isAproved(asOf));
+			out.append('\n');
+
+			if(page != null && ++linesInPage == pageSize && !flushPage())
+				break;
+		}
+
+		writeSummary(statistics);
+
+		if(page != null && page.length() > 0)
+			flushPage();
+	}
+
+	/**
+	 * Writes a line containing the student's basic information and approval status, without line break.
+	 *
+	 * @param student the target student.
+	 * @param approved the student approval status.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeApprovalStatus(Student student, boolean approved) throws IOException {
+		appendSequentialNumber(student.getRegistration());
+		out.append(' ').append(student.getName())
+			.append('\t').append(student.getCourse())
+			.append('\t').append(approved ? APPROVED : REPROVED);
+	}
+
+	/**
+	 * Writes the registration, name, course and disciplines of a student.
+	 *
+	 * @param s the target student.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeStudent(Student s) throws IOException {
+		out.append(REGISTRATION_NUMBER).append(": ").append(s.getRegistration())
+			.append('\n').append(NAME).append(": ").append(s.getName())
+			.append('\n').append(COURSE).append(": ").append(s.getCourse())
+			.append("\n\n").append(DISCIPLINES).append(':');
+
+		try {
+			s.forEachDiscipline((name, grade) -> {
+				try {
+					out.append("\n\t").append(NAME).append(": ").append(name)
+						.append("\n\t").append(GRADE).append(": ");
+					appendDecimal(grade, 2);
+					out.append('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes the counts and percentages of approved and reproved students, the average of each discipline
+	 * and the grade distribution.
+	 *
+	 * @param statistics the up to date statistics of the students.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeSummary(ClassStatistics statistics) throws IOException {
+		var studentsCount = statistics.getStudentsCount();
+
+		writeSeparator(RESUME);
+		writeSummaryLine(NUMBER_OF_STUDENTS);
+		appendLong(studentsCount);
+		writeSummaryLine(NUMBER_OF_APPROVED);
+		appendLong(statistics.getApprovedCount());
+		writeSummaryLine(NUMBER_OF_REPROVEDS);
+		appendLong(statistics.getReprovedCount());
+		writeSummaryLine(PERCENTAGE_OF_APPROVED);
+		appendDecimal(calculatePercentage(statistics.getApprovedCount(), studentsCount), 1);
+		out.append('%');
+		writeSummaryLine(PERCENTAGE_OF_REPROVED);
+		appendDecimal(calculatePercentage(statistics.getReprovedCount(), studentsCount), 1);
+		out.append('%');
+
+		writeSeparator(AVERAGE_BY_DISCIPLINE);
+		for(var d : statistics.getDisciplines()) {
+			if(d.getCount() > 0) {
+				writeSummaryLine(d.getName());
+				appendDecimal(d.getAverage(), 2);
+			}
+		}
+
+		writeSeparator(GRADE_DISTRIBUTION);
+		for(int i = 0; i < ClassStatistics.HISTOGRAM_BUCKETS; i++) {
+			out.append('\n');
+			appendLong(i);
+			out.append(" = ");
+			appendLong(statistics.getHistogramCount(i));
+		}
+	}
+
+	/**
+	 * Writes the enrollment count, the mean, median, lowest and highest grades and the percentage of approved
+	 * students of each discipline.
+	 *
+	 * @param reports the reports of the disciplines.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeDisciplineReports(List<DisciplineReport> reports) throws IOException {
+		for(var d : reports) {
+			writeSeparator(d.getName());
+			writeSummaryLine(ENROLLED_STUDENTS);
+			appendLong(d.getEnrollmentCount());
+			writeSummaryLine(MEAN);
+			appendDecimal(d.getMean(), 2);
+			writeSummaryLine(MEDIAN);
+			appendDecimal(d.getMedian(), 2);
+			writeSummaryLine(LOWEST_GRADE);
+			appendDecimal(d.getMin(), 2);
+			writeSummaryLine(HIGHEST_GRADE);
+			appendDecimal(d.getMax(), 2);
+			writeSummaryLine(PERCENTAGE_OF_APPROVED);
+			appendDecimal(d.getPassRate(), 1);
+			out.append('%');
+		}
+	}
+
+	/**
+	 * Writes the position, registration, name and value of each ranked student under a header.
+	 *
+	 * @param header the header title, the name of the query.
+	 * @param entries the ranked students, the first one at the top.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeRanking(String header, List<Ranking.Entry> entries) throws IOException {
+		writeSeparator(header);
+
+		for(int i = 0; i < entries.size(); i++) {
+			var student = entries.get(i).getStudent();
+
+			out.append('\n');
+			appendLong(i + 1);
+			out.append(". ").append(student.getRegistration()).append(' ').append(student.getName()).append(" = ");
+			appendDecimal(entries.get(i).getValue(), 2);
+		}
+	}
+
+	/**
+	 * Writes a default header with separators chars.
+	 *
+	 * @param header the header title.
+	 * @throws IOException if the output fails.
+	 */
+	public void writeSeparator(String header) throws IOException {
+		out.append('\n');
+		appendDashes();
+		out.append(' ').append(header).append(' ');
+		appendDashes();
+	}
+
+	/**
+	 * Writes a number with a fixed amount of decimal places, rounding half up as <code>%1.nf</code> does.
+	 *
+	 * @param value the number.
+	 * @param decimals the amount of decimal places, up to 3.
+	 * @throws IOException if the output fails.
+	 */
+	public void appendDecimal(double value, int decimals) throws IOException {
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			out.append(Double.toString(value));
+			return;
+		}
+
+		var scaled = Math.abs(value) * POWERS_OF_TEN[decimals];
+		var rounded = (long) Math.floor(scaled + 0.5 + Math.ulp(scaled));
+
+		if(value < 0 && rounded != 0)
+			out.append('-');
+
+		appendLong(rounded / POWERS_OF_TEN[decimals]);
+
+		if(decimals == 0)
+			return;
+
+		out.append(decimalSeparator);
+
+		var fraction = rounded % POWERS_OF_TEN[decimals];
+		for(var p = POWERS_OF_TEN[decimals - 1]; p > 0; p /= 10) {
+			out.append((char) ('0' + fraction / p));
+			fraction %= p;
+		}
+	}
+
+	private void appendLong(long value) throws IOException {
+		if(value < 0) {
+			out.append('-');
+			value = -value;
+		}
+
+		int i = digits.length;
+		do {
+			digits[--i] = (char) ('0' + value % 10);
+			value /= 10;
+		}while(value > 0);
+
+		for(; i < digits.length; i++)
+			out.append(digits[i]);
+	}
+
+	private Appendable writeSummaryLine(String label) throws IOException {
+		return out.append('\n').append(label).append(" = ");
+	}
+
+	private void appendDashes() throws IOException {
+		for(int i = 0; i < SEPARATOR_LENGTH; i++)
+			out.append('-');
+	}
+
+	/**
+	 * Writes the sequence number of the registration number, the part after the first '-'.
+	 */
+	private void appendSequentialNumber(String registration) throws IOException {
+		var start = registration.indexOf('-');
+		if(start < 0)
+			return;
+
+		var end = registration.indexOf('-', start + 1);
+		out.append(registration, start + 1, end < 0 ? registration.length() : end);
+	}
+
+	/**
+	 * Writes the lines of a block, flushing the page after its last student.
+	 *
+	 * @return false if the page handler stopped the listing.
+	 */
+	private boolean writeBlock(ParallelReport.Block block) throws IOException {
+		if(page == null) {
+			out.append(block.getLines());
+			return true;
+		}
+
+		var lines = block.getLines();
+		var start = 0;
+
+		for(int i = 0; i < block.getStudentsCount(); i++) {
+			if(++linesInPage < pageSize)
+				continue;
+
+			var end = block.getLineEnd(i);
+			page.append(lines, start, end);
+			start = end;
+
+			if(!flushPage())
+				return false;
+		}
+
+		page.append(lines, start, lines.length());
+
+		return true;
+	}
+
+	private boolean flushPage() {
+		var proceed = pageHandler.onPage(++pageNumber, page);
+
+		page.setLength(0);
+		linesInPage = 0;
+
+		return proceed;
+	}
+
+	private static double calculatePercentage(double value, double from) {
+		return value / from * 100;
+	}
+}
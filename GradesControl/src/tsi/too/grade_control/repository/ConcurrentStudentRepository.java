@@ -0,0 +1,391 @@
+package tsi.too.grade_control.repository;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.util.CaseInsensitiveKey;
+
+/**
+ * A {@link StudentRepository} that can be shared by several threads, such as clerks working at the same
+ * time or an import running alongside the menu.
+ *
+ * Lookups and iteration never take a lock: both indexes are <code>ConcurrentHashMap</code>s and the
+ * registration order is kept in a <code>ConcurrentSkipListMap</code>, whose iterators are weakly
+ * consistent. Changes lock one of <code>STRIPES</code> locks chosen by the hash of the registration
+ * number, so changes to different students run in parallel while the changes to the same student, and the
+ * events fired for them, happen one at a time and in order. The uniqueness of names across stripes is
+ * granted by the atomic <code>putIfAbsent</code> of the name index.
+ *
+ * The changes that claim or release a name, registrations, removals and renames, first lock the stripe of
+ * each name among other <code>STRIPES</code> locks chosen by the hash of the name, in the order of the
+ * stripes. Otherwise a listener could see a name claimed by a student before seeing it released by another
+ * one, and the journal could not be replayed. Changes to different names still run in parallel, and
+ * updates keeping the name, like grade changes, lock only the stripe of the registration number.
+ *
+ * Listeners may be called by any thread and must be thread safe.
+ */
+public class ConcurrentStudentRepository implements StudentRepository {
+	private static final int STRIPES = 64;
+
+	/**
+	 * A registered student and its position in the registration order.
+	 */
+	private static class Entry {
+		final Student student;
+		final long order;
+
+		Entry(Student student, long order) {
+			this.student = student;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * The students registered with an order in a range. The size is estimated as the length of the range, so
+	 * it is larger than the number of students if some of them were removed.
+	 */
+	private class OrderSpliterator implements Spliterator<Student> {
+		private long from;
+		private final long to;
+
+		OrderSpliterator(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Student> action) {
+			var next = from < to ? students.ceilingEntry(from) : null;
+
+			if(next == null || next.getKey() >= to) {
+				from = to;
+				return false;
+			}
+
+			from = next.getKey() + 1;
+			action.accept(next.getValue());
+
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Student> action) {
+			if(from < to)
+				students.subMap(from, to).values().forEach(action);
+
+			from = to;
+		}
+
+		@Override
+		public Spliterator<Student> trySplit() {
+			var middle = (from + to) >>> 1;
+			if(middle <= from)
+				return null;
+
+			var prefix = new OrderSpliterator(from, middle);
+			from = middle;
+
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return to - from;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | CONCURRENT;
+		}
+	}
+
+	private final ConcurrentHashMap<CaseInsensitiveKey, Entry> byRegistration = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<CaseInsensitiveKey, Student> byName = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, Student> students = new ConcurrentSkipListMap<>();
+	private final AtomicLong nextOrder = new AtomicLong();
+
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+	private final ReentrantLock[] nameStripes = new ReentrantLock[STRIPES];
+	private final List<RosterListener> listeners = new CopyOnWriteArrayList<>();
+
+	public ConcurrentStudentRepository() {
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+			nameStripes[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public boolean register(Student student) {
+		var registration = new CaseInsensitiveKey(student.getRegistration());
+		var lock = stripeOf(registration);
+		var name = new CaseInsensitiveKey(student.getName());
+		var nameStripe = nameStripeOf(name);
+
+		lockNames(nameStripe, nameStripe);
+		lock.lock();
+		try {
+			if(byRegistration.containsKey(registration))
+				return false;
+
+			if(byName.putIfAbsent(name, student) != null)
+				return false;
+
+			var order = nextOrder.getAndIncrement();
+			byRegistration.put(registration, new Entry(student, order));
+			students.put(order, student);
+
+			for(var l : listeners)
+				l.studentRegistered(student);
+
+			return true;
+		} finally {
+			lock.unlock();
+			unlockNames(nameStripe, nameStripe);
+		}
+	}
+
+	/**
+	 * The name is read before its stripe is locked, if the student is renamed meanwhile the stripe of the new
+	 * name is locked instead.
+	 */
+	@Override
+	public boolean remove(Student student) {
+		var registration = new CaseInsensitiveKey(student.getRegistration());
+		var lock = stripeOf(registration);
+
+		while(true) {
+			var name = new CaseInsensitiveKey(student.getName());
+			var nameStripe = nameStripeOf(name);
+
+			lockNames(nameStripe, nameStripe);
+			lock.lock();
+			try {
+				if(!name.equals(new CaseInsensitiveKey(student.getName())))
+					continue;
+
+				var entry = byRegistration.get(registration);
+				if(entry == null || entry.student != student)
+					return false;
+
+				for(var l : listeners)
+					l.studentRemoved(student);
+
+				byRegistration.remove(registration);
+				byName.remove(name, student);
+				students.remove(entry.order);
+				student.release();
+
+				return true;
+			} finally {
+				lock.unlock();
+				unlockNames(nameStripe, nameStripe);
+			}
+		}
+	}
+
+	/**
+	 * Locks the stripes of the old and the new name only if they differ ignoring case, like {@link
+	 * #remove(Student)} the old name is read again once the locks are held.
+	 */
+	@Override
+	public boolean update(Student student, String name, String course) {
+		var registration = new CaseInsensitiveKey(student.getRegistration());
+		var lock = stripeOf(registration);
+		var newKey = new CaseInsensitiveKey(name);
+
+		while(true) {
+			var oldKey = new CaseInsensitiveKey(student.getName());
+			var renamed = !newKey.equals(oldKey);
+			var oldStripe = nameStripeOf(oldKey);
+			var newStripe = nameStripeOf(newKey);
+
+			if(renamed)
+				lockNames(oldStripe, newStripe);
+
+			lock.lock();
+			try {
+				var oldName = student.getName();
+				if(!oldKey.equals(new CaseInsensitiveKey(oldName)))
+					continue;
+
+				if(!isRegistered(registration, student))
+					return false;
+
+				var oldCourse = student.getCourse();
+
+				if(renamed) {
+					if(byName.putIfAbsent(newKey, student) != null)
+						return false;
+
+					byName.remove(oldKey, student);
+				}
+
+				student.setName(name);
+				student.setCourse(course);
+
+				for(var l : listeners)
+					l.studentUpdated(student, oldName, oldCourse);
+
+				return true;
+			} finally {
+				lock.unlock();
+
+				if(renamed)
+					unlockNames(oldStripe, newStripe);
+			}
+		}
+	}
+
+	@Override
+	public boolean addDiscipline(Student student, String discipline, double grade, long time) {
+		var registration = new CaseInsensitiveKey(student.getRegistration());
+		var lock = stripeOf(registration);
+
+		lock.lock();
+		try {
+			if(!isRegistered(registration, student) || student.isEnrolled(discipline))
+				return false;
+
+			if(!student.addDiscipline(discipline, grade, time))
+				return false;
+
+			var storedGrade = student.gradeOf(discipline);
+			for(var l : listeners)
+				l.disciplineAdded(student, discipline, storedGrade);
+
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean updateGrade(Student student, String discipline, double grade, long time) {
+		var registration = new CaseInsensitiveKey(student.getRegistration());
+		var lock = stripeOf(registration);
+
+		lock.lock();
+		try {
+			if(!isRegistered(registration, student))
+				return false;
+
+			var oldGrade = student.gradeOf(discipline);
+			if(!student.updateGrade(discipline, grade, time))
+				return false;
+
+			var newGrade = student.gradeOf(discipline);
+			for(var l : listeners)
+				l.gradeUpdated(student, discipline, oldGrade, newGrade);
+
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Student findByName(String name) {
+		return byName.get(CaseInsensitiveKey.lookup(name));
+	}
+
+	@Override
+	public Student findByRegistration(String registration) {
+		var entry = byRegistration.get(CaseInsensitiveKey.lookup(registration));
+
+		return entry == null ? null : entry.student;
+	}
+
+	@Override
+	public int size() {
+		return byRegistration.size();
+	}
+
+	@Override
+	public void addListener(RosterListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Holds the locks of all the names during the whole batch, the changes take them again without contention.
+	 */
+	@Override
+	public void batch(Runnable changes) {
+		for(var nameStripe : nameStripes)
+			nameStripe.lock();
+
+		try {
+			for(var l : listeners)
+				l.batchStarted();
+
+			try {
+				changes.run();
+			} finally {
+				for(var l : listeners)
+					l.batchFinished();
+			}
+		} finally {
+			for(int i = STRIPES - 1; i >= 0; i--)
+				nameStripes[i].unlock();
+		}
+	}
+
+	/**
+	 * Iterates the students in registration order without blocking. The iterator reflects the changes made
+	 * while it is in use only partially and never throws <code>ConcurrentModificationException</code>.
+	 */
+	@Override
+	public Iterator<Student> iterator() {
+		return Collections.unmodifiableCollection(students.values()).iterator();
+	}
+
+	/**
+	 * Splits the registration order in halves of the range of orders without blocking, the parts are weakly
+	 * consistent like the iterator. The spliterator of the skip list itself splits at its first index key,
+	 * far from the middle.
+	 */
+	@Override
+	public Spliterator<Student> spliterator() {
+		return new OrderSpliterator(0, nextOrder.get());
+	}
+
+	private boolean isRegistered(CaseInsensitiveKey registration, Student student) {
+		var entry = byRegistration.get(registration);
+
+		return entry != null && entry.student == student;
+	}
+
+	private ReentrantLock stripeOf(CaseInsensitiveKey registration) {
+		return stripes[registration.hashCode() & (STRIPES - 1)];
+	}
+
+	private static int nameStripeOf(CaseInsensitiveKey name) {
+		return name.hashCode() & (STRIPES - 1);
+	}
+
+	/**
+	 * Locks the stripes of two names, the lower one first so two renames never wait for each other.
+	 */
+	private void lockNames(int first, int second) {
+		nameStripes[Math.min(first, second)].lock();
+
+		if(first != second)
+			nameStripes[Math.max(first, second)].lock();
+	}
+
+	private void unlockNames(int first, int second) {
+		if(first != second)
+			nameStripes[Math.max(first, second)].unlock();
+
+		nameStripes[Math.min(first, second)].unlock();
+	}
+}
@@ -0,0 +1,222 @@
+package tsi.too.grade_control.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.GradeTable;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.DisciplineReport;
+import tsi.too.grade_control.util.Pair;
+import tsi.too.grade_control.util.SymbolTable;
+
+/**
+ * Keeps the students enrolled in each discipline and their grades, so the enrollments and the statistics
+ * of a discipline do not need to visit every student.
+ *
+ * The disciplines are matched by their ids in a {@link SymbolTable}, as by the students. Each one keeps the grade of each enrolled
+ * student, the running sum and approval count and how many times each grade occurs in grade order, from
+ * which the median, the lowest and the highest grades are read. A discipline is dropped when its last
+ * student leaves it.
+ *
+ * The events may come from several threads, every method is synchronized.
+ */
+public class DisciplineIndex implements RosterListener {
+
+	/**
+	 * The enrollments of a single discipline.
+	 */
+	private static class Enrollments {
+		final String name;
+		final Map<Student, Float> grades = new LinkedHashMap<>();
+		final TreeMap<Float, Integer> gradeCounts = new TreeMap<>();
+		double sum;
+		int approvedCount;
+
+		Enrollments(String name) {
+			this.name = name;
+		}
+
+		void add(Student student, float grade) {
+			var old = grades.put(student, grade);
+			if(old != null)
+				count(old, -1);
+
+			count(grade, 1);
+		}
+
+		void remove(Student student) {
+			var old = grades.remove(student);
+			if(old != null)
+				count(old, -1);
+		}
+
+		DisciplineReport report() {
+			var count = grades.size();
+
+			return new DisciplineReport(name, count, approvedCount, sum / count, median(count),
+					gradeCounts.firstKey(), gradeCounts.lastKey());
+		}
+
+		private void count(float grade, int sign) {
+			sum += sign * grade;
+
+			if(grade >= Discipline.MIN_FOR_APPROVAL)
+				approvedCount += sign;
+
+			gradeCounts.merge(grade, sign, (a, b) -> a + b == 0 ? null : a + b);
+		}
+
+		/**
+		 * Walks the grades in order up to the middle one, or the two middle ones for an even count.
+		 */
+		private double median(int count) {
+			var lower = (count - 1) / 2;
+			var upper = count / 2;
+			var seen = 0;
+			var lowerGrade = Float.NaN;
+
+			for(var entry : gradeCounts.entrySet()) {
+				seen += entry.getValue();
+
+				if(Float.isNaN(lowerGrade) && seen > lower)
+					lowerGrade = entry.getKey();
+
+				if(seen > upper)
+					return ((double) lowerGrade + entry.getKey()) / 2;
+			}
+
+			return lowerGrade;
+		}
+	}
+
+	private final SymbolTable symbols;
+	/* Indexed by discipline id, null for the disciplines without students */
+	private final List<Enrollments> byDiscipline = new ArrayList<>();
+	private final List<Enrollments> disciplines = new ArrayList<>();
+
+	public DisciplineIndex() {
+		this(GradeTable.getInstance().getDisciplines());
+	}
+
+	/**
+	 * @param symbols the ids of the discipline names of the students.
+	 */
+	public DisciplineIndex(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	@Override
+	public synchronized void studentRegistered(Student student) {
+		student.forEachDiscipline((discipline, grade) -> enroll(student, discipline, grade));
+	}
+
+	@Override
+	public synchronized void disciplineAdded(Student student, String discipline, double grade) {
+		enroll(student, discipline, grade);
+	}
+
+	@Override
+	public synchronized void gradeUpdated(Student student, String discipline, double oldGrade, double newGrade) {
+		enroll(student, discipline, newGrade);
+	}
+
+	@Override
+	public synchronized void studentRemoved(Student student) {
+		student.forEachDiscipline((discipline, grade) -> {
+			var id = symbols.idOf(discipline);
+			var enrollments = find(id);
+			if(enrollments == null)
+				return;
+
+			enrollments.remove(student);
+
+			if(enrollments.grades.isEmpty()) {
+				byDiscipline.set(id, null);
+				disciplines.remove(enrollments);
+			}
+		});
+	}
+
+	/**
+	 * Gets the students enrolled in a discipline, in order of enrollment.
+	 *
+	 * @param discipline the discipline name, ignoring case, accents and repeated spaces.
+	 * @return a copy of the enrolled students, empty if there are none.
+	 */
+	public synchronized List<Student> getStudents(String discipline) {
+		var enrollments = find(symbols.idOf(discipline));
+
+		return enrollments == null ? Collections.emptyList()
+				: Collections.unmodifiableList(new ArrayList<>(enrollments.grades.keySet()));
+	}
+
+	/**
+	 * Gets the students enrolled in a discipline with their grades, in order of enrollment.
+	 *
+	 * @param discipline the discipline name, ignoring case, accents and repeated spaces.
+	 * @return a copy of the enrollments, empty if there are none.
+	 */
+	public synchronized List<Pair<Student, Double>> getEnrollments(String discipline) {
+		var enrollments = find(symbols.idOf(discipline));
+		if(enrollments == null)
+			return Collections.emptyList();
+
+		var copy = new ArrayList<Pair<Student, Double>>(enrollments.grades.size());
+		enrollments.grades.forEach((student, grade) -> copy.add(new Pair<>(student, (double) grade)));
+
+		return Collections.unmodifiableList(copy);
+	}
+
+	/**
+	 * @param discipline the discipline name, ignoring case, accents and repeated spaces.
+	 * @return the current report of the discipline or null if no student is enrolled in it.
+	 */
+	public synchronized DisciplineReport getReport(String discipline) {
+		var enrollments = find(symbols.idOf(discipline));
+
+		return enrollments == null ? null : enrollments.report();
+	}
+
+	/**
+	 * Gets the reports of every discipline with at least one enrolled student, in order of first enrollment.
+	 *
+	 * @return the reports.
+	 */
+	public synchronized List<DisciplineReport> getReports() {
+		var reports = new ArrayList<DisciplineReport>(disciplines.size());
+
+		for(var enrollments : disciplines)
+			reports.add(enrollments.report());
+
+		return Collections.unmodifiableList(reports);
+	}
+
+	public synchronized int getDisciplineCount() {
+		return disciplines.size();
+	}
+
+	private void enroll(Student student, String discipline, double grade) {
+		var id = symbols.intern(discipline);
+		var enrollments = find(id);
+
+		if(enrollments == null) {
+			while(byDiscipline.size() <= id)
+				byDiscipline.add(null);
+
+			enrollments = new Enrollments(symbols.nameOf(id));
+			byDiscipline.set(id, enrollments);
+			disciplines.add(enrollments);
+		}
+
+		enrollments.add(student, (float) grade);
+	}
+
+	private Enrollments find(int id) {
+		return id >= 0 && id < byDiscipline.size() ? byDiscipline.get(id) : null;
+	}
+}
@@ -0,0 +1,227 @@
+package tsi.too.grade_control.repository;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Allocates registration numbers in the format <code>&lt;course initials&gt;&lt;year&gt;-&lt;sequence&gt;</code>.
+ *
+ * Each prefix, the course initials plus the year, has its own atomic sequence, so threads allocating
+ * numbers never block each other and a number is never handed out twice, even if the student is never
+ * registered. A batch can reserve a whole {@link Block} with a single atomic operation.
+ *
+ * The highest number of each prefix is the high-water mark kept by the persistence. As a listener of the
+ * roster, the allocator also raises the mark for registered students whose number was not allocated here,
+ * such as the imported ones.
+ */
+public class RegistrationAllocator implements RosterListener {
+	private static final int YEAR_DIGITS = 4;
+
+	private static RegistrationAllocator instance;
+
+	/**
+	 * Receives the new high-water mark of a prefix after each reservation.
+	 */
+	@FunctionalInterface
+	public interface ReservationListener {
+		void reserved(String prefix, int highWater);
+	}
+
+	/**
+	 * A range of numbers of a prefix reserved at once. It is meant to be used by a single thread.
+	 */
+	public static class Block {
+		private final String prefix;
+		private int next;
+		private final int end;
+
+		private Block(String prefix, int first, int count) {
+			this.prefix = prefix;
+			this.next = first;
+			this.end = first + count;
+		}
+
+		public int remaining() {
+			return end - next;
+		}
+
+		/**
+		 * @return the next registration number of the block.
+		 * @throws IllegalStateException if the block is exhausted.
+		 */
+		public String next() {
+			if(next == end)
+				throw new IllegalStateException("The block is exhausted");
+
+			return format(prefix, next++);
+		}
+	}
+
+	private final ConcurrentHashMap<String, AtomicInteger> sequences = new ConcurrentHashMap<>();
+	private volatile ReservationListener listener;
+
+	/**
+	 * Gets the allocator shared by the class.
+	 *
+	 * @return an instance of this class.
+	 */
+	public static RegistrationAllocator getInstance() {
+		synchronized (RegistrationAllocator.class) {
+			if (instance == null)
+				instance = new RegistrationAllocator();
+
+			return instance;
+		}
+	}
+
+	/**
+	 * Allocates a registration number for the current year.
+	 *
+	 * @param courseInitials the course initials.
+	 * @return the allocated registration number.
+	 */
+	public String next(String courseInitials) {
+		var prefix = prefix(courseInitials, LocalDate.now().getYear());
+		var value = sequence(prefix).incrementAndGet();
+
+		notifyReserved(prefix, value);
+
+		return format(prefix, value);
+	}
+
+	/**
+	 * Reserves a block of consecutive registration numbers for the current year.
+	 *
+	 * @param courseInitials the course initials.
+	 * @param count the number of registration numbers.
+	 * @return the reserved block.
+	 */
+	public Block reserve(String courseInitials, int count) {
+		if(count <= 0)
+			throw new IllegalArgumentException("count must be positive");
+
+		var prefix = prefix(courseInitials, LocalDate.now().getYear());
+		var last = sequence(prefix).addAndGet(count);
+
+		notifyReserved(prefix, last);
+
+		return new Block(prefix, last - count + 1, count);
+	}
+
+	/**
+	 * Raises the high-water mark of the prefix of a registration number to its sequence. Numbers that do
+	 * not follow the format are ignored.
+	 *
+	 * @param registration the registration number.
+	 */
+	public void observe(String registration) {
+		var dash = registration.lastIndexOf('-');
+		if(dash <= 0)
+			return;
+
+		int value;
+		try {
+			value = Integer.parseInt(registration.substring(dash + 1));
+		} catch (NumberFormatException e) {
+			return;
+		}
+
+		restore(registration.substring(0, dash).toUpperCase(), value);
+	}
+
+	/**
+	 * Raises the high-water mark of a prefix, used when the class is loaded from disk.
+	 *
+	 * @param prefix the course initials plus the year.
+	 * @param highWater the highest number already allocated.
+	 */
+	public void restore(String prefix, int highWater) {
+		sequence(prefix).accumulateAndGet(highWater, Math::max);
+	}
+
+	/**
+	 * @param prefix the course initials plus the year.
+	 * @return the highest number allocated so far, 0 if none.
+	 */
+	public int getHighWater(String prefix) {
+		var sequence = sequences.get(prefix);
+
+		return sequence == null ? 0 : sequence.get();
+	}
+
+	/**
+	 * Visits the high-water mark of each prefix.
+	 *
+	 * @param action receives the prefix and its high-water mark.
+	 */
+	public void forEach(ObjIntConsumer<String> action) {
+		sequences.forEach((prefix, sequence) -> action.accept(prefix, sequence.get()));
+	}
+
+	/**
+	 * @param listener receives the reservations, null to stop notifying.
+	 */
+	public void setListener(ReservationListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void studentRegistered(Student student) {
+		observe(student.getRegistration());
+	}
+
+	private AtomicInteger sequence(String prefix) {
+		var sequence = sequences.get(prefix);
+
+		return sequence != null ? sequence : sequences.computeIfAbsent(prefix, p -> new AtomicInteger());
+	}
+
+	private void notifyReserved(String prefix, int highWater) {
+		var l = listener;
+		if(l != null)
+			l.reserved(prefix, highWater);
+	}
+
+	/**
+	 * Reads the year of a registration number in the format of this allocator.
+	 *
+	 * @param registration the registration number.
+	 * @return the year, the four digits before the first '-', or -1 if there are none.
+	 */
+	public static int yearOf(String registration) {
+		var end = registration.indexOf('-');
+		if(end < YEAR_DIGITS)
+			return -1;
+
+		var year = 0;
+		for(int i = end - YEAR_DIGITS; i < end; i++) {
+			var c = registration.charAt(i);
+			if(c < '0' || c > '9')
+				return -1;
+
+			year = year * 10 + c - '0';
+		}
+
+		return year;
+	}
+
+	private static String prefix(String courseInitials, int year) {
+		return courseInitials.toUpperCase() + year;
+	}
+
+	/**
+	 * Formats a registration number, the sequence has at least two digits.
+	 */
+	private static String format(String prefix, int value) {
+		var registration = new StringBuilder(prefix.length() + 8).append(prefix).append('-');
+
+		if(value < 10)
+			registration.append('0');
+
+		return registration.append(value).toString();
+	}
+}
@@ -0,0 +1,47 @@
+package tsi.too.grade_control.repository;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Receives the changes made to the students of a {@link StudentRepository}.
+ * 
+ * The events are fired after the change is applied, except for {@link #studentRemoved(Student)}, which is
+ * fired while the student still holds its disciplines. The change stays applied whatever the listener does,
+ * so a listener must not throw: it keeps its own failures and reports them to its owner.
+ */
+public interface RosterListener {
+
+	default void studentRegistered(Student student) {}
+
+	/**
+	 * @param student the updated student, already holding the new values.
+	 * @param oldName the name before the update.
+	 * @param oldCourse the course before the update.
+	 */
+	default void studentUpdated(Student student, String oldName, String oldCourse) {}
+
+	/**
+	 * @param student the enrolled student, already holding the new discipline.
+	 * @param discipline the discipline name.
+	 * @param grade the grade.
+	 */
+	default void disciplineAdded(Student student, String discipline, double grade) {}
+
+	/**
+	 * @param student the updated student.
+	 * @param discipline the discipline name.
+	 * @param oldGrade the grade before the update.
+	 * @param newGrade the grade after the update.
+	 */
+	default void gradeUpdated(Student student, String discipline, double oldGrade, double newGrade) {}
+
+	default void studentRemoved(Student student) {}
+
+	/**
+	 * Fired before the changes of a {@link StudentRepository#batch(Runnable)}, so the listener can group the
+	 * events up to the matching {@link #batchFinished()}. Batches are not nested.
+	 */
+	default void batchStarted() {}
+
+	default void batchFinished() {}
+}
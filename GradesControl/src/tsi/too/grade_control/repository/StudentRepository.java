@@ -0,0 +1,131 @@
+package tsi.too.grade_control.repository;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Stores the students of a class and provides lookups by name and registration number.
+ * 
+ * Both lookups ignore case. Changes to the indexed data of a registered student must go through the
+ * repository so the indexes are kept up to date.
+ *
+ * The students are iterated in registration order. The implementations split their
+ * <code>spliterator()</code> by their own ranges, so the roster can be processed in parallel without being
+ * copied.
+ */
+public interface StudentRepository extends Iterable<Student> {
+
+	/**
+	 * Adds a student to the class.
+	 * 
+	 * @param student the student to be registered.
+	 * @return true if success, false if its name or registration number is already registered.
+	 */
+	boolean register(Student student);
+
+	/**
+	 * Removes a student from the class, releasing its id in the <code>GradeTable</code>.
+	 * 
+	 * @param student the student to be removed.
+	 * @return true if success, false if the student was not registered.
+	 */
+	boolean remove(Student student);
+
+	/**
+	 * Updates the name and the course of a registered student.
+	 * 
+	 * @param student the target student.
+	 * @param name the new name.
+	 * @param course the new course.
+	 * @return true if success, false if the student is not registered or the name belongs to another student.
+	 */
+	boolean update(Student student, String name, String course);
+
+	/**
+	 * Enrolls a registered student in another discipline.
+	 * 
+	 * @param student the target student.
+	 * @param discipline the discipline name.
+	 * @param grade the grade.
+	 * @return true if success, false if the student is not registered, is already enrolled in the discipline
+	 * or can not enroll in another discipline.
+	 */
+	default boolean addDiscipline(Student student, String discipline, double grade) {
+		return addDiscipline(student, discipline, grade, System.currentTimeMillis());
+	}
+
+	/**
+	 * Enrolls a registered student in another discipline with a grade set at a given time, such as a grade
+	 * restored from disk.
+	 * 
+	 * @param student the target student.
+	 * @param discipline the discipline name.
+	 * @param grade the grade.
+	 * @param time when the grade was set, in milliseconds since the epoch.
+	 * @return true if success, false if the student is not registered, is already enrolled in the discipline
+	 * or can not enroll in another discipline.
+	 */
+	boolean addDiscipline(Student student, String discipline, double grade, long time);
+
+	/**
+	 * Tries to update the grade of a registered student for a discipline.
+	 * 
+	 * @param student the target student.
+	 * @param discipline the target discipline name.
+	 * @param grade the new grade value.
+	 * @return true if success, false if the student is not registered or not enrolled in the discipline.
+	 */
+	default boolean updateGrade(Student student, String discipline, double grade) {
+		return updateGrade(student, discipline, grade, System.currentTimeMillis());
+	}
+
+	/**
+	 * Tries to update the grade of a registered student for a discipline with a grade set at a given time,
+	 * such as a grade restored from disk.
+	 * 
+	 * @param student the target student.
+	 * @param discipline the target discipline name.
+	 * @param grade the new grade value.
+	 * @param time when the grade was set, in milliseconds since the epoch.
+	 * @return true if success, false if the student is not registered or not enrolled in the discipline.
+	 */
+	boolean updateGrade(Student student, String discipline, double grade, long time);
+
+	/**
+	 * Searches for a student based on their name.
+	 * 
+	 * @param name the target name.
+	 * @return the found student or null.
+	 */
+	Student findByName(String name);
+
+	/**
+	 * Searches for a student based on their registration number.
+	 * 
+	 * @param registration the target registration number.
+	 * @return the found student or null.
+	 */
+	Student findByRegistration(String registration);
+
+	int size();
+
+	/**
+	 * Registers a listener to be notified of every change made through this repository.
+	 * 
+	 * @param listener the listener.
+	 */
+	void addListener(RosterListener listener);
+
+	/**
+	 * Applies several changes as a single unit of work. The changes are made through this repository by
+	 * <code>changes</code>, on the calling thread, between the {@link RosterListener#batchStarted()} and
+	 * {@link RosterListener#batchFinished()} events. Changes made by other threads to names are held until
+	 * the batch ends.
+	 * 
+	 * @param changes makes the changes.
+	 */
+	void batch(Runnable changes);
+
+	default boolean isEmpty() {
+		return size() == 0;
+	}
+}
@@ -0,0 +1,825 @@
+package tsi.too.grade_control.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.util.TextNormalizer;
+
+/**
+ * Searches the students by the start of their registration numbers and by the words of their names,
+ * typed in full, by their start or with a few mistakes, ignoring case, accents and repeated spaces.
+ *
+ * Each distinct word of the names keeps the students holding it. The words are kept sorted, so the words
+ * starting with a text are a range of a <code>TreeMap</code>, and are indexed by their trigrams. An edit
+ * changes at most 4 trigrams, so a word within <code>k</code> edits of a searched word shares at least one of
+ * its <code>4k + 1</code> rarest trigrams and only the words holding them are compared with the edit
+ * distance. A search scans the students of the searched word held by the fewest students, closest words
+ * first, checking the other searched words against the word ids of each student and stopping as soon as
+ * enough students are found, so the similar words are often never looked up.
+ *
+ * The postings of each word are sorted by slot, so the scanned students are first intersected with the
+ * postings of the words matching the next rarest searched word, seeking ahead in them, and only the
+ * students holding both are compared, so the names made of common words are not compared one by one.
+ *
+ * As a listener of the roster the index follows the registrations, renames and removals. Searches may run
+ * in any thread while the class changes.
+ */
+public class StudentSearchIndex implements RosterListener {
+	public static final int DEFAULT_LIMIT = 10;
+
+	/**
+	 * The most students compared by a single search, which bounds its time when the searched words are very
+	 * common.
+	 */
+	private static final int MAX_CANDIDATES = 50_000;
+
+	/**
+	 * The most words whose postings are intersected with the scanned students, a searched word matching more
+	 * of them is checked against each student instead.
+	 */
+	private static final int MAX_FILTER_WORDS = 8;
+	private static final int MIN_COMPACTION = 1024;
+	private static final long GRAM_MIX = 0x9E3779B97F4A7C15L;
+
+	/*
+	 * The cost of a searched word matched by a word of a name: the same word costs nothing, a word starting
+	 * with it costs 1 and each edit costs 2.
+	 */
+	private static final int PREFIX_COST = 1;
+	private static final int EDIT_COST = 2;
+
+	/**
+	 * A student found by a search.
+	 */
+	private static class Match implements Comparable<Match> {
+		final Student student;
+		final String name;
+		final int cost;
+
+		Match(Student student, String name, int cost) {
+			this.student = student;
+			this.name = name;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(Match other) {
+			return cost != other.cost ? Integer.compare(cost, other.cost) : name.compareTo(other.name);
+		}
+	}
+
+	/**
+	 * A growable list of ints kept in ascending order by construction.
+	 */
+	private static class Postings {
+		int[] values = new int[2];
+		int size;
+
+		void add(int value) {
+			if(size > 0 && values[size - 1] == value)
+				return;
+
+			if(size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * The postings of the words matching a searched word, merged with the ascending slots of a scan so the
+	 * slots not holding any of them are skipped without computing their costs.
+	 */
+	private static class SlotFilter {
+		final Postings[] lists;
+		final int[] cursors;
+
+		SlotFilter(List<Postings> lists) {
+			this.lists = lists.toArray(new Postings[0]);
+			cursors = new int[this.lists.length];
+		}
+
+		/**
+		 * Starts over for the postings of another scanned word.
+		 */
+		void rewind() {
+			Arrays.fill(cursors, 0);
+		}
+
+		/**
+		 * @param slot a slot greater than the one checked before since the last rewind.
+		 * @return true if a word of the filter is held by the slot.
+		 */
+		boolean holds(int slot) {
+			for(int i = 0; i < lists.length; i++) {
+				var list = lists[i];
+				var cursor = cursors[i] = seek(list, cursors[i], slot);
+
+				if(cursor < list.size && list.values[cursor] == slot)
+					return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Finds the first value not less than a slot, doubling the steps from the cursor and then searching
+		 * the last step in halves, so a few slots skip long postings in logarithmic time.
+		 *
+		 * @return the position of the value or the size of the postings.
+		 */
+		private static int seek(Postings postings, int from, int slot) {
+			var values = postings.values;
+			var low = from;
+			var high = from;
+
+			for(int step = 1; high < postings.size && values[high] < slot; step <<= 1) {
+				low = high + 1;
+				high += step;
+			}
+
+			high = Math.min(high, postings.size);
+
+			while(low < high) {
+				var middle = (low + high) >>> 1;
+
+				if(values[middle] < slot)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+
+			return low;
+		}
+	}
+
+	/**
+	 * The words of the names matching a searched word, with their costs. The same word and the words
+	 * starting with it are found at once, the similar ones only when needed.
+	 */
+	private class WordMatches {
+		final String word;
+		final boolean prefix;
+		final int maxDistance;
+		final Map<Integer, Integer> costs = new HashMap<>();
+		final Map<Integer, Integer> checked = new HashMap<>();
+		final List<int[]> ordered = new ArrayList<>();
+		boolean similarAdded;
+		boolean truncated;
+		long students;
+		private List<Postings> grams;
+		private List<int[]> similar;
+		private long candidates = -1;
+
+		WordMatches(String word, boolean prefix) {
+			this.word = word;
+			this.prefix = prefix;
+			maxDistance = maxDistance(word);
+		}
+
+		void add(int id, int cost) {
+			var current = costs.get(id);
+			if(current != null && current <= cost)
+				return;
+
+			costs.put(id, cost);
+			ordered.add(new int[] {id, cost});
+			students += wordSlots.get(id).size;
+		}
+
+		/**
+		 * Adds the words a few edits away, after the ones already found, closest first.
+		 */
+		void addSimilar() {
+			similarAdded = true;
+
+			var from = ordered.size();
+			for(var found : similar())
+				add(found[0], found[1]);
+
+			ordered.subList(from, ordered.size()).sort((a, b) -> Integer.compare(a[1], b[1]));
+		}
+
+		/**
+		 * Gets the postings of every word matching, without adding the similar ones to the scanned words.
+		 *
+		 * @return the postings, or null if more than <code>MAX_FILTER_WORDS</code> words match or the words
+		 * starting with the searched one were not all found.
+		 */
+		List<Postings> allPostings() {
+			if(truncated)
+				return null;
+
+			var ids = new HashSet<>(costs.keySet());
+			for(var found : similar())
+				ids.add(found[0]);
+
+			if(ids.size() > MAX_FILTER_WORDS)
+				return null;
+
+			var postings = new ArrayList<Postings>(ids.size());
+			for(var id : ids)
+				postings.add(wordSlots.get(id));
+
+			return postings;
+		}
+
+		/**
+		 * @return the words a few edits away and their costs, computed once.
+		 */
+		private List<int[]> similar() {
+			if(similar == null) {
+				similar = new ArrayList<>();
+
+				if(maxDistance > 0) {
+					for(var id : wordsIn(grams())) {
+						var distance = distance(word, words.get(id), maxDistance);
+						if(distance <= maxDistance)
+							similar.add(new int[] {id, EDIT_COST * distance});
+					}
+				}
+			}
+
+			return similar;
+		}
+
+		/**
+		 * @return the lowest cost a word of a name can have.
+		 */
+		int minCost() {
+			var min = EDIT_COST;
+			for(var found : ordered)
+				min = Math.min(min, found[1]);
+
+			return min;
+		}
+
+		/**
+		 * Compares the words of the names one by one until as many were compared as the words that could be
+		 * similar, then finds all the similar ones at once.
+		 *
+		 * @return the cost of a word of a name, -1 if it does not match.
+		 */
+		int costOf(int id) {
+			var cost = costs.get(id);
+			if(cost == null && !similarAdded && checked.size() >= candidates()) {
+				addSimilar();
+				cost = costs.get(id);
+			}
+
+			if(cost == null)
+				cost = similarAdded ? prefixCost(id) : checked.computeIfAbsent(id, this::check);
+
+			return cost;
+		}
+
+		private long candidates() {
+			if(candidates < 0) {
+				candidates = 0;
+				for(var postings : grams())
+					candidates += postings.size;
+			}
+
+			return candidates;
+		}
+
+		private List<Postings> grams() {
+			if(grams == null)
+				grams = maxDistance == 0 ? List.of() : rarestGrams(word, maxDistance);
+
+			return grams;
+		}
+
+		private int prefixCost(int id) {
+			return prefix && words.get(id).startsWith(word) ? PREFIX_COST : -1;
+		}
+
+		private int check(int id) {
+			var cost = prefixCost(id);
+			if(cost >= 0)
+				return cost;
+
+			var distance = distance(word, words.get(id), maxDistance);
+
+			return distance <= maxDistance ? EDIT_COST * distance : -1;
+		}
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final TreeMap<String, Student> byRegistration = new TreeMap<>();
+
+	/*
+	 * Each indexed name takes a slot holding the ids of its words. A renamed or removed student leaves its
+	 * slot empty, and stale in the postings of its words, until the slots are compacted.
+	 */
+	private final IdentityHashMap<Student, Integer> slotOf = new IdentityHashMap<>();
+	private Student[] slots = new Student[MIN_COMPACTION];
+	private String[] slotNames = new String[MIN_COMPACTION];
+	private int[][] slotWords = new int[MIN_COMPACTION][];
+	private int slotCount;
+	private int emptySlots;
+
+	/*
+	 * The distinct words of the names with the slots holding them, and the words holding each trigram.
+	 */
+	private final TreeMap<String, Integer> vocabulary = new TreeMap<>();
+	private final ArrayList<String> words = new ArrayList<>();
+	private final ArrayList<Postings> wordSlots = new ArrayList<>();
+	private final HashMap<Long, Postings> gramWords = new HashMap<>();
+
+	/**
+	 * Searches the students whose registration numbers start with a text and then the ones holding a word
+	 * close to each searched word. The last searched word also matches the words starting with it, so the
+	 * search can be made while the name is typed. Words of up to 3 letters must match, longer ones allow 1
+	 * edit and the ones longer than 7 letters 2; swapping two letters is a single edit.
+	 *
+	 * @param text the start of the registration number or the searched name.
+	 * @param limit the maximum number of students.
+	 * @return the found students, the registration numbers first and then the names needing the fewest
+	 * changes.
+	 */
+	public List<Student> search(String text, int limit) {
+		var query = TextNormalizer.normalize(text);
+		var found = new LinkedHashSet<Student>();
+
+		if(query.isEmpty() || limit <= 0)
+			return new ArrayList<>(found);
+
+		var matches = new ArrayList<Match>();
+
+		lock.readLock().lock();
+		try {
+			if(query.indexOf(' ') < 0) {
+				for(var s : byRegistration.subMap(query, query + Character.MAX_VALUE).values()) {
+					if(found.size() == limit)
+						break;
+
+					found.add(s);
+				}
+			}
+
+			if(found.size() < limit)
+				searchNames(query.split(" "), limit, matches);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		matches.sort(null);
+		for(int i = 0; i < matches.size() && found.size() < limit; i++)
+			found.add(matches.get(i).student);
+
+		return new ArrayList<>(found);
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return slotOf.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void studentRegistered(Student student) {
+		lock.writeLock().lock();
+		try {
+			add(student);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void studentUpdated(Student student, String oldName, String oldCourse) {
+		lock.writeLock().lock();
+		try {
+			var slot = slotOf.get(student);
+			if(slot != null && !slotNames[slot].equals(TextNormalizer.normalize(student.getName()))) {
+				remove(student);
+				add(student);
+				compactIfNeeded();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void studentRemoved(Student student) {
+		lock.writeLock().lock();
+		try {
+			remove(student);
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Scans the students of the searched word with the fewest of them, adding the ones matching all the
+	 * searched words. The words similar to it are only scanned if the same word and the words starting with
+	 * it do not give enough students; if they hold more students than another searched word, the scan goes
+	 * on from that word instead.
+	 */
+	private void searchNames(String[] queryWords, int limit, List<Match> matches) {
+		var searched = new WordMatches[queryWords.length];
+		for(int i = 0; i < queryWords.length; i++)
+			searched[i] = matchWords(queryWords[i], i == queryWords.length - 1);
+
+		var driver = fewestStudents(searched, -1);
+		var ordered = searched[driver].ordered;
+		ordered.sort((a, b) -> Integer.compare(a[1], b[1]));
+
+		/*
+		 * The students found later cost at least as much as the word being scanned plus the cheapest match of
+		 * the other searched words, so the scan stops once there are enough students costing no more than it.
+		 */
+		var floor = floor(searched, driver);
+		var filter = filterFor(searched, driver);
+		var found = new HashSet<Integer>();
+		var scanned = 0;
+		var settled = 0;
+		var settledCost = -1;
+
+		for(int i = 0; ; i++) {
+			if(i == ordered.size()) {
+				if(searched[driver].similarAdded)
+					return;
+
+				var before = searched[driver].students;
+				searched[driver].addSimilar();
+
+				var other = fewestStudents(searched, driver);
+				if(other >= 0 && searched[other].students < searched[driver].students - before) {
+					driver = other;
+					ordered = searched[driver].ordered;
+					ordered.sort((a, b) -> Integer.compare(a[1], b[1]));
+					floor = floor(searched, driver);
+					filter = filterFor(searched, driver);
+					settledCost = -1;
+					i = -1;
+					continue;
+				}
+
+				if(i == ordered.size())
+					return;
+			}
+
+			var word = ordered.get(i);
+			if(word[1] + floor != settledCost) {
+				settledCost = word[1] + floor;
+				settled = 0;
+				for(var m : matches) {
+					if(m.cost <= settledCost)
+						settled++;
+				}
+			}
+
+			var postings = wordSlots.get(word[0]);
+			if(filter != null)
+				filter.rewind();
+
+			for(int p = 0; p < postings.size; p++) {
+				if(settled >= limit || scanned++ >= MAX_CANDIDATES)
+					return;
+
+				var slot = postings.values[p];
+				if(filter != null && !filter.holds(slot) || slots[slot] == null)
+					continue;
+
+				/* Only the matching slots are remembered, the others are rarely scanned twice */
+				var cost = cost(searched, driver, word[1], slotWords[slot]);
+				if(cost < 0 || !found.add(slot))
+					continue;
+
+				matches.add(new Match(slots[slot], slotNames[slot], cost));
+				if(cost <= settledCost)
+					settled++;
+			}
+		}
+	}
+
+	/**
+	 * Filters the scanned students by the other searched word with the fewest students.
+	 *
+	 * @return the filter, or null if there is no other searched word or it matches too many words.
+	 */
+	private static SlotFilter filterFor(WordMatches[] searched, int driver) {
+		var other = fewestStudents(searched, driver);
+		if(other < 0)
+			return null;
+
+		var postings = searched[other].allPostings();
+
+		return postings == null ? null : new SlotFilter(postings);
+	}
+
+	/**
+	 * @return the searched word with the fewest students, other than <code>skipped</code>, or -1 if there
+	 * is none.
+	 */
+	private static int fewestStudents(WordMatches[] searched, int skipped) {
+		var fewest = -1;
+
+		for(int i = 0; i < searched.length; i++) {
+			if(i != skipped && (fewest < 0 || searched[i].students < searched[fewest].students))
+				fewest = i;
+		}
+
+		return fewest;
+	}
+
+	/**
+	 * @return the lowest cost of the searched words other than <code>driver</code>.
+	 */
+	private static int floor(WordMatches[] searched, int driver) {
+		var floor = 0;
+
+		for(int i = 0; i < searched.length; i++) {
+			if(i != driver)
+				floor += searched[i].minCost();
+		}
+
+		return floor;
+	}
+
+	/**
+	 * Finds the words of the names that are a searched word or, for the last searched word, start with it.
+	 */
+	private WordMatches matchWords(String word, boolean prefix) {
+		var found = new WordMatches(word, prefix);
+
+		var exact = vocabulary.get(word);
+		if(exact != null)
+			found.add(exact, 0);
+
+		if(prefix) {
+			for(var id : vocabulary.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+				found.add(id, PREFIX_COST);
+
+				if(found.students >= MAX_CANDIDATES) {
+					found.truncated = true;
+					break;
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Finds the postings of the rarest trigrams of a word, which hold every word up to
+	 * <code>maxDistance</code> edits away.
+	 */
+	private List<Postings> rarestGrams(String word, int maxDistance) {
+		var grams = new ArrayList<Postings>();
+		var missing = new int[1];
+		forEachGram(word, code -> {
+			var postings = gramWords.get(code);
+			if(postings == null)
+				missing[0]++;
+			else if(!grams.contains(postings))
+				grams.add(postings);
+		});
+
+		grams.sort((a, b) -> Integer.compare(a.size, b.size));
+
+		return grams.subList(0, Math.max(0, Math.min(grams.size(), 4 * maxDistance + 1 - missing[0])));
+	}
+
+	/**
+	 * @return the ids of the words in the postings, sorted and without repetitions.
+	 */
+	private static int[] wordsIn(List<Postings> grams) {
+		var total = 0;
+		for(var postings : grams)
+			total += postings.size;
+
+		var candidates = new int[total];
+		var count = 0;
+		for(var postings : grams) {
+			System.arraycopy(postings.values, 0, candidates, count, postings.size);
+			count += postings.size;
+		}
+
+		Arrays.sort(candidates);
+
+		var distinct = 0;
+		for(int i = 0; i < total; i++) {
+			if(distinct == 0 || candidates[distinct - 1] != candidates[i])
+				candidates[distinct++] = candidates[i];
+		}
+
+		return Arrays.copyOf(candidates, distinct);
+	}
+
+
+	/**
+	 * Sums the costs of the best word of a name for each searched word.
+	 *
+	 * @return the sum or -1 if a searched word matches no word of the name.
+	 */
+	private static int cost(WordMatches[] searched, int known, int knownCost, int[] nameWords) {
+		var total = knownCost;
+
+		for(int i = 0; i < searched.length; i++) {
+			if(i == known)
+				continue;
+
+			var best = -1;
+			for(var id : nameWords) {
+				var cost = searched[i].costOf(id);
+				if(cost >= 0 && (best < 0 || cost < best))
+					best = cost;
+			}
+
+			if(best < 0)
+				return -1;
+
+			total += best;
+		}
+
+		return total;
+	}
+
+	private void add(Student student) {
+		var name = TextNormalizer.normalize(student.getName());
+
+		byRegistration.put(TextNormalizer.normalize(student.getRegistration()), student);
+
+		if(slotCount == slots.length) {
+			slots = Arrays.copyOf(slots, slotCount * 2);
+			slotNames = Arrays.copyOf(slotNames, slotCount * 2);
+			slotWords = Arrays.copyOf(slotWords, slotCount * 2);
+		}
+
+		var slot = slotCount++;
+		slots[slot] = student;
+		slotNames[slot] = name;
+		slotOf.put(student, slot);
+
+		indexWords(slot);
+	}
+
+	private void remove(Student student) {
+		var slot = slotOf.remove(student);
+		if(slot == null)
+			return;
+
+		byRegistration.remove(TextNormalizer.normalize(student.getRegistration()));
+
+		slots[slot] = null;
+		slotNames[slot] = null;
+		slotWords[slot] = null;
+		emptySlots++;
+	}
+
+	/**
+	 * Drops the empty slots, and the words no longer used, once they are the most of the slots.
+	 */
+	private void compactIfNeeded() {
+		if(emptySlots < MIN_COMPACTION || emptySlots < slotCount / 2)
+			return;
+
+		var count = 0;
+		for(int i = 0; i < slotCount; i++) {
+			if(slots[i] != null) {
+				slots[count] = slots[i];
+				slotNames[count] = slotNames[i];
+				slotOf.put(slots[count], count);
+				count++;
+			}
+		}
+
+		Arrays.fill(slots, count, slotCount, null);
+		Arrays.fill(slotNames, count, slotCount, null);
+		Arrays.fill(slotWords, 0, slotCount, null);
+		slotCount = count;
+		emptySlots = 0;
+
+		vocabulary.clear();
+		words.clear();
+		wordSlots.clear();
+		gramWords.clear();
+
+		for(int i = 0; i < slotCount; i++)
+			indexWords(i);
+	}
+
+	private void indexWords(int slot) {
+		var nameWords = slotNames[slot].split(" ");
+		var ids = new int[nameWords.length];
+
+		for(int i = 0; i < nameWords.length; i++) {
+			var word = nameWords[i];
+			var id = vocabulary.get(word);
+
+			if(id == null) {
+				id = words.size();
+				vocabulary.put(word, id);
+				words.add(word);
+				wordSlots.add(new Postings());
+
+				final int wordId = id;
+				forEachGram(word, code -> gramWords.computeIfAbsent(code, c -> new Postings()).add(wordId));
+			}
+
+			wordSlots.get(id).add(slot);
+			ids[i] = id;
+		}
+
+		slotWords[slot] = ids;
+	}
+
+	private static int maxDistance(String word) {
+		return word.length() <= 3 ? 0 : word.length() <= 7 ? 1 : 2;
+	}
+
+	@FunctionalInterface
+	private interface GramConsumer {
+		void accept(long code);
+	}
+
+	/**
+	 * Visits the trigrams of a word, padded by two spaces at the start and one at the end. Each trigram is
+	 * packed in a long and multiplied by an odd constant, which keeps the codes distinct while spreading
+	 * them over the hash of <code>Long</code>.
+	 */
+	private static void forEachGram(String word, GramConsumer consumer) {
+		char a = ' ', b = ' ';
+
+		for(int i = 0; i <= word.length(); i++) {
+			var c = i < word.length() ? word.charAt(i) : ' ';
+
+			consumer.accept(((long) a << 32 | (long) b << 16 | c) * GRAM_MIX);
+			a = b;
+			b = c;
+		}
+	}
+
+	/**
+	 * Computes the edit distance counting the swap of two adjacent letters as a single edit (the optimal
+	 * string alignment distance), giving up as soon as it is over <code>maxDistance</code>. Only the cells
+	 * up to <code>maxDistance</code> away from the diagonal are computed, the others can not lead to a
+	 * smaller distance.
+	 *
+	 * @return the distance, or <code>maxDistance + 1</code> if it is greater.
+	 */
+	static int distance(String a, String b, int maxDistance) {
+		var over = maxDistance + 1;
+		var length = b.length();
+
+		if(Math.abs(a.length() - length) > maxDistance)
+			return over;
+
+		var beforePrevious = new int[length + 1];
+		var previous = new int[length + 1];
+		var current = new int[length + 1];
+
+		for(int j = 0; j <= length; j++)
+			previous[j] = Math.min(j, over);
+
+		for(int i = 1; i <= a.length(); i++) {
+			var from = Math.max(1, i - maxDistance);
+			var to = Math.min(length, i + maxDistance);
+
+			current[from - 1] = from == 1 ? Math.min(i, over) : over;
+			if(to < length)
+				current[to + 1] = over;
+
+			var rowMin = current[from - 1];
+
+			for(int j = from; j <= to; j++) {
+				var cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				var value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+
+				if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+					value = Math.min(value, beforePrevious[j - 2] + 1);
+
+				current[j] = Math.min(value, over);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+
+			if(rowMin > maxDistance)
+				return over;
+
+			var swap = beforePrevious;
+			beforePrevious = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return previous[length];
+	}
+}
@@ -0,0 +1,54 @@
+package tsi.too.grade_control.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * Splits the students of a class by academic year, the year embedded in their registration numbers by
+ * {@link RegistrationAllocator}, so the reports of a year do not need to visit the whole class. The students
+ * whose registration has no year are left out.
+ *
+ * The events may come from several threads, every method is synchronized.
+ */
+public class YearPartition implements RosterListener {
+	/* The students of each year by registration, in registration order */
+	private final TreeMap<Integer, Map<String, Student>> byYear = new TreeMap<>();
+
+	@Override
+	public synchronized void studentRegistered(Student student) {
+		var year = RegistrationAllocator.yearOf(student.getRegistration());
+		if(year >= 0)
+			byYear.computeIfAbsent(year, y -> new LinkedHashMap<>()).put(student.getRegistration(), student);
+	}
+
+	@Override
+	public synchronized void studentRemoved(Student student) {
+		var year = RegistrationAllocator.yearOf(student.getRegistration());
+		var students = byYear.get(year);
+
+		if(students != null && students.remove(student.getRegistration()) != null && students.isEmpty())
+			byYear.remove(year);
+	}
+
+	/**
+	 * @return the years with at least one student, in ascending order.
+	 */
+	public synchronized List<Integer> getYears() {
+		return new ArrayList<>(byYear.keySet());
+	}
+
+	/**
+	 * @param year the year.
+	 * @return a copy of the students of the year, in registration order, empty if there are none.
+	 */
+	public synchronized List<Student> getStudents(int year) {
+		var students = byYear.get(year);
+
+		return students == null ? new ArrayList<>() : new ArrayList<>(students.values());
+	}
+}
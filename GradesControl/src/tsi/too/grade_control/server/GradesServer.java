@@ -0,0 +1,461 @@
+package tsi.too.grade_control.server;
+
+import static tsi.too.grade_control.Constants.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import tsi.too.grade_control.io.Json;
+import tsi.too.grade_control.io.StudentExporter;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.report.ClassStatistics;
+import tsi.too.grade_control.repository.DisciplineIndex;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.repository.StudentSearchIndex;
+import tsi.too.grade_control.service.Command;
+import tsi.too.grade_control.service.Command.QueryGrade;
+import tsi.too.grade_control.service.Command.RegisterStudent;
+import tsi.too.grade_control.service.Command.RemoveStudent;
+import tsi.too.grade_control.service.Command.UpdateGrade;
+import tsi.too.grade_control.service.Command.UpdateStudent;
+import tsi.too.grade_control.service.GradeService;
+import tsi.too.grade_control.service.Result;
+import tsi.too.grade_control.util.Pair;
+
+/**
+ * Serves the operations of the menu as a JSON API on the JDK's built-in <code>HttpServer</code>, so many
+ * users can work at the same time without the dialogs.
+ *
+ * <ul>
+ * <li><code>GET /alunos?nome=&lt;name&gt;</code> or <code>?matricula=&lt;registration&gt;</code> searches a
+ * student;</li>
+ * <li><code>GET /alunos?busca=&lt;text&gt;</code> lists the students whose name or registration starts with
+ * or whose name is similar to the text, the closest first;</li>
+ * <li><code>POST /alunos</code> registers a student, the body holds <code>matricula</code> or
+ * <code>sigla</code>, <code>nome</code>, <code>curso</code> and <code>disciplinas</code>, a list of
+ * <code>nome</code> and <code>nota</code>;</li>
+ * <li><code>GET</code>, <code>PUT</code> and <code>DELETE /alunos/&lt;registration&gt;</code> get, update the
+ * <code>nome</code> and <code>curso</code> of, and remove a student;</li>
+ * <li><code>GET</code> and <code>PUT /alunos/&lt;registration&gt;/notas/&lt;discipline&gt;</code> get and update
+ * the <code>nota</code> of a discipline;</li>
+ * <li><code>GET /relatorio</code> streams the report, in the JSON format of {@link StudentExporter}.</li>
+ * <li><code>GET /disciplinas</code> lists the statistics of every discipline and
+ * <code>GET /disciplinas/&lt;discipline&gt;</code> the statistics and the enrolled students of one.</li>
+ * </ul>
+ *
+ * The requests are run by a {@link GradeService}. Errors are answered with an <code>erro</code> message and the matching status code. Each request runs in
+ * its own virtual thread when the runtime supports them, otherwise in a fixed pool; the repository must be
+ * thread safe.
+ */
+public class GradesServer implements Closeable {
+	public static final int DEFAULT_PORT = 8080;
+
+	private static final int BACKLOG = 4096;
+	private static final String STUDENTS_PATH = "/alunos";
+	private static final String GRADES_SEGMENT = "notas";
+	private static final String REPORT_PATH = "/relatorio";
+	private static final String DISCIPLINES_PATH = "/disciplinas";
+
+	private static final int OK = 200;
+	private static final int CREATED = 201;
+	private static final int NO_CONTENT = 204;
+	private static final int BAD_REQUEST = 400;
+	private static final int NOT_FOUND = 404;
+	private static final int METHOD_NOT_ALLOWED = 405;
+	private static final int CONFLICT = 409;
+	private static final int INTERNAL_ERROR = 500;
+
+	/**
+	 * An error answered to the client.
+	 */
+	private static class RequestException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	private final StudentRepository students;
+	private final ClassStatistics statistics;
+	private final StudentSearchIndex searchIndex;
+	private final DisciplineIndex disciplines;
+	private final GradeService service;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * @param students the class served, it must be thread safe.
+	 * @param statistics the up to date statistics of the class.
+	 * @param searchIndex the search index of the class.
+	 * @param disciplines the discipline index of the class.
+	 * @param address the address to listen to.
+	 * @throws IOException if the address can not be bound.
+	 */
+	public GradesServer(StudentRepository students, ClassStatistics statistics, StudentSearchIndex searchIndex,
+			DisciplineIndex disciplines, InetSocketAddress address) throws IOException {
+		this.students = students;
+		this.statistics = statistics;
+		this.searchIndex = searchIndex;
+		this.disciplines = disciplines;
+		this.service = new GradeService(students, RegistrationAllocator.getInstance());
+		this.executor = newRequestExecutor();
+
+		server = HttpServer.create(address, BACKLOG);
+		server.setExecutor(executor);
+		server.createContext(STUDENTS_PATH, exchange -> handle(exchange, this::students));
+		server.createContext(REPORT_PATH, exchange -> handle(exchange, this::report));
+		server.createContext(DISCIPLINES_PATH, exchange -> handle(exchange, this::disciplines));
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Stops accepting requests, waiting up to a second for the ones being handled.
+	 */
+	@Override
+	public void close() {
+		server.stop(1);
+		executor.shutdown();
+	}
+
+	/**
+	 * Creates an executor running each task in a new virtual thread if the runtime has them. They are looked
+	 * up by reflection because the project targets a release without them.
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+		}
+	}
+
+	@FunctionalInterface
+	private interface Handler {
+		void handle(HttpExchange exchange) throws IOException;
+	}
+
+	private void handle(HttpExchange exchange, Handler handler) {
+		try {
+			try {
+				handler.handle(exchange);
+			} catch (RequestException e) {
+				sendError(exchange, e.status, e.getMessage());
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, BAD_REQUEST, e.getMessage());
+			} catch (RuntimeException e) {
+				sendError(exchange, INTERNAL_ERROR, String.valueOf(e));
+			}
+		} catch (IOException e) {
+			// The client went away, nothing else to do
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void students(HttpExchange exchange) throws IOException {
+		var segments = segments(exchange, STUDENTS_PATH);
+		var method = exchange.getRequestMethod();
+
+		if(segments.length == 0) {
+			if("GET".equals(method))
+				search(exchange);
+			else if("POST".equals(method))
+				register(exchange);
+			else
+				throw new RequestException(METHOD_NOT_ALLOWED, method);
+
+			return;
+		}
+
+		var student = students.findByRegistration(segments[0]);
+		if(student == null)
+			throw new RequestException(NOT_FOUND, STUDENT_NOT_FOUND);
+
+		if(segments.length == 1) {
+			if("GET".equals(method))
+				sendStudent(exchange, OK, student);
+			else if("PUT".equals(method))
+				update(exchange, student);
+			else if("DELETE".equals(method))
+				remove(exchange, student);
+			else
+				throw new RequestException(METHOD_NOT_ALLOWED, method);
+
+			return;
+		}
+
+		if(segments.length != 3 || !GRADES_SEGMENT.equals(segments[1]))
+			throw new RequestException(NOT_FOUND, exchange.getRequestURI().getPath());
+
+		if("GET".equals(method))
+			sendGrade(exchange, student, segments[2]);
+		else if("PUT".equals(method))
+			updateGrade(exchange, student, segments[2]);
+		else
+			throw new RequestException(METHOD_NOT_ALLOWED, method);
+	}
+
+	private void search(HttpExchange exchange) throws IOException {
+		var query = query(exchange);
+		Student student;
+
+		if(query.containsKey("busca")) {
+			var out = new StringBuilder("{\"alunos\":[");
+			var found = searchIndex.search(query.get("busca"), StudentSearchIndex.DEFAULT_LIMIT);
+
+			for(int i = 0; i < found.size(); i++)
+				Json.appendStudent(out.append(i == 0 ? "" : ","), found.get(i), found.get(i).isAproved());
+
+			send(exchange, OK, out.append("]}"));
+			return;
+		}
+
+		if(query.containsKey("matricula"))
+			student = students.findByRegistration(query.get("matricula"));
+		else if(query.containsKey("nome"))
+			student = students.findByName(query.get("nome"));
+		else
+			throw new RequestException(BAD_REQUEST, NAME_OR_REGISTRATION_REQUIRED);
+
+		if(student == null)
+			throw new RequestException(NOT_FOUND, STUDENT_NOT_FOUND);
+
+		sendStudent(exchange, OK, student);
+	}
+
+	private void register(HttpExchange exchange) throws IOException {
+		var body = readObject(exchange);
+		var disciplines = body.get("disciplinas");
+
+		if(disciplines != null && !(disciplines instanceof List))
+			throw new RequestException(BAD_REQUEST, INVALID_REQUEST_BODY);
+
+		var list = new ArrayList<Pair<String, Double>>();
+		if(disciplines != null) {
+			for(var d : (List<?>) disciplines) {
+				if(!(d instanceof Map))
+					throw new RequestException(BAD_REQUEST, INVALID_REQUEST_BODY);
+
+				list.add(new Pair<>(string((Map<?, ?>) d, "nome"), grade((Map<?, ?>) d)));
+			}
+		}
+
+		var result = execute(new RegisterStudent(string(body, "matricula"), string(body, "sigla"),
+				string(body, "nome"), string(body, "curso"), list));
+
+		sendStudent(exchange, CREATED, result.getStudent());
+	}
+
+	private void update(HttpExchange exchange, Student student) throws IOException {
+		var body = readObject(exchange);
+		var result = execute(new UpdateStudent(student.getRegistration(), string(body, "nome"), string(body, "curso")));
+
+		sendStudent(exchange, OK, result.getStudent());
+	}
+
+	private void remove(HttpExchange exchange, Student student) throws IOException {
+		execute(new RemoveStudent(student.getRegistration()));
+
+		exchange.sendResponseHeaders(NO_CONTENT, -1);
+	}
+
+	private void sendGrade(HttpExchange exchange, Student student, String discipline) throws IOException {
+		sendGrade(exchange, discipline, execute(new QueryGrade(student.getRegistration(), discipline)));
+	}
+
+	private void updateGrade(HttpExchange exchange, Student student, String discipline) throws IOException {
+		var grade = grade(readObject(exchange));
+
+		sendGrade(exchange, discipline, execute(new UpdateGrade(student.getRegistration(), discipline, grade)));
+	}
+
+	private void sendGrade(HttpExchange exchange, String discipline, Result result) throws IOException {
+		var out = new StringBuilder("{\"disciplina\":");
+		Json.appendString(out, discipline).append(",\"nota\":").append((float) result.getGrade()).append('}');
+
+		send(exchange, OK, out);
+	}
+
+	/**
+	 * Runs a command, throwing its error with the matching status code.
+	 */
+	private Result execute(Command command) {
+		var result = service.execute(command);
+
+		switch(result.getStatus()) {
+		case OK:
+			return result;
+		case NOT_FOUND:
+			throw new RequestException(NOT_FOUND, result.getMessage());
+		case CONFLICT:
+			throw new RequestException(CONFLICT, result.getMessage());
+		default:
+			throw new RequestException(BAD_REQUEST, result.getMessage());
+		}
+	}
+
+	private void report(HttpExchange exchange) throws IOException {
+		if(!"GET".equals(exchange.getRequestMethod()))
+			throw new RequestException(METHOD_NOT_ALLOWED, exchange.getRequestMethod());
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(OK, 0);
+
+		try(var out = exchange.getResponseBody()) {
+			new StudentExporter(students, statistics).exportJson(Channels.newChannel(out));
+		}
+	}
+
+	private void disciplines(HttpExchange exchange) throws IOException {
+		if(!"GET".equals(exchange.getRequestMethod()))
+			throw new RequestException(METHOD_NOT_ALLOWED, exchange.getRequestMethod());
+
+		var segments = segments(exchange, DISCIPLINES_PATH);
+		if(segments.length > 1)
+			throw new RequestException(NOT_FOUND, exchange.getRequestURI().getPath());
+
+		if(segments.length == 0) {
+			var out = new StringBuilder("{\"disciplinas\":[");
+			var reports = disciplines.getReports();
+
+			for(int i = 0; i < reports.size(); i++)
+				Json.appendDisciplineReport(out.append(i == 0 ? "" : ","), reports.get(i));
+
+			send(exchange, OK, out.append("]}"));
+			return;
+		}
+
+		var report = disciplines.getReport(segments[0]);
+		if(report == null)
+			throw new RequestException(NOT_FOUND, DISCIPLINE_NOTE_FOUND);
+
+		var out = Json.appendDisciplineReport(new StringBuilder("{\"relatorio\":"), report).append(",\"alunos\":[");
+		var enrolled = disciplines.getEnrollments(segments[0]);
+
+		for(int i = 0; i < enrolled.size(); i++) {
+			var s = enrolled.get(i).getFirst();
+
+			Json.appendString(out.append(i == 0 ? "{\"matricula\":" : ",{\"matricula\":"), s.getRegistration())
+				.append(",\"nome\":");
+			Json.appendString(out, s.getName()).append(",\"nota\":")
+				.append(enrolled.get(i).getSecond().floatValue()).append('}');
+		}
+
+		send(exchange, OK, out.append("]}"));
+	}
+
+	private void sendStudent(HttpExchange exchange, int status, Student student) throws IOException {
+		send(exchange, status, Json.appendStudent(new StringBuilder(), student, student.isAproved()));
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, Json.appendString(new StringBuilder("{\"erro\":"), String.valueOf(message)).append('}'));
+	}
+
+	private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+		var bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a request body holding a JSON object.
+	 */
+	private static Map<?, ?> readObject(HttpExchange exchange) throws IOException {
+		var text = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+		var value = Json.parse(text);
+
+		if(!(value instanceof Map))
+			throw new RequestException(BAD_REQUEST, INVALID_REQUEST_BODY);
+
+		return (Map<?, ?>) value;
+	}
+
+	/**
+	 * Gets the decoded path segments after a context path.
+	 */
+	private static String[] segments(HttpExchange exchange, String context) {
+		var path = exchange.getRequestURI().getRawPath().substring(context.length());
+
+		while(path.startsWith("/"))
+			path = path.substring(1);
+
+		if(path.isEmpty())
+			return new String[0];
+
+		var segments = path.split("/");
+		for(int i = 0; i < segments.length; i++)
+			segments[i] = URLDecoder.decode(segments[i], StandardCharsets.UTF_8);
+
+		return segments;
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) {
+		var query = new HashMap<String, String>();
+		var raw = exchange.getRequestURI().getRawQuery();
+
+		if(raw == null)
+			return query;
+
+		for(var pair : raw.split("&")) {
+			var equals = pair.indexOf('=');
+			if(equals > 0)
+				query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+		}
+
+		return query;
+	}
+
+	private static String string(Map<?, ?> object, String key) {
+		var value = object.get(key);
+
+		if(value != null && !(value instanceof String))
+			throw new RequestException(BAD_REQUEST, INVALID_REQUEST_BODY);
+
+		return (String) value;
+	}
+
+	/**
+	 * Gets the <code>nota</code> of an object, its range is checked by the service.
+	 */
+	private static Double grade(Map<?, ?> object) {
+		var value = object.get("nota");
+
+		if(!(value instanceof Double))
+			throw new RequestException(BAD_REQUEST, GRADE_MUST_BE_BETWEEN_ZERO_AND_TEN);
+
+		return (Double) value;
+	}
+}
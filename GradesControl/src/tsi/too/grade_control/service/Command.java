@@ -0,0 +1,238 @@
+package tsi.too.grade_control.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import tsi.too.grade_control.util.Pair;
+
+/**
+ * An operation run by the {@link GradeService}. Commands only hold the input, so they can be built by any
+ * front end and queued in batches; the students are identified by their registration number, except by the
+ * queries, which also take the name.
+ */
+public abstract class Command {
+
+	Command() {}
+
+	abstract Result apply(GradeService service);
+
+	/**
+	 * Registers a student enrolled in at least one discipline.
+	 */
+	public static final class RegisterStudent extends Command {
+		private final String registration;
+		private final String courseInitials;
+		private final String name;
+		private final String course;
+		private final List<Pair<String, Double>> disciplines;
+
+		/**
+		 * @param registration the registration number, or null to allocate one from the course initials.
+		 * @param courseInitials the course initials, only used if there is no registration number.
+		 * @param name the student name.
+		 * @param course the course name.
+		 * @param disciplines the discipline names and grades.
+		 */
+		public RegisterStudent(String registration, String courseInitials, String name, String course,
+				List<Pair<String, Double>> disciplines) {
+			this.registration = registration;
+			this.courseInitials = courseInitials;
+			this.name = name;
+			this.course = course;
+			this.disciplines = Collections.unmodifiableList(new ArrayList<>(disciplines));
+		}
+
+		public String getRegistration() {
+			return registration;
+		}
+
+		public String getCourseInitials() {
+			return courseInitials;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getCourse() {
+			return course;
+		}
+
+		public List<Pair<String, Double>> getDisciplines() {
+			return disciplines;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.register(this);
+		}
+	}
+
+	/**
+	 * Changes the name and the course of a student.
+	 */
+	public static final class UpdateStudent extends Command {
+		private final String registration;
+		private final String name;
+		private final String course;
+
+		/**
+		 * @param registration the student registration number.
+		 * @param name the new name, null to keep the current one.
+		 * @param course the new course, null to keep the current one.
+		 */
+		public UpdateStudent(String registration, String name, String course) {
+			this.registration = registration;
+			this.name = name;
+			this.course = course;
+		}
+
+		public String getRegistration() {
+			return registration;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getCourse() {
+			return course;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.update(this);
+		}
+	}
+
+	/**
+	 * Enrolls a student in another discipline.
+	 */
+	public static final class AddDiscipline extends Command {
+		private final String registration;
+		private final String discipline;
+		private final double grade;
+
+		public AddDiscipline(String registration, String discipline, double grade) {
+			this.registration = registration;
+			this.discipline = discipline;
+			this.grade = grade;
+		}
+
+		public String getRegistration() {
+			return registration;
+		}
+
+		public String getDiscipline() {
+			return discipline;
+		}
+
+		public double getGrade() {
+			return grade;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.addDiscipline(this);
+		}
+	}
+
+	/**
+	 * Changes the grade of a discipline the student is enrolled in.
+	 */
+	public static final class UpdateGrade extends Command {
+		private final String registration;
+		private final String discipline;
+		private final double grade;
+
+		public UpdateGrade(String registration, String discipline, double grade) {
+			this.registration = registration;
+			this.discipline = discipline;
+			this.grade = grade;
+		}
+
+		public String getRegistration() {
+			return registration;
+		}
+
+		public String getDiscipline() {
+			return discipline;
+		}
+
+		public double getGrade() {
+			return grade;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.updateGrade(this);
+		}
+	}
+
+	/**
+	 * Removes a student from the class.
+	 */
+	public static final class RemoveStudent extends Command {
+		private final String registration;
+
+		public RemoveStudent(String registration) {
+			this.registration = registration;
+		}
+
+		public String getRegistration() {
+			return registration;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.remove(this);
+		}
+	}
+
+	/**
+	 * Searches a student by its name or, if there is no such name, by its registration number.
+	 */
+	public static final class FindStudent extends Command {
+		private final String nameOrRegistration;
+
+		public FindStudent(String nameOrRegistration) {
+			this.nameOrRegistration = nameOrRegistration;
+		}
+
+		public String getNameOrRegistration() {
+			return nameOrRegistration;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.find(this);
+		}
+	}
+
+	/**
+	 * Gets the grade of a student, searched as by {@link FindStudent}, in a discipline.
+	 */
+	public static final class QueryGrade extends Command {
+		private final String nameOrRegistration;
+		private final String discipline;
+
+		public QueryGrade(String nameOrRegistration, String discipline) {
+			this.nameOrRegistration = nameOrRegistration;
+			this.discipline = discipline;
+		}
+
+		public String getNameOrRegistration() {
+			return nameOrRegistration;
+		}
+
+		public String getDiscipline() {
+			return discipline;
+		}
+
+		@Override
+		Result apply(GradeService service) {
+			return service.queryGrade(this);
+		}
+	}
+}
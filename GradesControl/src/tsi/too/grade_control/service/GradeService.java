@@ -0,0 +1,329 @@
+package tsi.too.grade_control.service;
+
+import static tsi.too.grade_control.Constants.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tsi.too.grade_control.model.Discipline;
+import tsi.too.grade_control.model.Student;
+import tsi.too.grade_control.repository.RegistrationAllocator;
+import tsi.too.grade_control.repository.StudentRepository;
+import tsi.too.grade_control.service.Command.AddDiscipline;
+import tsi.too.grade_control.service.Command.FindStudent;
+import tsi.too.grade_control.service.Command.QueryGrade;
+import tsi.too.grade_control.service.Command.RegisterStudent;
+import tsi.too.grade_control.service.Command.RemoveStudent;
+import tsi.too.grade_control.service.Command.UpdateGrade;
+import tsi.too.grade_control.service.Command.UpdateStudent;
+import tsi.too.grade_control.util.SymbolTable;
+
+/**
+ * Validates and applies the {@link Command}s on the class, with no user interface. The dialogs and the
+ * HTTP server are front ends of this service and the rules of the class are checked here only.
+ *
+ * Names, courses and discipline names are stripped of surrounding spaces and can not be longer than
+ * <code>Student.MAX_TEXT_LENGTH</code>, checked before the class is changed. A command never throws for
+ * invalid input, its {@link Result} tells why it was rejected.
+ */
+public class GradeService {
+	private final StudentRepository students;
+	private final RegistrationAllocator registrations;
+
+	/**
+	 * @param students the class.
+	 * @param registrations allocates the registration numbers of the new students.
+	 */
+	public GradeService(StudentRepository students, RegistrationAllocator registrations) {
+		this.students = students;
+		this.registrations = registrations;
+	}
+
+	public Result execute(Command command) {
+		return command.apply(this);
+	}
+
+	/**
+	 * Validates and applies several commands in order, as a single {@link StudentRepository#batch(Runnable)}.
+	 * Each command sees the changes of the previous ones and a rejected command does not stop the others.
+	 *
+	 * @param commands the commands.
+	 * @return the result of each command, in the same order.
+	 */
+	public List<Result> executeBatch(List<? extends Command> commands) {
+		var results = new ArrayList<Result>(commands.size());
+
+		students.batch(() -> {
+			for(var command : commands)
+				results.add(command.apply(this));
+		});
+
+		return results;
+	}
+
+	/**
+	 * Checks a name for a student.
+	 *
+	 * @param name the name.
+	 * @param owner the student being updated, null for a new one.
+	 * @return why the name can not be used or null if it can.
+	 */
+	public String checkName(String name, Student owner) {
+		if(isBlank(name))
+			return NAME_CANNOT_BE_BLANK;
+
+		var message = checkLength(NAME, name);
+		if(message != null)
+			return message;
+
+		return isTaken(name.strip(), owner) ? NAME_ALREADY_REGISTERED : null;
+	}
+
+	/**
+	 * @return why the course can not be used or null if it can.
+	 */
+	public static String checkCourse(String course) {
+		return isBlank(course) ? COURSE_CANNOT_BE_BLANK : checkLength(COURSE, course);
+	}
+
+	/**
+	 * Checks that a text fits in the class once stripped.
+	 *
+	 * @param field the name of the field, shown in the message.
+	 * @param text the text, not null.
+	 * @return why the text is too long or null if it fits.
+	 */
+	public static String checkLength(String field, String text) {
+		return text.strip().length() > Student.MAX_TEXT_LENGTH
+				? String.format(TEXT_TOO_LONG, field, Student.MAX_TEXT_LENGTH) : null;
+	}
+
+	/**
+	 * @return why the course initials can not be used or null if they can.
+	 */
+	public static String checkCourseInitials(String courseInitials) {
+		if(courseInitials == null)
+			return INVALID_COURSE_INITIALS;
+
+		var length = courseInitials.strip().length();
+
+		return length < Student.MIN_COURSE_INITIALS_LENGTH || length > Student.MAX_COURSE_INITIALS_LENGTH
+				? INVALID_COURSE_INITIALS : null;
+	}
+
+	/**
+	 * Checks a discipline to enroll a student in.
+	 *
+	 * @param student the student, null for a student being registered.
+	 * @param discipline the discipline name.
+	 * @return why the student can not be enrolled or null if it can.
+	 */
+	public static String checkDiscipline(Student student, String discipline) {
+		if(isBlank(discipline))
+			return String.format("%s: %s", DISCIPLINE_NAME, THIS_FIELD_CANNOT_BE_EMPTY);
+
+		var message = checkLength(DISCIPLINE_NAME, discipline);
+		if(message != null)
+			return message;
+
+		return student != null && student.isEnrolled(discipline.strip()) ? STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE
+				: null;
+	}
+
+	/**
+	 * @return why the grade can not be used or null if it can.
+	 */
+	public static String checkGrade(Double grade) {
+		return grade != null && grade >= Discipline.MIN_GRADE && grade <= Discipline.MAX_GRADE ? null
+				: GRADE_MUST_BE_BETWEEN_ZERO_AND_TEN;
+	}
+
+	Result register(RegisterStudent command) {
+		var registration = command.getRegistration();
+		var hasRegistration = !isBlank(registration);
+		String message;
+
+		if(!hasRegistration && (message = checkCourseInitials(command.getCourseInitials())) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		if(hasRegistration && (message = checkLength(REGISTRATION_NUMBER, registration)) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		if(hasRegistration && students.findByRegistration(registration.strip()) != null)
+			return Result.error(Result.Status.CONFLICT, REGISTRATION_ALREADY_REGISTERED);
+
+		if(isBlank(command.getName()))
+			return Result.error(Result.Status.INVALID, NAME_CANNOT_BE_BLANK);
+
+		if((message = checkLength(NAME, command.getName())) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		if((message = checkCourse(command.getCourse())) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		var name = command.getName().strip();
+		if(isTaken(name, null))
+			return Result.error(Result.Status.CONFLICT, NAME_ALREADY_REGISTERED);
+
+		var disciplines = command.getDisciplines();
+		if(disciplines.isEmpty())
+			return Result.error(Result.Status.INVALID, AT_LEAST_ONE_DISCIPLINE_REQUIRED);
+
+		if(disciplines.size() > Student.MAX_SUBSCRIPTION_ALLWOED)
+			return Result.error(Result.Status.INVALID, MAX_DISCIPLINES_REACHED);
+
+		for(int i = 0; i < disciplines.size(); i++) {
+			var discipline = disciplines.get(i).getFirst();
+
+			if((message = checkDiscipline(null, discipline)) != null
+					|| (message = checkGrade(disciplines.get(i).getSecond())) != null)
+				return Result.error(Result.Status.INVALID, message);
+
+			for(int j = 0; j < i; j++) {
+				if(SymbolTable.equivalent(disciplines.get(j).getFirst(), discipline))
+					return Result.error(Result.Status.INVALID, STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE);
+			}
+		}
+
+		registration = hasRegistration ? registration.strip() : registrations.next(command.getCourseInitials().strip());
+
+		var student = new Student(registration, name, command.getCourse().strip());
+		for(var discipline : disciplines)
+			student.addDiscipline(discipline.getFirst().strip(), discipline.getSecond());
+
+		if(!students.register(student)) {
+			student.release();
+
+			return students.findByRegistration(registration) != null
+					? Result.error(Result.Status.CONFLICT, REGISTRATION_ALREADY_REGISTERED)
+					: Result.error(Result.Status.CONFLICT, NAME_ALREADY_REGISTERED);
+		}
+
+		return Result.ok(student);
+	}
+
+	Result update(UpdateStudent command) {
+		var student = findByRegistration(command.getRegistration());
+		if(student == null)
+			return Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		var name = command.getName() == null ? student.getName() : command.getName();
+		var course = command.getCourse() == null ? student.getCourse() : command.getCourse();
+		String message;
+
+		if(isBlank(name))
+			return Result.error(Result.Status.INVALID, NAME_CANNOT_BE_BLANK);
+
+		if((message = checkLength(NAME, name)) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		if((message = checkCourse(course)) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		if(isTaken(name.strip(), student))
+			return Result.error(Result.Status.CONFLICT, NAME_ALREADY_REGISTERED);
+
+		if(!students.update(student, name.strip(), course.strip()))
+			return isRegistered(student) ? Result.error(Result.Status.CONFLICT, NAME_ALREADY_REGISTERED)
+					: Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		return Result.ok(student);
+	}
+
+	Result addDiscipline(AddDiscipline command) {
+		var student = findByRegistration(command.getRegistration());
+		if(student == null)
+			return Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		String message;
+		if((message = checkDiscipline(student, command.getDiscipline())) != null
+				|| (message = checkGrade(command.getGrade())) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		if(!student.canEnrollInAnotherDiscipline())
+			return Result.error(Result.Status.INVALID, MAX_DISCIPLINES_REACHED);
+
+		var discipline = command.getDiscipline().strip();
+		if(!students.addDiscipline(student, discipline, command.getGrade()))
+			return isRegistered(student) ? Result.error(Result.Status.INVALID, STUDENT_ALREADY_ENROLLED_IN_THIS_DISCIPLINE)
+					: Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		return Result.ok(student, student.gradeOf(discipline));
+	}
+
+	Result updateGrade(UpdateGrade command) {
+		var student = findByRegistration(command.getRegistration());
+		if(student == null)
+			return Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		String message;
+		if((message = checkGrade(command.getGrade())) != null)
+			return Result.error(Result.Status.INVALID, message);
+
+		var discipline = command.getDiscipline() == null ? "" : command.getDiscipline().strip();
+		if(!students.updateGrade(student, discipline, command.getGrade()))
+			return Result.error(Result.Status.NOT_FOUND, isRegistered(student) ? STUDENT_NOT_ENROLLED_IN_THIS_DISCIPLINE
+					: STUDENT_NOT_FOUND);
+
+		return Result.ok(student, student.gradeOf(discipline));
+	}
+
+	Result remove(RemoveStudent command) {
+		var student = findByRegistration(command.getRegistration());
+
+		if(student == null || !students.remove(student))
+			return Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		return Result.ok(student);
+	}
+
+	Result find(FindStudent command) {
+		if(isBlank(command.getNameOrRegistration()))
+			return Result.error(Result.Status.INVALID, NAME_OR_REGISTRATION_REQUIRED);
+
+		var student = findByNameOrRegistration(command.getNameOrRegistration());
+
+		return student == null ? Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND) : Result.ok(student);
+	}
+
+	Result queryGrade(QueryGrade command) {
+		if(isBlank(command.getNameOrRegistration()))
+			return Result.error(Result.Status.INVALID, NAME_OR_REGISTRATION_REQUIRED);
+
+		var student = findByNameOrRegistration(command.getNameOrRegistration());
+		if(student == null)
+			return Result.error(Result.Status.NOT_FOUND, STUDENT_NOT_FOUND);
+
+		var grade = isBlank(command.getDiscipline()) ? Double.NaN : student.gradeOf(command.getDiscipline().strip());
+		if(Double.isNaN(grade))
+			return Result.error(Result.Status.NOT_FOUND,
+					String.format(THE_STUDENT_IS_NOT_ENROLLED_ON_THIS_SUBJECT, student.getName()));
+
+		return Result.ok(student, grade);
+	}
+
+	private Student findByRegistration(String registration) {
+		return isBlank(registration) ? null : students.findByRegistration(registration.strip());
+	}
+
+	private Student findByNameOrRegistration(String nameOrRegistration) {
+		var key = nameOrRegistration.strip();
+		var student = students.findByName(key);
+
+		return student != null ? student : students.findByRegistration(key);
+	}
+
+	private boolean isTaken(String name, Student owner) {
+		var current = students.findByName(name);
+
+		return current != null && current != owner;
+	}
+
+	private boolean isRegistered(Student student) {
+		return students.findByRegistration(student.getRegistration()) == student;
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.isBlank();
+	}
+}
@@ -0,0 +1,78 @@
+package tsi.too.grade_control.service;
+
+import tsi.too.grade_control.model.Student;
+
+/**
+ * The outcome of a {@link Command}: the student it applied to and, for the grade commands, the grade, or
+ * the message telling why it was rejected.
+ */
+public class Result {
+
+	public enum Status {
+		OK,
+		/** The command breaks a validation rule. */
+		INVALID,
+		/** The student or the enrollment does not exist. */
+		NOT_FOUND,
+		/** The name or the registration number belongs to another student. */
+		CONFLICT
+	}
+
+	private final Status status;
+	private final String message;
+	private final Student student;
+	private final double grade;
+
+	private Result(Status status, String message, Student student, double grade) {
+		this.status = status;
+		this.message = message;
+		this.student = student;
+		this.grade = grade;
+	}
+
+	static Result ok(Student student) {
+		return new Result(Status.OK, null, student, Double.NaN);
+	}
+
+	static Result ok(Student student, double grade) {
+		return new Result(Status.OK, null, student, grade);
+	}
+
+	static Result error(Status status, String message) {
+		return new Result(status, message, null, Double.NaN);
+	}
+
+	public boolean isSuccess() {
+		return status == Status.OK;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return why the command was rejected, null on success.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return the student the command applied to, null on failure.
+	 */
+	public Student getStudent() {
+		return student;
+	}
+
+	/**
+	 * @return the grade of the discipline for the grade commands, <code>NaN</code> for the others.
+	 */
+	public double getGrade() {
+		return grade;
+	}
+
+	@Override
+	public String toString() {
+		return isSuccess() ? status + " " + student.getRegistration() : status + " " + message;
+	}
+}
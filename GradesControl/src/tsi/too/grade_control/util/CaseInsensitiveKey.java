@@ -0,0 +1,76 @@
+package tsi.too.grade_control.util;
+
+/**
+ * Wraps a <code>String</code> so it can be used as a key of the standard maps with the same rules of
+ * <code>String.equalsIgnoreCase</code>, without creating a lower case copy.
+ *
+ * The hash is computed over the folded chars of the value. Lookups can use the key of the calling thread,
+ * given by {@link #lookup(String)}, so searching a map does not allocate.
+ */
+public final class CaseInsensitiveKey {
+	/* The key reused by the lookups of each thread, never stored in a map */
+	private static final ThreadLocal<CaseInsensitiveKey> LOOKUPS = ThreadLocal.withInitial(CaseInsensitiveKey::new);
+
+	private String value;
+	private int hash;
+
+	public CaseInsensitiveKey(String value) {
+		set(value);
+	}
+
+	private CaseInsensitiveKey() {
+	}
+
+	/**
+	 * Gets the key of the calling thread set to a value, to search a map. The key changes on the next call
+	 * made by the thread, so it must not be kept nor stored in a map.
+	 *
+	 * @param value the searched value.
+	 * @return the key of the thread.
+	 */
+	public static CaseInsensitiveKey lookup(String value) {
+		var key = LOOKUPS.get();
+		key.set(value);
+
+		return key;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+
+		return obj instanceof CaseInsensitiveKey && ((CaseInsensitiveKey) obj).hash == hash
+				&& ((CaseInsensitiveKey) obj).value.equalsIgnoreCase(value);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+	private void set(String value) {
+		this.value = value;
+		this.hash = hash(value);
+	}
+
+	/**
+	 * Computes a hash consistent with <code>String.equalsIgnoreCase</code>.
+	 */
+	private static int hash(String value) {
+		int h = 0;
+		for(int i = 0; i < value.length(); i++)
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,127 @@
+package tsi.too.grade_control.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns names into compact integer ids, so names repeated by many students are stored once and compared
+ * as ints.
+ *
+ * Names are equivalent when their {@link TextNormalizer} forms are equal, so "Matemática", "matematica"
+ * and " MATEMATICA " get the same id. The name kept for an id is the spelling it was first interned with.
+ * The spellings already resolved are cached, so looking up a name as it is stored does not normalize it
+ * again.
+ *
+ * Lookups do not block, interning new names is synchronized.
+ */
+public class SymbolTable {
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The most spellings cached per symbol, so lookups of endless variants of a name do not grow the cache.
+	 */
+	private static final int SPELLINGS_PER_SYMBOL = 8;
+
+	private final ConcurrentHashMap<String, Integer> bySpelling = new ConcurrentHashMap<>();
+	private final HashMap<String, Integer> byNormalForm = new HashMap<>();
+	private volatile String[] names = new String[INITIAL_CAPACITY];
+	private volatile int size;
+
+	/**
+	 * Checks if two names would be interned with the same id.
+	 *
+	 * @param a a name.
+	 * @param b another name.
+	 * @return true if the names are equivalent, false otherwise.
+	 */
+	public static boolean equivalent(String a, String b) {
+		return TextNormalizer.normalize(a).equals(TextNormalizer.normalize(b));
+	}
+
+	/**
+	 * Gets the id of a name, interning it if it is new.
+	 *
+	 * @param name the name.
+	 * @return the id of the name.
+	 */
+	public int intern(String name) {
+		var id = bySpelling.get(name);
+		if(id != null)
+			return id;
+
+		var normalForm = TextNormalizer.normalize(name);
+
+		synchronized (this) {
+			id = byNormalForm.get(normalForm);
+
+			if(id == null) {
+				id = size;
+
+				if(id == names.length)
+					names = Arrays.copyOf(names, id << 1);
+
+				names[id] = name;
+				byNormalForm.put(normalForm, id);
+				size = id + 1;
+			}
+		}
+
+		cache(name, id);
+
+		return id;
+	}
+
+	/**
+	 * Gets the id of a name without interning it.
+	 *
+	 * @param name the name.
+	 * @return the id of the name or <code>NONE</code> if it was never interned.
+	 */
+	public int idOf(String name) {
+		if(name == null)
+			return NONE;
+
+		var id = bySpelling.get(name);
+		if(id != null)
+			return id;
+
+		var normalForm = TextNormalizer.normalize(name);
+
+		synchronized (this) {
+			id = byNormalForm.get(normalForm);
+		}
+
+		if(id == null)
+			return NONE;
+
+		cache(name, id);
+
+		return id;
+	}
+
+	/**
+	 * @param id the id of an interned name.
+	 * @return the name as it was first interned.
+	 */
+	public String nameOf(int id) {
+		if(id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("Symbol: " + id);
+
+		return names[id];
+	}
+
+	/**
+	 * @return the number of interned names, ids go from 0 to <code>size() - 1</code>.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void cache(String spelling, int id) {
+		if(bySpelling.size() < SPELLINGS_PER_SYMBOL * size)
+			bySpelling.putIfAbsent(spelling, id);
+	}
+}
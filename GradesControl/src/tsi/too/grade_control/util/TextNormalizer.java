@@ -0,0 +1,67 @@
+package tsi.too.grade_control.util;
+
+import java.text.Normalizer;
+
+/**
+ * Normalizes text to be compared ignoring case, accents and repeated spaces, so "José  da Silva" and
+ * "jose da silva" have the same normal form.
+ */
+public final class TextNormalizer {
+
+	private TextNormalizer() {}
+
+	/**
+	 * @param text the text.
+	 * @return the text in lower case, without accents and with single spaces between words only.
+	 */
+	public static String normalize(String text) {
+		if(text == null)
+			return "";
+
+		if(!isAscii(text))
+			text = stripAccents(text);
+
+		var out = new StringBuilder(text.length());
+		var space = false;
+
+		for(int i = 0; i < text.length(); i++) {
+			var c = text.charAt(i);
+
+			if(Character.isWhitespace(c)) {
+				space = out.length() > 0;
+				continue;
+			}
+
+			if(space)
+				out.append(' ');
+
+			out.append(Character.toLowerCase(c));
+			space = false;
+		}
+
+		return out.toString();
+	}
+
+	private static String stripAccents(String text) {
+		var decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		var out = new StringBuilder(decomposed.length());
+
+		for(int i = 0; i < decomposed.length(); i++) {
+			var c = decomposed.charAt(i);
+
+			if(Character.getType(c) != Character.NON_SPACING_MARK)
+				out.append(c);
+		}
+
+		return out.toString();
+	}
+
+	private static boolean isAscii(String text) {
+		for(int i = 0; i < text.length(); i++) {
+			if(text.charAt(i) > 0x7F)
+				return false;
+		}
+
+		return true;
+	}
+}